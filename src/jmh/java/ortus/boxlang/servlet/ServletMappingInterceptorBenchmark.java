@@ -0,0 +1,55 @@
+package ortus.boxlang.servlet;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.web.exchange.FakeServletContext;
+
+/**
+ * Resolving a template path through the servlet context, which the runtime asks for on every template it can't find
+ * in its own mappings. Measured with the resolved path cache on, where every lookup after the first is a hit, and off.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class ServletMappingInterceptorBenchmark {
+
+	@Param( { "true", "false" } )
+	boolean								cache;
+
+	/**
+	 * A plain path, and one which backs up a folder
+	 */
+	@Param( { "/views/main/index.bxm", "/includes/../layouts/Main.bxm" } )
+	String								path;
+
+	private ServletMappingInterceptor	interceptor;
+
+	@Setup
+	public void setUp() {
+		interceptor = new ServletMappingInterceptor(
+		    FakeServletContext.create( Path.of( System.getProperty( "java.io.tmpdir" ), "boxlang-benchmark-webroot" ) ),
+		    cache ? new ResolvedPathCache( 1000, 0 ) : null
+		);
+	}
+
+	@Benchmark
+	public IStruct onMissingMapping() {
+		IStruct data = Struct.of( Key.path, path );
+		interceptor.onMissingMapping( data );
+		return data;
+	}
+
+}
@@ -0,0 +1,68 @@
+package ortus.boxlang.web.bifs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.web.context.WebRequestBoxContext;
+import ortus.boxlang.web.exchange.BoxHTTPServletExchange;
+import ortus.boxlang.web.exchange.FakeHttpServletRequest;
+import ortus.boxlang.web.exchange.FakeHttpServletResponse;
+
+/**
+ * getPageContext() on a request context: the first call of a request, which creates the PageContext under a lock,
+ * and the calls after it, which find it attached to the request. Starts a BoxLang runtime for the request context.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class GetPageContextBenchmark {
+
+	/**
+	 * The attachment GetPageContext keeps the PageContext under
+	 */
+	private static final Key		PAGE_CONTEXT	= Key.of( "page_context_attachment" );
+
+	private BoxRuntime				runtime;
+	private WebRequestBoxContext	context;
+	private GetPageContext			bif;
+	private ArgumentsScope			arguments;
+
+	@Setup
+	public void setUp() {
+		runtime = BoxRuntime.getInstance();
+		BoxHTTPServletExchange exchange = new BoxHTTPServletExchange( new FakeHttpServletRequest( "GET", "/index.bxm" ), new FakeHttpServletResponse(),
+		    null );
+		context = new WebRequestBoxContext( runtime.getRuntimeContext(), exchange, System.getProperty( "java.io.tmpdir" ) );
+		exchange.setWebContext( context );
+		bif			= new GetPageContext();
+		arguments	= new ArgumentsScope();
+	}
+
+	@TearDown
+	public void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Benchmark
+	public Object firstCall() {
+		context.removeAttachment( PAGE_CONTEXT );
+		return bif._invoke( context, arguments );
+	}
+
+	@Benchmark
+	public Object laterCall() {
+		return bif._invoke( context, arguments );
+	}
+
+}
@@ -0,0 +1,198 @@
+package ortus.boxlang.web.exchange;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import ortus.boxlang.web.exchange.IBoxHTTPExchange.FileUpload;
+
+/**
+ * The request side of the exchange: the URL, form, header and cookie scopes, read the way a page reads them. Each
+ * invocation is a new exchange over the same in-memory request, so the parsing and the per-request allocations are
+ * measured every time.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class ExchangeRequestBenchmark {
+
+	private FakeHttpServletResponse	response;
+	private FakeHttpServletRequest	urlRequest;
+	private FakeHttpServletRequest	formRequest;
+	private FakeHttpServletRequest	headerRequest;
+	private FakeHttpServletRequest	cookieRequest;
+
+	@Setup
+	public void setUp() {
+		response = new FakeHttpServletResponse();
+
+		urlRequest = new FakeHttpServletRequest( "GET", "/products/list.bxm" )
+		    .withQueryString( "category=garden+tools&page=3&pageSize=50&sort=price&dir=asc&q=hose%20reel&inStock=true&tag=a&tag=b&ref=%2Fhome" );
+
+		formRequest = new FakeHttpServletRequest( "POST", "/account/save.bxm" )
+		    .withBody( "application/x-www-form-urlencoded", ( "firstName=Jane&lastName=O%27Neil&email=jane%40example.com&phone=%2B1+555+0100"
+		        + "&address=1+Main+St&city=Springfield&zip=12345&country=US&newsletter=on&interests=a&interests=b&interests=c"
+		        + "&comments=" + "Lorem+ipsum+dolor+sit+amet%2C+".repeat( 20 ) ).getBytes( StandardCharsets.UTF_8 ) );
+
+		headerRequest = new FakeHttpServletRequest( "GET", "/index.bxm" )
+		    .withHeader( "Host", "www.example.com" )
+		    .withHeader( "User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0 Safari/537.36" )
+		    .withHeader( "Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8" )
+		    .withHeader( "Accept-Language", "en-US,en;q=0.9" )
+		    .withHeader( "Accept-Encoding", "gzip, deflate, br" )
+		    .withHeader( "Connection", "keep-alive" )
+		    .withHeader( "Referer", "https://www.example.com/" )
+		    .withHeader( "Upgrade-Insecure-Requests", "1" )
+		    .withHeader( "Sec-Fetch-Dest", "document" )
+		    .withHeader( "Sec-Fetch-Mode", "navigate" )
+		    .withHeader( "Sec-Fetch-Site", "same-origin" )
+		    .withHeader( "X-Forwarded-For", "203.0.113.7" )
+		    .withHeader( "X-Forwarded-For", "198.51.100.2" )
+		    .withHeader( "Cookie", "JSESSIONID=abc; theme=dark" );
+
+		cookieRequest = new FakeHttpServletRequest( "GET", "/index.bxm" )
+		    .withCookies(
+		        new Cookie( "JSESSIONID", "node01h0q2w9m8v7c6x5z4a3s2d1f0" ),
+		        new Cookie( "CFID", "12345" ),
+		        new Cookie( "CFTOKEN", "67890" ),
+		        new Cookie( "theme", "dark" ),
+		        new Cookie( "cart", "%7B%22items%22%3A3%2C%22total%22%3A42.5%7D" ),
+		        new Cookie( "_ga", "GA1.2.1234567890.1700000000" ),
+		        new Cookie( "_gid", "GA1.2.987654321.1700000000" ),
+		        new Cookie( "consent", "analytics%2Cmarketing" )
+		    );
+	}
+
+	@Benchmark
+	public Map<String, String[]> getRequestURLMap() {
+		return new BoxHTTPServletExchange( urlRequest, response, null ).getRequestURLMap();
+	}
+
+	@Benchmark
+	public Map<String, String[]> getRequestFormMapUrlEncoded() {
+		return new BoxHTTPServletExchange( formRequest, response, null ).getRequestFormMap();
+	}
+
+	@Benchmark
+	public Map<String, String[]> getRequestFormMapMultipart( MultipartRequest multipart ) {
+		BoxHTTPServletExchange	exchange	= new BoxHTTPServletExchange( multipart.request, response, null, multipart.settings );
+		Map<String, String[]>	form		= exchange.getRequestFormMap();
+		// The servlet deletes the temp files when the request ends
+		for ( FileUpload upload : exchange.getUploadData() ) {
+			upload.tmpPath().toFile().delete();
+		}
+		return form;
+	}
+
+	@Benchmark
+	public void getRequestHeaderMap( Blackhole bh ) {
+		Map<String, String[]> headers = new BoxHTTPServletExchange( headerRequest, response, null ).getRequestHeaderMap();
+		bh.consume( headers.get( "User-Agent" ) );
+		bh.consume( headers.get( "accept-encoding" ) );
+		bh.consume( headers.get( "X-Forwarded-For" ) );
+		for ( Map.Entry<String, String[]> header : headers.entrySet() ) {
+			bh.consume( header.getValue() );
+		}
+	}
+
+	@Benchmark
+	public void getRequestCookies( Blackhole bh ) {
+		BoxHTTPServletExchange exchange = new BoxHTTPServletExchange( cookieRequest, response, null );
+		bh.consume( exchange.getRequestCookie( "JSESSIONID" ) );
+		bh.consume( exchange.getRequestCookies() );
+	}
+
+	/**
+	 * A multipart form with a few fields and two files, parsed with each upload mode
+	 */
+	@State( Scope.Thread )
+	public static class MultipartRequest {
+
+		@Param( { "buffered", "streaming" } )
+		String					uploadMode;
+
+		/**
+		 * The size of each uploaded file
+		 */
+		@Param( { "4096", "1048576" } )
+		int						fileSize;
+
+		FakeHttpServletRequest	request;
+		ServletExchangeSettings	settings;
+
+		@Setup
+		public void setUp() throws ServletException {
+			String					boundary	= "----BoxLangBenchmarkBoundary7MA4YWxkTrZu0gW";
+			ByteArrayOutputStream	body		= new ByteArrayOutputStream( fileSize * 2 + 4096 );
+			String[][]				fields		= { { "title", "Quarterly report" }, { "author", "Jane" }, { "notes", "Draft, do not share" } };
+			for ( String[] field : fields ) {
+				body.writeBytes( ( "--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field[ 0 ] + "\"\r\n\r\n" + field[ 1 ] + "\r\n" )
+				    .getBytes( StandardCharsets.UTF_8 ) );
+			}
+			byte[] file = new byte[ fileSize ];
+			for ( int i = 0; i < file.length; i++ ) {
+				file[ i ] = ( byte ) ( 'a' + i % 26 );
+			}
+			for ( String name : new String[] { "attachment", "cover" } ) {
+				body.writeBytes( ( "--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\"" + name
+				    + ".txt\"\r\nContent-Type: text/plain\r\n\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+				body.writeBytes( file );
+				body.writeBytes( "\r\n".getBytes( StandardCharsets.UTF_8 ) );
+			}
+			body.writeBytes( ( "--" + boundary + "--\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+
+			request		= new FakeHttpServletRequest( "POST", "/upload.bxm" ).withBody( "multipart/form-data; boundary=" + boundary, body.toByteArray() );
+			settings	= ServletExchangeSettings.fromServletConfig( config( Map.of( "boxlang-upload-mode", uploadMode ) ) );
+		}
+	}
+
+	/**
+	 * A servlet config with the given init-params
+	 *
+	 * @param initParams The init-params
+	 *
+	 * @return The config
+	 */
+	static ServletConfig config( Map<String, String> initParams ) {
+		return new ServletConfig() {
+
+			@Override
+			public String getServletName() {
+				return "BoxLangServlet";
+			}
+
+			@Override
+			public ServletContext getServletContext() {
+				return null;
+			}
+
+			@Override
+			public String getInitParameter( String name ) {
+				return initParams.get( name );
+			}
+
+			@Override
+			public Enumeration<String> getInitParameterNames() {
+				return Collections.enumeration( initParams.keySet() );
+			}
+		};
+	}
+
+}
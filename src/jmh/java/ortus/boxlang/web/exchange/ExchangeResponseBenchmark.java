@@ -0,0 +1,70 @@
+package ortus.boxlang.web.exchange;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The response side of the exchange: sending a byte array and a file as the whole body. The in-memory response counts
+ * the bytes and throws them away, so the copying done by the exchange is what is measured.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class ExchangeResponseBenchmark {
+
+	/**
+	 * The size of the body
+	 */
+	@Param( { "1024", "65536", "4194304" } )
+	int								size;
+
+	private FakeHttpServletRequest	request;
+	private FakeHttpServletResponse	response;
+	private byte[]					data;
+	private File					file;
+
+	@Setup
+	public void setUp() throws IOException {
+		request		= new FakeHttpServletRequest( "GET", "/download.bxm" );
+		response	= new FakeHttpServletResponse();
+		data		= new byte[ size ];
+		for ( int i = 0; i < data.length; i++ ) {
+			data[ i ] = ( byte ) i;
+		}
+		file = Files.createTempFile( "boxlang-benchmark-", ".bin" ).toFile();
+		Files.write( file.toPath(), data );
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public long sendResponseBinary() {
+		response.recycle();
+		new BoxHTTPServletExchange( request, response, null ).sendResponseBinary( data );
+		return response.getBytesWritten();
+	}
+
+	@Benchmark
+	public long sendResponseFile() {
+		request.clearAttributes();
+		response.recycle();
+		new BoxHTTPServletExchange( request, response, null ).sendResponseFile( file );
+		return response.getBytesWritten();
+	}
+
+}
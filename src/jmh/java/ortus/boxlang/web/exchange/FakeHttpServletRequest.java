@@ -0,0 +1,260 @@
+package ortus.boxlang.web.exchange;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * An in-memory request for the benchmarks. The methods the exchange uses are implemented here, without locks or
+ * reflection, so the container doesn't show up in the profiles. Anything else throws, so a benchmark which strays
+ * off the modelled paths fails loudly instead of measuring a stub.
+ */
+public class FakeHttpServletRequest extends HttpServletRequestWrapper {
+
+	private final Map<String, List<String>>	headers		= new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+	private final Map<String, Object>		attributes	= new HashMap<>();
+	private final String					method;
+	private final String					requestURI;
+	private String							queryString;
+	private String							contentType;
+	private String							characterEncoding;
+	private byte[]							body		= new byte[ 0 ];
+	private Cookie[]						cookies;
+	private ServletContext					servletContext;
+
+	/**
+	 * Create a request
+	 *
+	 * @param method     The HTTP method
+	 * @param requestURI The request URI
+	 */
+	public FakeHttpServletRequest( String method, String requestURI ) {
+		super( unsupported( HttpServletRequest.class ) );
+		this.method		= method;
+		this.requestURI	= requestURI;
+	}
+
+	/**
+	 * A stand-in for a servlet API interface which throws from every method
+	 *
+	 * @param type The interface
+	 *
+	 * @return The stand-in
+	 */
+	static <T> T unsupported( Class<T> type ) {
+		return type.cast( Proxy.newProxyInstance( type.getClassLoader(), new Class<?>[] { type }, ( proxy, m, args ) -> {
+			throw new UnsupportedOperationException( type.getSimpleName() + "." + m.getName() + "() is not faked" );
+		} ) );
+	}
+
+	public FakeHttpServletRequest withQueryString( String queryString ) {
+		this.queryString = queryString;
+		return this;
+	}
+
+	public FakeHttpServletRequest withHeader( String name, String value ) {
+		headers.computeIfAbsent( name, k -> new ArrayList<>( 1 ) ).add( value );
+		return this;
+	}
+
+	public FakeHttpServletRequest withBody( String contentType, byte[] body ) {
+		this.contentType	= contentType;
+		this.body			= body;
+		return withHeader( "Content-Type", contentType );
+	}
+
+	public FakeHttpServletRequest withCookies( Cookie... cookies ) {
+		this.cookies = cookies;
+		return this;
+	}
+
+	public FakeHttpServletRequest withServletContext( ServletContext servletContext ) {
+		this.servletContext = servletContext;
+		return this;
+	}
+
+	/**
+	 * Forget the attributes set by the last invocation, so the request can be used again
+	 */
+	public void clearAttributes() {
+		attributes.clear();
+	}
+
+	@Override
+	public String getMethod() {
+		return method;
+	}
+
+	@Override
+	public String getRequestURI() {
+		return requestURI;
+	}
+
+	@Override
+	public String getQueryString() {
+		return queryString;
+	}
+
+	@Override
+	public String getContextPath() {
+		return "";
+	}
+
+	@Override
+	public String getServletPath() {
+		return requestURI;
+	}
+
+	@Override
+	public String getPathInfo() {
+		return null;
+	}
+
+	@Override
+	public String getProtocol() {
+		return "HTTP/1.1";
+	}
+
+	@Override
+	public String getScheme() {
+		return "http";
+	}
+
+	@Override
+	public boolean isSecure() {
+		return false;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public int getContentLength() {
+		return body.length;
+	}
+
+	@Override
+	public long getContentLengthLong() {
+		return body.length;
+	}
+
+	@Override
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	@Override
+	public void setCharacterEncoding( String env ) {
+		this.characterEncoding = env;
+	}
+
+	@Override
+	public ServletInputStream getInputStream() throws IOException {
+		ByteArrayInputStream in = new ByteArrayInputStream( body );
+		return new ServletInputStream() {
+
+			@Override
+			public int read() {
+				return in.read();
+			}
+
+			@Override
+			public int read( byte[] b, int off, int len ) {
+				return in.read( b, off, len );
+			}
+
+			@Override
+			public boolean isFinished() {
+				return in.available() == 0;
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setReadListener( ReadListener readListener ) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public String getHeader( String name ) {
+		List<String> values = headers.get( name );
+		return values == null ? null : values.get( 0 );
+	}
+
+	@Override
+	public Enumeration<String> getHeaders( String name ) {
+		List<String> values = headers.get( name );
+		return values == null ? Collections.emptyEnumeration() : Collections.enumeration( values );
+	}
+
+	@Override
+	public Enumeration<String> getHeaderNames() {
+		return Collections.enumeration( headers.keySet() );
+	}
+
+	@Override
+	public int getIntHeader( String name ) {
+		String value = getHeader( name );
+		return value == null ? -1 : Integer.parseInt( value );
+	}
+
+	@Override
+	public long getDateHeader( String name ) {
+		String value = getHeader( name );
+		return value == null ? -1 : ZonedDateTime.parse( value, DateTimeFormatter.RFC_1123_DATE_TIME ).toInstant().toEpochMilli();
+	}
+
+	@Override
+	public Cookie[] getCookies() {
+		return cookies;
+	}
+
+	@Override
+	public Object getAttribute( String name ) {
+		return attributes.get( name );
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration( attributes.keySet() );
+	}
+
+	@Override
+	public void setAttribute( String name, Object o ) {
+		attributes.put( name, o );
+	}
+
+	@Override
+	public void removeAttribute( String name ) {
+		attributes.remove( name );
+	}
+
+	@Override
+	public ServletContext getServletContext() {
+		return servletContext;
+	}
+
+}
@@ -0,0 +1,235 @@
+package ortus.boxlang.web.exchange;
+
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * An in-memory response for the benchmarks. The body is counted and thrown away. Like
+ * {@link FakeHttpServletRequest}, anything which isn't modelled here throws.
+ */
+public class FakeHttpServletResponse extends HttpServletResponseWrapper {
+
+	private final Map<String, List<String>>	headers	= new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+	private final ServletOutputStream		out		= new DiscardingOutputStream();
+	private int								status;
+	private String							characterEncoding;
+	private boolean							committed;
+	private long							bytes;
+	private PrintWriter						writer;
+
+	/**
+	 * Create a response
+	 */
+	public FakeHttpServletResponse() {
+		super( FakeHttpServletRequest.unsupported( HttpServletResponse.class ) );
+		recycle();
+	}
+
+	/**
+	 * Put the response back to how it was created, so it can be used again
+	 */
+	public void recycle() {
+		headers.clear();
+		status				= SC_OK;
+		characterEncoding	= "UTF-8";
+		committed			= false;
+		bytes				= 0;
+		writer				= null;
+	}
+
+	/**
+	 * The body bytes written since the response was recycled
+	 *
+	 * @return The count
+	 */
+	public long getBytesWritten() {
+		return bytes;
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public void setStatus( int sc ) {
+		this.status = sc;
+	}
+
+	@Override
+	public void sendError( int sc ) {
+		this.status		= sc;
+		this.committed	= true;
+	}
+
+	@Override
+	public void sendError( int sc, String msg ) {
+		sendError( sc );
+	}
+
+	@Override
+	public void setHeader( String name, String value ) {
+		List<String> values = new ArrayList<>( 1 );
+		values.add( value );
+		headers.put( name, values );
+	}
+
+	@Override
+	public void addHeader( String name, String value ) {
+		headers.computeIfAbsent( name, k -> new ArrayList<>( 1 ) ).add( value );
+	}
+
+	@Override
+	public void setDateHeader( String name, long date ) {
+		setHeader( name, DateTimeFormatter.RFC_1123_DATE_TIME.format( Instant.ofEpochMilli( date ).atOffset( ZoneOffset.UTC ) ) );
+	}
+
+	@Override
+	public void setIntHeader( String name, int value ) {
+		setHeader( name, String.valueOf( value ) );
+	}
+
+	@Override
+	public boolean containsHeader( String name ) {
+		return headers.containsKey( name );
+	}
+
+	@Override
+	public String getHeader( String name ) {
+		List<String> values = headers.get( name );
+		return values == null ? null : values.get( 0 );
+	}
+
+	@Override
+	public Collection<String> getHeaders( String name ) {
+		List<String> values = headers.get( name );
+		return values == null ? List.of() : values;
+	}
+
+	@Override
+	public Collection<String> getHeaderNames() {
+		return headers.keySet();
+	}
+
+	@Override
+	public void addCookie( Cookie cookie ) {
+		addHeader( "Set-Cookie", cookie.getName() + "=" + cookie.getValue() );
+	}
+
+	@Override
+	public String getContentType() {
+		return getHeader( "Content-Type" );
+	}
+
+	@Override
+	public void setContentType( String type ) {
+		setHeader( "Content-Type", type );
+	}
+
+	@Override
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	@Override
+	public void setCharacterEncoding( String charset ) {
+		this.characterEncoding = charset;
+	}
+
+	@Override
+	public void setContentLength( int len ) {
+		setContentLengthLong( len );
+	}
+
+	@Override
+	public void setContentLengthLong( long len ) {
+		setHeader( "Content-Length", String.valueOf( len ) );
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return out;
+	}
+
+	@Override
+	public PrintWriter getWriter() {
+		if ( writer == null ) {
+			writer = new PrintWriter( new OutputStreamWriter( out, Charset.forName( characterEncoding ) ) );
+		}
+		return writer;
+	}
+
+	@Override
+	public int getBufferSize() {
+		return 8192;
+	}
+
+	@Override
+	public void setBufferSize( int size ) {
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return committed;
+	}
+
+	@Override
+	public void flushBuffer() {
+		committed = true;
+	}
+
+	@Override
+	public void resetBuffer() {
+		if ( committed ) {
+			throw new IllegalStateException( "The response is committed" );
+		}
+		bytes = 0;
+	}
+
+	@Override
+	public void reset() {
+		resetBuffer();
+		recycle();
+	}
+
+	/**
+	 * Counts the body and throws it away
+	 */
+	private class DiscardingOutputStream extends ServletOutputStream {
+
+		@Override
+		public void write( int b ) {
+			bytes++;
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) {
+			bytes += len;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener( WriteListener writeListener ) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package ortus.boxlang.web.exchange;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.servlet.ServletContext;
+
+/**
+ * An in-memory servlet context for the benchmarks, serving a web root on disk. ServletContext is a large interface and
+ * only a handful of its methods are used, so this is a proxy. The proxy boxes the arguments of every call, which adds a
+ * small allocation to the uncached path lookups, the only place it is called on a measured path.
+ */
+public final class FakeServletContext {
+
+	private FakeServletContext() {
+	}
+
+	/**
+	 * Create a servlet context
+	 *
+	 * @param webRoot The web root
+	 *
+	 * @return The servlet context
+	 */
+	public static ServletContext create( Path webRoot ) {
+		String				root		= webRoot.toAbsolutePath().normalize().toString();
+		Map<String, Object>	attributes	= new ConcurrentHashMap<>();
+		return ( ServletContext ) Proxy.newProxyInstance( ServletContext.class.getClassLoader(), new Class<?>[] { ServletContext.class },
+		    ( proxy, method, args ) -> switch ( method.getName() ) {
+			    case "getRealPath" -> {
+				    String path = ( String ) args[ 0 ];
+				    yield path.equals( "/" ) ? root : root + ( path.startsWith( "/" ) ? path : "/" + path );
+			    }
+			    case "getContextPath" -> "";
+			    case "getAttribute" -> attributes.get( ( String ) args[ 0 ] );
+			    case "setAttribute" -> {
+				    attributes.put( ( String ) args[ 0 ], args[ 1 ] );
+				    yield null;
+			    }
+			    case "removeAttribute" -> {
+				    attributes.remove( ( String ) args[ 0 ] );
+				    yield null;
+			    }
+			    case "getMimeType" -> null;
+			    case "hashCode" -> System.identityHashCode( proxy );
+			    case "equals" -> proxy == args[ 0 ];
+			    case "toString" -> "FakeServletContext[" + root + "]";
+			    default -> throw new UnsupportedOperationException( "ServletContext." + method.getName() + "() is not faked" );
+		    } );
+	}
+}
@@ -0,0 +1,69 @@
+package ortus.boxlang.web.exchange;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the WhitespaceManagingPrintWriter's own compression with the table-driven {@link WhitespaceCompressingWriter}
+ * on an indented HTML page written in template-sized pieces.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class WhitespaceCompressionBenchmark {
+
+	/**
+	 * The number of table rows on the page, which drives its size
+	 */
+	@Param( { "50", "1000" } )
+	int				rows;
+
+	private String[]	pieces;
+
+	@Setup
+	public void setUp() {
+		List<String> list = new ArrayList<>();
+		list.add( "<!DOCTYPE html>\n<html>\n\t<head>\n\t\t<title>Report</title>\n\t\t<script>\n\t\t\tvar  config = { a : 1 };\n\t\t</script>\n\t</head>\n" );
+		list.add( "\t<body>\n\t\t<table class=\"report\">\n" );
+		for ( int i = 0; i < rows; i++ ) {
+			list.add( "\t\t\t<tr>\n\t\t\t\t<td>    " );
+			list.add( String.valueOf( i ) );
+			list.add( "    </td>\n\t\t\t\t<td>  Customer name " );
+			list.add( "number " + i );
+			list.add( "  </td>\n\t\t\t</tr>\n" );
+		}
+		list.add( "\t\t</table>\n\t\t<pre>\n  preformatted   text\n</pre>\n\t</body>\n</html>\n" );
+		pieces = list.toArray( new String[ 0 ] );
+	}
+
+	@Benchmark
+	public void whitespaceManagingPrintWriter() {
+		PrintWriter writer = new WhitespaceManagingPrintWriter( new PrintWriter( NullWriter.INSTANCE ), true );
+		for ( String piece : pieces ) {
+			writer.write( piece );
+		}
+		writer.flush();
+	}
+
+	@Benchmark
+	public void tableDriven() {
+		PrintWriter writer = new WhitespaceManagingPrintWriter( new PrintWriter( new WhitespaceCompressingWriter( NullWriter.INSTANCE, true ), false ), false );
+		for ( String piece : pieces ) {
+			writer.write( piece );
+		}
+		writer.flush();
+	}
+
+}
@@ -0,0 +1,734 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import ortus.boxlang.web.exchange.EventStream;
+
+/**
+ * I run BoxLang requests off the servlet container's worker threads using the Servlet async API.
+ * The container thread starts an {@link AsyncContext} and returns right away, and the request is executed
+ * on an executor owned by the servlet: either a bounded platform thread pool, or a new virtual thread per request.
+ * When the executor is saturated, or the admission limit can't be acquired in time, the request is rejected with a 503.
+ */
+public class AsyncRequestProcessor {
+
+	/**
+	 * Executes a single request
+	 */
+	@FunctionalInterface
+	public interface RequestHandler {
+
+		void handle( HttpServletRequest request, HttpServletResponse response ) throws ServletException, IOException;
+	}
+
+	/**
+	 * The executor requests are run on
+	 */
+	private final ExecutorService	executor;
+
+	/**
+	 * The async timeout in milliseconds. 0 or less means no timeout.
+	 */
+	private final long				timeout;
+
+	/**
+	 * Caps the number of requests executing at once. Null if there is no admission limit.
+	 */
+	private Semaphore				admission;
+
+	/**
+	 * How long a request waits for an admission permit, in milliseconds
+	 */
+	private long					admissionTimeout;
+
+	/**
+	 * Create a processor which runs each request on a new virtual thread
+	 *
+	 * @param timeout The async timeout in milliseconds. 0 or less means no timeout.
+	 *
+	 * @return The processor
+	 */
+	public static AsyncRequestProcessor ofVirtualThreads( long timeout ) {
+		return new AsyncRequestProcessor(
+		    Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( "boxlang-request-vt-", 1 ).factory() ),
+		    timeout
+		);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads   The max number of requests to execute at once
+	 * @param queueSize The max number of requests waiting for a thread
+	 * @param timeout   The async timeout in milliseconds. 0 or less means no timeout.
+	 */
+	public AsyncRequestProcessor( int threads, int queueSize, long timeout ) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(
+		    threads,
+		    threads,
+		    60L,
+		    TimeUnit.SECONDS,
+		    new ArrayBlockingQueue<>( Math.max( 1, queueSize ) ),
+		    new NamedThreadFactory( "boxlang-request-" )
+		);
+		pool.allowCoreThreadTimeOut( true );
+		this.executor	= pool;
+		this.timeout	= timeout;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param executor The executor to run requests on
+	 * @param timeout  The async timeout in milliseconds. 0 or less means no timeout.
+	 */
+	public AsyncRequestProcessor( ExecutorService executor, long timeout ) {
+		this.executor	= executor;
+		this.timeout	= timeout;
+	}
+
+	/**
+	 * Limit the number of requests executing at once. Requests over the limit wait (without holding a container thread)
+	 * for up to the given time before being rejected with a 503.
+	 *
+	 * @param maxConcurrent The max number of requests executing at once
+	 * @param waitMillis    How long a request may wait for a permit
+	 *
+	 * @return This processor
+	 */
+	public AsyncRequestProcessor withAdmissionLimit( int maxConcurrent, long waitMillis ) {
+		this.admission			= new Semaphore( maxConcurrent, true );
+		this.admissionTimeout	= Math.max( 0, waitMillis );
+		return this;
+	}
+
+	/**
+	 * Get the number of requests that can still be admitted right now
+	 *
+	 * @return The available permits, or -1 if there is no admission limit
+	 */
+	public int getAvailablePermits() {
+		return admission == null ? -1 : admission.availablePermits();
+	}
+
+	/**
+	 * Put the request into async mode and hand it to the executor.
+	 *
+	 * @param request  The servlet request
+	 * @param response The servlet response
+	 * @param handler  The handler which executes the request
+	 *
+	 * @throws IOException If the request is rejected and the error could not be sent
+	 */
+	public void dispatch( HttpServletRequest request, HttpServletResponse response, RequestHandler handler ) throws IOException {
+		AsyncContext asyncContext = request.startAsync( request, response );
+		asyncContext.setTimeout( timeout > 0 ? timeout : 0 );
+
+		AsyncRequest asyncRequest = new AsyncRequest( asyncContext, request, response, handler, admission, admissionTimeout );
+		asyncContext.addListener( asyncRequest );
+
+		try {
+			executor.execute( asyncRequest );
+		} catch ( RejectedExecutionException e ) {
+			if ( !response.isCommitted() ) {
+				response.setHeader( "Retry-After", "1" );
+				response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+			}
+			asyncRequest.complete();
+		}
+	}
+
+	/**
+	 * Stop accepting requests and wait up to the given time for the running ones to finish.
+	 *
+	 * @param waitMillis How long to wait
+	 */
+	public void shutdown( long waitMillis ) {
+		executor.shutdown();
+		try {
+			if ( !executor.awaitTermination( waitMillis, TimeUnit.MILLISECONDS ) ) {
+				executor.shutdownNow();
+			}
+		} catch ( InterruptedException e ) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A request running in async mode.
+	 * <p>
+	 * A timeout sends the 503 and completes the async context right away, so the container never error dispatches a
+	 * request which is still running. BoxLang doesn't stop when it is interrupted, so the worker is interrupted and then
+	 * left to run on: its writes to the response are dropped from then on, and it reads a snapshot of the request instead
+	 * of the one the container recycles. The state is kept under a lock, so an interrupt can only reach the worker while
+	 * it is running this request.
+	 */
+	private static class AsyncRequest implements Runnable, AsyncListener {
+
+		private static final int			QUEUED		= 0;
+		private static final int			RUNNING		= 1;
+		private static final int			DONE		= 2;
+
+		private final AsyncContext			asyncContext;
+		private final GuardedRequest		request;
+		private final HttpServletResponse	response;
+		private final GuardedResponse		guarded;
+		private final RequestHandler		handler;
+		private final Semaphore				admission;
+		private final long					admissionTimeout;
+		private final AtomicBoolean			completed	= new AtomicBoolean( false );
+		private final Object				lock		= new Object();
+		private int							state		= QUEUED;
+		private Thread						worker;
+		private volatile boolean			timedOut;
+
+		AsyncRequest( AsyncContext asyncContext, HttpServletRequest request, HttpServletResponse response, RequestHandler handler, Semaphore admission,
+		    long admissionTimeout ) {
+			this.asyncContext		= asyncContext;
+			this.request			= new GuardedRequest( request );
+			this.response			= response;
+			this.guarded			= new GuardedResponse( response, this );
+			this.handler			= handler;
+			this.admission			= admission;
+			this.admissionTimeout	= admissionTimeout;
+		}
+
+		@Override
+		public void run() {
+			synchronized ( lock ) {
+				if ( state != QUEUED ) {
+					// Timed out or errored while waiting in the queue
+					return;
+				}
+				state	= RUNNING;
+				worker	= Thread.currentThread();
+			}
+			boolean admitted = false;
+			try {
+				if ( admission != null ) {
+					admitted = admission.tryAcquire( admissionTimeout, TimeUnit.MILLISECONDS );
+					if ( !admitted ) {
+						if ( !guarded.isCommitted() ) {
+							guarded.setHeader( "Retry-After", "1" );
+							guarded.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+						}
+						return;
+					}
+				}
+				handler.handle( request, guarded );
+			} catch ( Throwable e ) {
+				if ( !timedOut ) {
+					System.err.println( "Ortus BoxLang Servlet async request failed: " + e.getMessage() );
+					e.printStackTrace();
+					try {
+						if ( !guarded.isCommitted() ) {
+							guarded.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+						}
+					} catch ( IOException | IllegalStateException ignored ) {
+						// The client is gone
+					}
+				}
+			} finally {
+				if ( admitted ) {
+					admission.release();
+				}
+				synchronized ( lock ) {
+					state	= DONE;
+					worker	= null;
+					// Clear an interrupt from a timeout, no other interrupt can reach this thread for this request now
+					Thread.interrupted();
+				}
+				// An event stream keeps the response open and completes it itself
+				if ( timedOut || request.getAttribute( EventStream.ATTRIBUTE ) == null ) {
+					complete();
+				}
+			}
+		}
+
+		/**
+		 * Complete the async context once
+		 */
+		void complete() {
+			if ( completed.compareAndSet( false, true ) ) {
+				try {
+					asyncContext.complete();
+				} catch ( IllegalStateException e ) {
+					// Already completed by the container
+				}
+			}
+		}
+
+		/**
+		 * Stop the request and complete it. If the worker is running it, its writes are dropped and its request is
+		 * detached from the container's before it is interrupted.
+		 *
+		 * @param status The error status to send, or 0 for none
+		 */
+		private void abort( int status ) throws IOException {
+			synchronized ( lock ) {
+				if ( state == DONE ) {
+					return;
+				}
+				synchronized ( guarded ) {
+					timedOut = true;
+					if ( status != 0 && !response.isCommitted() ) {
+						response.sendError( status );
+					}
+				}
+				if ( state == QUEUED ) {
+					state = DONE;
+				} else {
+					request.detach();
+					worker.interrupt();
+				}
+			}
+			complete();
+		}
+
+		@Override
+		public void onTimeout( AsyncEvent event ) throws IOException {
+			abort( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+		}
+
+		@Override
+		public void onError( AsyncEvent event ) throws IOException {
+			abort( 0 );
+		}
+
+		@Override
+		public void onComplete( AsyncEvent event ) throws IOException {
+			completed.set( true );
+		}
+
+		@Override
+		public void onStartAsync( AsyncEvent event ) throws IOException {
+			// Nothing to do, we only ever start async once
+		}
+	}
+
+	/**
+	 * The request the worker reads. Once the request has timed out the container recycles its request, so the worker
+	 * is switched to a snapshot of the attributes, headers and request line, and anything else it asks for fails
+	 * with an {@link IllegalStateException}.
+	 */
+	static class GuardedRequest extends HttpServletRequestWrapper {
+
+		GuardedRequest( HttpServletRequest request ) {
+			super( request );
+		}
+
+		/**
+		 * Swap the container's request for a snapshot of it. Called before the async context is completed.
+		 */
+		void detach() {
+			setRequest( snapshot( ( HttpServletRequest ) getRequest() ) );
+		}
+
+		/**
+		 * Take a snapshot of a request which outlives it
+		 *
+		 * @param request The request
+		 *
+		 * @return The snapshot
+		 */
+		static HttpServletRequest snapshot( HttpServletRequest request ) {
+			Map<String, Object> attributes = new ConcurrentHashMap<>();
+			for ( String name : Collections.list( request.getAttributeNames() ) ) {
+				Object value = request.getAttribute( name );
+				if ( value != null ) {
+					attributes.put( name, value );
+				}
+			}
+			Map<String, List<String>> headers = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+			for ( String name : Collections.list( request.getHeaderNames() ) ) {
+				headers.put( name, Collections.list( request.getHeaders( name ) ) );
+			}
+			String				requestURL	= request.getRequestURL().toString();
+			Map<String, Object>	values		= new HashMap<>();
+			values.put( "getMethod", request.getMethod() );
+			values.put( "getRequestURI", request.getRequestURI() );
+			values.put( "getQueryString", request.getQueryString() );
+			values.put( "getContextPath", request.getContextPath() );
+			values.put( "getServletPath", request.getServletPath() );
+			values.put( "getPathInfo", request.getPathInfo() );
+			values.put( "getProtocol", request.getProtocol() );
+			values.put( "getScheme", request.getScheme() );
+			values.put( "isSecure", request.isSecure() );
+			values.put( "getServerName", request.getServerName() );
+			values.put( "getServerPort", request.getServerPort() );
+			values.put( "getRemoteAddr", request.getRemoteAddr() );
+			values.put( "getRemoteHost", request.getRemoteHost() );
+			values.put( "getRemotePort", request.getRemotePort() );
+			values.put( "getLocalAddr", request.getLocalAddr() );
+			values.put( "getLocalName", request.getLocalName() );
+			values.put( "getLocalPort", request.getLocalPort() );
+			values.put( "getContentType", request.getContentType() );
+			values.put( "getContentLength", request.getContentLength() );
+			values.put( "getContentLengthLong", request.getContentLengthLong() );
+			values.put( "getCharacterEncoding", request.getCharacterEncoding() );
+			values.put( "getCookies", request.getCookies() );
+			values.put( "getAuthType", request.getAuthType() );
+			values.put( "getRemoteUser", request.getRemoteUser() );
+
+			return ( HttpServletRequest ) Proxy.newProxyInstance(
+			    HttpServletRequest.class.getClassLoader(),
+			    new Class<?>[] { HttpServletRequest.class },
+			    ( proxy, method, args ) -> switch ( method.getName() ) {
+				    case "getAttribute" -> attributes.get( args[ 0 ] );
+				    case "setAttribute" -> {
+					    if ( args[ 1 ] == null ) {
+						    attributes.remove( args[ 0 ] );
+					    } else {
+						    attributes.put( ( String ) args[ 0 ], args[ 1 ] );
+					    }
+					    yield null;
+				    }
+				    case "removeAttribute" -> {
+					    attributes.remove( args[ 0 ] );
+					    yield null;
+				    }
+				    case "getAttributeNames" -> Collections.enumeration( new ArrayList<>( attributes.keySet() ) );
+				    case "getHeader" -> {
+					    List<String> value = headers.get( args[ 0 ] );
+					    yield value == null || value.isEmpty() ? null : value.get( 0 );
+				    }
+				    case "getHeaders" -> Collections.enumeration( headers.getOrDefault( args[ 0 ], List.of() ) );
+				    case "getHeaderNames" -> Collections.enumeration( new ArrayList<>( headers.keySet() ) );
+				    case "getRequestURL" -> new StringBuffer( requestURL );
+				    case "hashCode" -> System.identityHashCode( proxy );
+				    case "equals" -> proxy == args[ 0 ];
+				    case "toString" -> "Timed out request " + requestURL;
+				    default -> {
+					    if ( method.getParameterCount() == 0 && values.containsKey( method.getName() ) ) {
+						    yield values.get( method.getName() );
+					    }
+					    throw new IllegalStateException( "The request has timed out and been recycled by the servlet container" );
+				    }
+			    }
+			);
+		}
+	}
+
+	/**
+	 * The response the worker writes to. Once the request has timed out, the body and any change to the status or
+	 * headers are dropped. Writes hold the response's lock, so the 503 of a timeout is never sent in the middle of one.
+	 */
+	static class GuardedResponse extends HttpServletResponseWrapper {
+
+		private final AsyncRequest	owner;
+		private ServletOutputStream	outputStream;
+		private PrintWriter			writer;
+
+		GuardedResponse( HttpServletResponse response, AsyncRequest owner ) {
+			super( response );
+			this.owner = owner;
+		}
+
+		private boolean dropped() {
+			return owner.timedOut;
+		}
+
+		@Override
+		public synchronized ServletOutputStream getOutputStream() throws IOException {
+			if ( outputStream == null ) {
+				// Once timed out, the container may have recycled the response already, so don't ask it for its stream
+				ServletOutputStream target = dropped() ? null : super.getOutputStream();
+				outputStream = new ServletOutputStream() {
+
+					@Override
+					public void write( int b ) throws IOException {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.write( b );
+							}
+						}
+					}
+
+					@Override
+					public void write( byte[] b, int off, int len ) throws IOException {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.write( b, off, len );
+							}
+						}
+					}
+
+					@Override
+					public void flush() throws IOException {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.flush();
+							}
+						}
+					}
+
+					@Override
+					public void close() throws IOException {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.close();
+							}
+						}
+					}
+
+					@Override
+					public boolean isReady() {
+						return dropped() || target.isReady();
+					}
+
+					@Override
+					public void setWriteListener( WriteListener writeListener ) {
+						if ( !dropped() ) {
+							target.setWriteListener( writeListener );
+						}
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public synchronized PrintWriter getWriter() throws IOException {
+			if ( writer == null ) {
+				PrintWriter target = dropped() ? null : super.getWriter();
+				writer = new PrintWriter( new Writer() {
+
+					@Override
+					public void write( char[] cbuf, int off, int len ) {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.write( cbuf, off, len );
+							}
+						}
+					}
+
+					@Override
+					public void write( String str, int off, int len ) {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.write( str, off, len );
+							}
+						}
+					}
+
+					@Override
+					public void flush() throws IOException {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.flush();
+								if ( target.checkError() ) {
+									throw new IOException( "The client has gone away" );
+								}
+							}
+						}
+					}
+
+					@Override
+					public void close() {
+						synchronized ( GuardedResponse.this ) {
+							if ( !dropped() ) {
+								target.close();
+							}
+						}
+					}
+				} );
+			}
+			return writer;
+		}
+
+		@Override
+		public synchronized void sendError( int sc, String msg ) throws IOException {
+			if ( !dropped() ) {
+				super.sendError( sc, msg );
+			}
+		}
+
+		@Override
+		public synchronized void sendError( int sc ) throws IOException {
+			if ( !dropped() ) {
+				super.sendError( sc );
+			}
+		}
+
+		@Override
+		public synchronized void sendRedirect( String location ) throws IOException {
+			if ( !dropped() ) {
+				super.sendRedirect( location );
+			}
+		}
+
+		@Override
+		public synchronized void flushBuffer() throws IOException {
+			if ( !dropped() ) {
+				super.flushBuffer();
+			}
+		}
+
+		@Override
+		public synchronized void reset() {
+			if ( !dropped() ) {
+				super.reset();
+			}
+		}
+
+		@Override
+		public synchronized void resetBuffer() {
+			if ( !dropped() ) {
+				super.resetBuffer();
+			}
+		}
+
+		@Override
+		public void setStatus( int sc ) {
+			if ( !dropped() ) {
+				super.setStatus( sc );
+			}
+		}
+
+		@Override
+		public void setHeader( String name, String value ) {
+			if ( !dropped() ) {
+				super.setHeader( name, value );
+			}
+		}
+
+		@Override
+		public void addHeader( String name, String value ) {
+			if ( !dropped() ) {
+				super.addHeader( name, value );
+			}
+		}
+
+		@Override
+		public void setIntHeader( String name, int value ) {
+			if ( !dropped() ) {
+				super.setIntHeader( name, value );
+			}
+		}
+
+		@Override
+		public void addIntHeader( String name, int value ) {
+			if ( !dropped() ) {
+				super.addIntHeader( name, value );
+			}
+		}
+
+		@Override
+		public void setDateHeader( String name, long date ) {
+			if ( !dropped() ) {
+				super.setDateHeader( name, date );
+			}
+		}
+
+		@Override
+		public void addDateHeader( String name, long date ) {
+			if ( !dropped() ) {
+				super.addDateHeader( name, date );
+			}
+		}
+
+		@Override
+		public void addCookie( Cookie cookie ) {
+			if ( !dropped() ) {
+				super.addCookie( cookie );
+			}
+		}
+
+		@Override
+		public void setContentType( String type ) {
+			if ( !dropped() ) {
+				super.setContentType( type );
+			}
+		}
+
+		@Override
+		public void setContentLengthLong( long len ) {
+			if ( !dropped() ) {
+				super.setContentLengthLong( len );
+			}
+		}
+
+		@Override
+		public void setContentLength( int len ) {
+			if ( !dropped() ) {
+				super.setContentLength( len );
+			}
+		}
+
+		@Override
+		public void setCharacterEncoding( String charset ) {
+			if ( !dropped() ) {
+				super.setCharacterEncoding( charset );
+			}
+		}
+	}
+
+	/**
+	 * Names and daemonizes the request threads
+	 */
+	static class NamedThreadFactory implements ThreadFactory {
+
+		private final String		prefix;
+		private final AtomicInteger	count	= new AtomicInteger( 0 );
+
+		NamedThreadFactory( String prefix ) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread( Runnable r ) {
+			Thread t = new Thread( r, prefix + count.incrementAndGet() );
+			t.setDaemon( true );
+			return t;
+		}
+	}
+}
@@ -18,30 +18,158 @@
 package ortus.boxlang.servlet;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import jakarta.servlet.Servlet;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
+import jakarta.servlet.UnavailableException;
+import jakarta.servlet.http.HttpServletMapping;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import ortus.boxlang.runtime.BoxRuntime;
 import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.servlet.ServletMetrics.RequestMetrics;
+import ortus.boxlang.servlet.SlowRequestDetector.InFlightRequest;
 import ortus.boxlang.web.WebRequestExecutor;
 import ortus.boxlang.web.exchange.BoxHTTPServletExchange;
+import ortus.boxlang.web.exchange.EventStreamRegistry;
+import ortus.boxlang.web.exchange.ExchangePool;
+import ortus.boxlang.web.exchange.IBoxHTTPExchange.FileUpload;
+import ortus.boxlang.web.exchange.InitParameters;
+import ortus.boxlang.web.exchange.RequestLimitException;
+import ortus.boxlang.web.exchange.ServletExchangeSettings;
 
 /**
  * The BoxLangServlet is a servlet that can be used to run BoxLang code in a web application.
  */
 public class BoxLangServlet implements Servlet {
 
-	ServletConfig	config;
-	BoxRuntime		runtime;
+	ServletConfig				config;
+
+	/**
+	 * The runtime. Null until it has started, which is after init() returns in background startup mode.
+	 */
+	volatile BoxRuntime			runtime;
+
+	/**
+	 * Completed when the runtime has started, or has failed to
+	 */
+	CompletableFuture<Void>		runtimeReady		= new CompletableFuture<>();
+
+	/**
+	 * How long a request waits for the runtime to finish starting in the background, in milliseconds
+	 */
+	int							startupWait;
+
+	/**
+	 * The Retry-After, in seconds, of the 503 sent to a request which gave up waiting for the runtime
+	 */
+	int							startupRetryAfter;
+
+	/**
+	 * The timings of the servlet startup
+	 */
+	StartupTimings				startupTimings;
+
+	/**
+	 * The templates to compile and the URLs to request at startup. Null if there are none.
+	 */
+	TemplateWarmup				warmup;
+
+	/**
+	 * How the templates compiled at startup went. Null if none were.
+	 */
+	TemplateWarmup.Report		precompileReport;
+
+	/**
+	 * Cache of resolved paths for the servlet mapping interceptor. Null if disabled.
+	 */
+	ResolvedPathCache			pathCache;
+
+	/**
+	 * Runs requests on our own executor when async mode is enabled. Null if disabled.
+	 */
+	AsyncRequestProcessor		asyncProcessor;
+
+	/**
+	 * Reports virtual threads pinned to their carrier. Null if disabled.
+	 */
+	VirtualThreadPinningMonitor	pinningMonitor;
+
+	/**
+	 * The settings passed to every exchange
+	 */
+	ServletExchangeSettings		exchangeSettings	= ServletExchangeSettings.DEFAULTS;
+
+	/**
+	 * The Server-Sent Events streams started by this servlet's requests
+	 */
+	EventStreamRegistry			eventStreams;
+
+	/**
+	 * Reuses exchanges between requests. Null if disabled.
+	 */
+	ExchangePool				exchangePool;
+
+	/**
+	 * The request metrics. Null if disabled.
+	 */
+	ServletMetrics				metrics;
+
+	/**
+	 * The path, within the web application, the metrics are served on in the Prometheus format. Null if not served.
+	 * The servlet only sees paths it is mapped to, so this needs a mapped extension (<code>/boxlang-metrics.bxm</code>)
+	 * or a <code>url-pattern</code> of its own.
+	 */
+	String						metricsPath;
+
+	/**
+	 * The client addresses the metrics and slow request paths answer, from the "boxlang-diagnostics-allow" init-param.
+	 * Empty unless set, so the paths answer nobody by default.
+	 */
+	Set<InetAddress>			diagnosticsAllow	= Set.of();
+
+	/**
+	 * Whether the metrics and slow request paths answer every client, set by "*" in "boxlang-diagnostics-allow"
+	 */
+	boolean						diagnosticsPublic;
+
+	/**
+	 * The token which lets a client see the metrics and slow requests from any address, sent as
+	 * <code>Authorization: Bearer &lt;token&gt;</code>. Null if not set.
+	 */
+	byte[]						diagnosticsToken;
+
+	/**
+	 * Samples requests running longer than a threshold. Null if disabled.
+	 */
+	SlowRequestDetector			slowRequests;
+
+	/**
+	 * The path, within the web application, the slow requests are served on as JSON. Null if not served. Mapped like
+	 * {@link #metricsPath}.
+	 */
+	String						slowRequestsPath;
 
 	/**
 	 * Initialize the BoxLang servlet.
@@ -52,7 +180,8 @@ public class BoxLangServlet implements Servlet {
 	 */
 	public void init( ServletConfig config ) throws ServletException {
 		System.out.println( "Ortus BoxLang Servlet initializing..." );
-		this.config = config;
+		this.config			= config;
+		this.startupTimings	= new StartupTimings();
 
 		// detect directory the jar lives that this class was loaded from
 		Path jarPath;
@@ -83,17 +212,204 @@ public class BoxLangServlet implements Servlet {
 			System.out.println( "Ortus BoxLang Servlet config path: " + configPath );
 		}
 		System.out.println( "Ortus BoxLang Servlet home: " + BLHome.toString() );
-		this.runtime = BoxRuntime.getInstance( debug, configPath, BLHome.toString() ).waitForStart();
+		startupTimings.phase( "home" );
+
+		this.exchangeSettings	= ServletExchangeSettings.fromServletConfig( config );
+		this.eventStreams		= new EventStreamRegistry();
+
+		if ( exchangeSettings.isMetrics() ) {
+			this.metrics		= new ServletMetrics(
+			    config.getServletContext().getContextPath(),
+			    config.getServletName(),
+			    InitParameters.getBoolean( config, "boxlang-metrics-jmx", true )
+			);
+			this.metricsPath	= InitParameters.getString( config, "boxlang-metrics-path", null );
+			System.out.println( "Ortus BoxLang Servlet request metrics enabled" + ( metricsPath == null ? "" : " (Prometheus path: " + metricsPath + ")" ) );
+		}
+
+		int slowRequestThreshold = InitParameters.getInt( config, "boxlang-slow-request-threshold", 0 );
+		if ( slowRequestThreshold > 0 ) {
+			this.slowRequests = new SlowRequestDetector( slowRequestThreshold, InitParameters.getBoolean( config, "boxlang-slow-request-log", true ) );
+			this.slowRequests.start( Math.max( 10, InitParameters.getInt( config, "boxlang-slow-request-interval", 1000 ) ) );
+			this.slowRequestsPath = InitParameters.getString( config, "boxlang-slow-requests-path", null );
+			System.out.println( "Ortus BoxLang Servlet slow request threshold: " + slowRequestThreshold + "ms" );
+		}
+
+		Set<InetAddress> allow = new HashSet<>();
+		for ( String address : InitParameters.getList( config, "boxlang-diagnostics-allow" ) ) {
+			if ( address.equals( "*" ) ) {
+				this.diagnosticsPublic = true;
+				continue;
+			}
+			try {
+				allow.add( InetAddress.getByName( address ) );
+			} catch ( UnknownHostException e ) {
+				throw new ServletException( "Init-param [boxlang-diagnostics-allow] has an unknown address [" + address + "]", e );
+			}
+		}
+		this.diagnosticsAllow = Set.copyOf( allow );
+		String diagnosticsToken = InitParameters.getString( config, "boxlang-diagnostics-token", null );
+		if ( diagnosticsToken != null ) {
+			this.diagnosticsToken = diagnosticsToken.getBytes( StandardCharsets.UTF_8 );
+		}
+		if ( ( this.metricsPath != null || this.slowRequestsPath != null ) && !this.diagnosticsPublic && this.diagnosticsAllow.isEmpty()
+		    && this.diagnosticsToken == null ) {
+			System.err.println(
+			    "Ortus BoxLang Servlet diagnostics paths are set, but answer nobody until boxlang-diagnostics-allow or boxlang-diagnostics-token is set" );
+		}
+
+		int exchangePoolSize = InitParameters.getInt( config, "boxlang-exchange-pool-size", 0 );
+		if ( exchangePoolSize > 0 ) {
+			// Debug mode poisons released exchanges to catch code which keeps them past the request
+			this.exchangePool = new ExchangePool( exchangePoolSize, Boolean.TRUE.equals( debug ) );
+			System.out.println( "Ortus BoxLang Servlet exchange pool size: " + exchangePoolSize );
+		}
+
+		if ( InitParameters.getBoolean( config, "boxlang-path-cache", true ) ) {
+			this.pathCache = ResolvedPathCache.forContext(
+			    config.getServletContext(),
+			    InitParameters.getInt( config, "boxlang-path-cache-max-size", 10000 ),
+			    InitParameters.getInt( config, "boxlang-path-cache-ttl", 0 ),
+			    InitParameters.getBoolean( config, "boxlang-path-cache-watch", false )
+			);
+		}
+
+		// Async mode runs requests on our own executor so the container threads are freed up right away
+		// Virtual threads only make sense in async mode, so picking them turns async mode on
+		String	threadMode	= config.getInitParameter( "boxlang-thread-mode" );
+		boolean	virtual		= threadMode != null && threadMode.trim().equalsIgnoreCase( "virtual" );
+		if ( threadMode != null && !virtual && !threadMode.trim().equalsIgnoreCase( "platform" ) ) {
+			throw new ServletException( "Init-param [boxlang-thread-mode] must be [platform] or [virtual], but got [" + threadMode + "]" );
+		}
+		if ( virtual || InitParameters.getBoolean( config, "boxlang-async", false ) ) {
+			int timeout = InitParameters.getInt( config, "boxlang-async-timeout", 0 );
+			if ( virtual ) {
+				this.asyncProcessor = AsyncRequestProcessor.ofVirtualThreads( timeout );
+				System.out.println( "Ortus BoxLang Servlet async mode enabled with virtual threads (timeout: " + timeout + "ms)" );
+			} else {
+				int threads = InitParameters.getInt( config, "boxlang-async-threads", 200 );
+				this.asyncProcessor = new AsyncRequestProcessor( threads, InitParameters.getInt( config, "boxlang-async-queue-size", 1000 ), timeout );
+				System.out.println( "Ortus BoxLang Servlet async mode enabled with " + threads + " threads (timeout: " + timeout + "ms)" );
+			}
+			// Virtual threads are unbounded, so this is what protects the backends
+			int maxConcurrent = InitParameters.getInt( config, "boxlang-max-concurrent-requests", virtual ? 1000 : 0 );
+			if ( maxConcurrent > 0 ) {
+				this.asyncProcessor.withAdmissionLimit( maxConcurrent, InitParameters.getInt( config, "boxlang-admission-timeout", 30000 ) );
+				System.out.println( "Ortus BoxLang Servlet admission limit: " + maxConcurrent + " concurrent requests" );
+			}
+			if ( virtual && InitParameters.getBoolean( config, "boxlang-virtual-thread-pinning-report", false ) ) {
+				this.pinningMonitor = new VirtualThreadPinningMonitor();
+				this.pinningMonitor.start( Duration.ofMillis( InitParameters.getInt( config, "boxlang-virtual-thread-pinning-threshold", 20 ) ) );
+			}
+		}
 
-		// Register the servlet mapping interceptor
-		this.runtime.getInterceptorService().register( new ServletMappingInterceptor( config.getServletContext() ) );
+		// Compile the templates before the first requests need them, and request the warm-up URLs
+		List<String>	precompile	= InitParameters.getList( config, "boxlang-precompile" );
+		List<URI>		warmupUrls	= new ArrayList<>();
+		for ( String url : InitParameters.getList( config, "boxlang-warmup-urls" ) ) {
+			try {
+				warmupUrls.add( new URI( url ) );
+			} catch ( URISyntaxException e ) {
+				throw new ServletException( "Init-param [boxlang-warmup-urls] has an invalid URL [" + url + "]", e );
+			}
+		}
+		if ( !precompile.isEmpty() || !warmupUrls.isEmpty() ) {
+			this.warmup = new TemplateWarmup( config.getServletContext().getRealPath( "/" ), precompile,
+			    InitParameters.getInt( config, "boxlang-precompile-threads", 0 ), warmupUrls );
+		}
+		startupTimings.phase( "settings" );
+
+		// Background startup lets the container finish deploying while the runtime starts
+		String startupMode = config.getInitParameter( "boxlang-startup-mode" );
+		if ( startupMode != null && startupMode.trim().equalsIgnoreCase( "background" ) ) {
+			this.startupWait		= InitParameters.getInt( config, "boxlang-startup-wait", 0 );
+			this.startupRetryAfter	= InitParameters.getInt( config, "boxlang-startup-retry-after", 5 );
+			Boolean	runtimeDebug	= debug;
+			Path	runtimeHome		= BLHome;
+			new Thread( () -> startRuntimeInBackground( runtimeDebug, configPath, runtimeHome ), "boxlang-runtime-startup" ).start();
+			System.out.println( "Ortus BoxLang Servlet registered, starting the runtime in the background" );
+		} else if ( startupMode == null || startupMode.trim().equalsIgnoreCase( "blocking" ) ) {
+			startRuntime( debug, configPath, BLHome );
+		} else {
+			throw new ServletException( "Init-param [boxlang-startup-mode] must be [blocking] or [background], but got [" + startupMode + "]" );
+		}
+	}
+
+	/**
+	 * Start the runtime and register the servlet mapping interceptor with it. Runs in init(), or on the startup thread
+	 * in background startup mode.
+	 *
+	 * @param debug      The debug mode, or null to use the runtime's config
+	 * @param configPath The path to the runtime config, or null
+	 * @param home       The BoxLang home
+	 */
+	private void startRuntime( Boolean debug, String configPath, Path home ) {
+		BoxRuntime instance = BoxRuntime.getInstance( debug, configPath, home.toString() );
+		startupTimings.phase( "runtime-boot" );
+		// The rest of the startup, including loading and activating the modules
+		instance.waitForStart();
+		startupTimings.phase( "runtime-start" );
+		instance.getInterceptorService().register( new ServletMappingInterceptor( config.getServletContext(), this.pathCache ) );
+		startupTimings.phase( "interceptors" );
+		if ( warmup != null && warmup.hasTemplates() ) {
+			this.precompileReport = warmup.precompile( instance, Boolean.TRUE.equals( debug ) );
+			startupTimings.phase( "precompile" );
+		}
 
-		System.out.println( "Ortus BoxLang Servlet initialized!" );
-		IStruct versionInfo = runtime.getVersionInfo();
+		this.runtime = instance;
+		startupTimings.ready();
+		runtimeReady.complete( null );
+
+		System.out.println( "Ortus BoxLang Servlet initialized in " + startupTimings );
+		IStruct versionInfo = instance.getVersionInfo();
 		System.out.println(
 		    "Ortus BoxLang Version: " + versionInfo.getAsString( Key.of( "version" ) ) + " (Built On: " + versionInfo.getAsString( Key.of( "buildDate" ) )
 		        + ")" );
 
+		if ( warmup != null && warmup.hasUrls() ) {
+			warmup.requestUrls();
+		}
+	}
+
+	/**
+	 * Start the runtime on the startup thread, in background startup mode
+	 */
+	private void startRuntimeInBackground( Boolean debug, String configPath, Path home ) {
+		try {
+			startRuntime( debug, configPath, home );
+		} catch ( Throwable e ) {
+			System.err.println( "Ortus BoxLang Servlet runtime failed to start: " + e.getMessage() );
+			e.printStackTrace();
+			runtimeReady.completeExceptionally( e );
+		}
+	}
+
+	/**
+	 * Wait for the runtime while it is still starting in the background. A request which waits longer than the
+	 * "boxlang-startup-wait" init-param gets a 503 with a Retry-After header.
+	 *
+	 * @param res The servlet response
+	 *
+	 * @return True if the runtime is ready, false if a 503 was sent
+	 *
+	 * @throws UnavailableException If the runtime failed to start, which takes the servlet out of service
+	 * @throws IOException          If the 503 can't be sent
+	 */
+	boolean awaitRuntime( HttpServletResponse res ) throws UnavailableException, IOException {
+		try {
+			runtimeReady.get( startupWait, TimeUnit.MILLISECONDS );
+			return true;
+		} catch ( TimeoutException e ) {
+			res.setHeader( "Retry-After", String.valueOf( startupRetryAfter ) );
+			res.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, "BoxLang is starting" );
+			return false;
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			res.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+			return false;
+		} catch ( ExecutionException e ) {
+			throw new UnavailableException( "The BoxLang runtime failed to start: " + e.getCause().getMessage() );
+		}
 	}
 
 	/**
@@ -107,16 +423,126 @@ public class BoxLangServlet implements Servlet {
 	 */
 	public void service( ServletRequest req, ServletResponse res ) throws ServletException, IOException {
 		// FusionReactor automatically tracks servlets
+		long start = System.nanoTime();
+		if ( metricsPath != null && isPathRequest( ( HttpServletRequest ) req, metricsPath ) ) {
+			sendMetrics( ( HttpServletRequest ) req, ( HttpServletResponse ) res );
+			return;
+		}
+		if ( slowRequestsPath != null && isPathRequest( ( HttpServletRequest ) req, slowRequestsPath ) ) {
+			sendSlowRequests( ( HttpServletRequest ) req, ( HttpServletResponse ) res );
+			return;
+		}
+		if ( runtime == null && !awaitRuntime( ( HttpServletResponse ) res ) ) {
+			return;
+		}
+		// Async requests are only possible if the container and any filters in front of us support them
+		if ( asyncProcessor != null && req.isAsyncSupported() && !req.isAsyncStarted() ) {
+			// The latency includes the time spent waiting for a thread
+			asyncProcessor.dispatch( ( HttpServletRequest ) req, ( HttpServletResponse ) res, ( request, response ) -> execute( request, response, start ) );
+			return;
+		}
+		execute( ( HttpServletRequest ) req, ( HttpServletResponse ) res, start );
+	}
+
+	/**
+	 * Build the url and form scopes ahead of BoxLang, which builds them for every request anyway. Doing it first means
+	 * a request over the limits gets a 4xx here, instead of the 500 error page it would get inside BoxLang. Any other
+	 * failure is left for BoxLang to raise, since the exchange throws it again when BoxLang asks for the scope.
+	 *
+	 * @param exchange The exchange
+	 *
+	 * @return The limit the request is over, or null
+	 */
+	static RequestLimitException checkRequestLimits( BoxHTTPServletExchange exchange ) {
+		try {
+			exchange.getRequestURLMap();
+		} catch ( RequestLimitException e ) {
+			return e;
+		} catch ( RuntimeException e ) {
+			// BoxLang gets it when it builds the url scope
+		}
+		try {
+			exchange.getRequestFormMap();
+		} catch ( RequestLimitException e ) {
+			return e;
+		} catch ( RuntimeException e ) {
+			// BoxLang gets it when it builds the form scope
+		}
+		return null;
+	}
+
+	/**
+	 * Execute the request on the current thread.
+	 *
+	 * @param req The servlet request.
+	 * @param res The servlet response.
+	 *
+	 * @throws ServletException If an error occurs during request processing.
+	 * @throws IOException      If an I/O error occurs.
+	 */
+	void execute( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException {
+		execute( req, res, System.nanoTime() );
+	}
+
+	/**
+	 * Execute the request on the current thread.
+	 *
+	 * @param req   The servlet request.
+	 * @param res   The servlet response.
+	 * @param start When the servlet received the request, from System.nanoTime()
+	 *
+	 * @throws ServletException If an error occurs during request processing.
+	 * @throws IOException      If an I/O error occurs.
+	 */
+	void execute( HttpServletRequest req, HttpServletResponse res, long start ) throws ServletException, IOException {
 		// Note: web root can be different every request if this is a multi-site server or using ModCFML
-		var exchange = new BoxHTTPServletExchange( ( HttpServletRequest ) req, ( HttpServletResponse ) res, this );
+		var				exchange		= exchangePool != null ? exchangePool.acquire( req, res, this, exchangeSettings, eventStreams )
+		    : new BoxHTTPServletExchange( req, res, this, exchangeSettings, eventStreams );
+		RequestMetrics	requestMetrics	= metrics == null ? null : metrics.started( getMappingPattern( req ) );
+		InFlightRequest	inFlight		= slowRequests == null ? null : slowRequests.begin( req, start );
+		boolean			failed			= true;
 		try {
+			RequestLimitException limit = checkRequestLimits( exchange );
+			if ( limit != null ) {
+				res.sendError( limit.getStatus(), limit.getMessage() );
+				failed = false;
+				return;
+			}
 			WebRequestExecutor.execute( exchange, config.getServletContext().getRealPath( "/" ), false );
+			failed = false;
 		} finally {
-			// Clean up file uploads
-			for ( var upload : exchange.getUploadData() ) {
-				try {
-					upload.tmpPath().toFile().delete();
-				} catch ( Exception e ) {
+			try {
+				// Send whatever output is still buffered and end a compressed response
+				exchange.finishResponse();
+			} finally {
+				if ( inFlight != null ) {
+					slowRequests.end( inFlight );
+				}
+				// Clean up file uploads
+				FileUpload[]	uploads		= exchange.getUploadData();
+				long			uploadBytes	= 0;
+				for ( var upload : uploads ) {
+					try {
+						if ( requestMetrics != null ) {
+							uploadBytes += upload.tmpPath().toFile().length();
+						}
+						upload.tmpPath().toFile().delete();
+					} catch ( Exception e ) {
+					}
+				}
+				if ( requestMetrics != null ) {
+					metrics.finished(
+					    requestMetrics,
+					    System.nanoTime() - start,
+					    failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : res.getStatus(),
+					    req.getContentLengthLong(),
+					    exchange.getResponseBytes(),
+					    uploads.length,
+					    uploadBytes
+					);
+				}
+				if ( exchangePool != null ) {
+					exchangePool.release( exchange );
 				}
 			}
 		}
@@ -126,8 +552,180 @@ public class BoxLangServlet implements Servlet {
 	 * Destroy the servlet.
 	 */
 	public void destroy() {
-		this.runtime.shutdown();
-		this.runtime = null;
+		if ( this.eventStreams != null ) {
+			this.eventStreams.shutdown();
+		}
+		if ( this.metrics != null ) {
+			this.metrics.close();
+			this.metrics = null;
+		}
+		if ( this.slowRequests != null ) {
+			this.slowRequests.stop();
+			this.slowRequests = null;
+		}
+		if ( this.asyncProcessor != null ) {
+			this.asyncProcessor.shutdown( 30000 );
+			this.asyncProcessor = null;
+		}
+		if ( this.pinningMonitor != null ) {
+			this.pinningMonitor.stop();
+			this.pinningMonitor = null;
+		}
+		if ( this.pathCache != null ) {
+			// Other servlets in this context may share the cache
+			ResolvedPathCache.release( config.getServletContext(), this.pathCache );
+			this.pathCache = null;
+		}
+		BoxRuntime started = this.runtime;
+		if ( started != null ) {
+			started.shutdown();
+			this.runtime = null;
+		} else {
+			// Still starting in the background, so shut it down once it has
+			runtimeReady.thenRun( () -> this.runtime.shutdown() );
+		}
+	}
+
+	/**
+	 * Get the timings of the servlet startup.
+	 *
+	 * @return The timings
+	 */
+	public StartupTimings getStartupTimings() {
+		return this.startupTimings;
+	}
+
+	/**
+	 * Get the request metrics.
+	 *
+	 * @return The metrics, or null if disabled via the "boxlang-metrics" init-param.
+	 */
+	public ServletMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Get the servlet mapping pattern a request matched, which is what the metrics are broken down by
+	 *
+	 * @param req The servlet request
+	 *
+	 * @return The pattern, such as <code>*.bxm</code>
+	 */
+	static String getMappingPattern( HttpServletRequest req ) {
+		HttpServletMapping mapping = req.getHttpServletMapping();
+		return mapping == null ? "" : mapping.getPattern();
+	}
+
+	/**
+	 * Whether a request is for one of the servlet's own paths
+	 *
+	 * @param req  The servlet request
+	 * @param path The path within the web application
+	 *
+	 * @return True if the request is for the path
+	 */
+	static boolean isPathRequest( HttpServletRequest req, String path ) {
+		String uri = req.getRequestURI();
+		return uri.length() == req.getContextPath().length() + path.length() && uri.endsWith( path );
+	}
+
+	/**
+	 * Whether a client may see the metrics and slow requests: it sent the diagnostics token, or its address is in the
+	 * allow-list. Nobody may unless one of them is set.
+	 * <p>
+	 * The address is the one the container sees. Behind a proxy on the same host (nginx, Apache, mod_cfml) every
+	 * client has the proxy's address, often localhost, so listing that address opens the paths to the internet. Use
+	 * the token there, or have the proxy block the paths.
+	 *
+	 * @param req The servlet request
+	 * @param res The servlet response, which gets a 403 if not
+	 *
+	 * @return True if allowed
+	 *
+	 * @throws IOException If the error can't be sent
+	 */
+	boolean isDiagnosticsAllowed( HttpServletRequest req, HttpServletResponse res ) throws IOException {
+		if ( diagnosticsPublic || hasDiagnosticsToken( req )
+		    || ( !diagnosticsAllow.isEmpty() && diagnosticsAllow.contains( InetAddress.getByName( req.getRemoteAddr() ) ) ) ) {
+			return true;
+		}
+		res.sendError( HttpServletResponse.SC_FORBIDDEN );
+		return false;
+	}
+
+	/**
+	 * Whether a request carries the diagnostics token. Compared in constant time, so it can't be guessed a byte at a
+	 * time.
+	 *
+	 * @param req The servlet request
+	 *
+	 * @return True if the token is set and the request's bearer token matches it
+	 */
+	private boolean hasDiagnosticsToken( HttpServletRequest req ) {
+		String authorization = req.getHeader( "Authorization" );
+		if ( diagnosticsToken == null || authorization == null || !authorization.regionMatches( true, 0, "Bearer ", 0, 7 ) ) {
+			return false;
+		}
+		return MessageDigest.isEqual( diagnosticsToken, authorization.substring( 7 ).trim().getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * Send the metrics in the Prometheus text format
+	 *
+	 * @param req The servlet request
+	 * @param res The servlet response
+	 *
+	 * @throws IOException If the response can't be written
+	 */
+	void sendMetrics( HttpServletRequest req, HttpServletResponse res ) throws IOException {
+		if ( !isDiagnosticsAllowed( req, res ) ) {
+			return;
+		}
+		res.setContentType( "text/plain; version=0.0.4; charset=UTF-8" );
+		res.setHeader( "Cache-Control", "no-cache" );
+		metrics.writePrometheus( res.getWriter() );
+		startupTimings.writePrometheus( res.getWriter() );
+		if ( precompileReport != null ) {
+			precompileReport.writePrometheus( res.getWriter() );
+		}
+		if ( pinningMonitor != null ) {
+			pinningMonitor.writePrometheus( res.getWriter() );
+		}
+	}
+
+	/**
+	 * Send the running requests as JSON, with the last sample of the slow ones
+	 *
+	 * @param req The servlet request
+	 * @param res The servlet response
+	 *
+	 * @throws IOException If the response can't be written
+	 */
+	void sendSlowRequests( HttpServletRequest req, HttpServletResponse res ) throws IOException {
+		if ( !isDiagnosticsAllowed( req, res ) ) {
+			return;
+		}
+		res.setContentType( "application/json; charset=UTF-8" );
+		res.setHeader( "Cache-Control", "no-cache" );
+		slowRequests.writeJson( res.getWriter() );
+	}
+
+	/**
+	 * Get the resolved path cache used by the servlet mapping interceptor.
+	 *
+	 * @return The cache, or null if disabled via the "boxlang-path-cache" init-param.
+	 */
+	public ResolvedPathCache getPathCache() {
+		return this.pathCache;
+	}
+
+	/**
+	 * Get the Server-Sent Events streams started by this servlet's requests, to broadcast to them by channel.
+	 *
+	 * @return The registry
+	 */
+	public EventStreamRegistry getEventStreamRegistry() {
+		return this.eventStreams;
 	}
 
 	/**
@@ -141,6 +739,7 @@ public class BoxLangServlet implements Servlet {
 	 * Get the BoxLang Servlet information.
 	 */
 	public String getServletInfo() {
-		return "Ortus BoxLang " + this.runtime.getVersionInfo().getOrDefault( Key.version, "" ).toString();
+		BoxRuntime started = this.runtime;
+		return started == null ? "Ortus BoxLang (starting)" : "Ortus BoxLang " + started.getVersionInfo().getOrDefault( Key.version, "" ).toString();
 	}
 }
@@ -0,0 +1,167 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram in microseconds, in the style of HdrHistogram.
+ * <p>
+ * Every power of two is split into 8 linear buckets, so any value is reported within 12.5% of what was recorded,
+ * from 1 microsecond up to about 12 days, in a fixed 304 counters. Recording is an index calculation and one atomic
+ * increment, and never allocates.
+ */
+final class LatencyHistogram {
+
+	/**
+	 * Each power of two is split into 2^SUB_BUCKET_BITS buckets
+	 */
+	private static final int	SUB_BUCKET_BITS		= 3;
+	private static final int	SUB_BUCKET_COUNT	= 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The highest power of two tracked. Larger values are counted in the last bucket.
+	 */
+	private static final int	MAX_EXPONENT		= 39;
+	private static final int	BUCKET_COUNT		= ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray	counts			= new AtomicLongArray( BUCKET_COUNT );
+	private final LongAdder			count			= new LongAdder();
+	private final LongAdder			sum				= new LongAdder();
+	private final AtomicLong		max				= new AtomicLong();
+
+	/**
+	 * Record a latency
+	 *
+	 * @param micros The latency in microseconds
+	 */
+	void record( long micros ) {
+		long value = Math.max( 0, micros );
+		counts.incrementAndGet( indexOf( value ) );
+		count.increment();
+		sum.add( value );
+		long current;
+		while ( value > ( current = max.get() ) && !max.compareAndSet( current, value ) ) {
+			// Lost a race with a bigger or concurrent value, try again
+		}
+	}
+
+	/**
+	 * The number of values recorded
+	 *
+	 * @return The count
+	 */
+	long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * The sum of the values recorded
+	 *
+	 * @return The sum in microseconds
+	 */
+	long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * The largest value recorded
+	 *
+	 * @return The max in microseconds
+	 */
+	long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * The value below which the given share of the recorded values fall
+	 *
+	 * @param percentile The percentile, from 0 to 100
+	 *
+	 * @return The highest value of the bucket the percentile falls in, in microseconds, or 0 if nothing was recorded
+	 */
+	long getValueAtPercentile( double percentile ) {
+		// The counters may move while we read them, so work from what they add up to
+		long[]	snapshot	= new long[ BUCKET_COUNT ];
+		long	total		= 0;
+		for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+			snapshot[ i ]	= counts.get( i );
+			total			+= snapshot[ i ];
+		}
+		if ( total == 0 ) {
+			return 0;
+		}
+		long	target	= Math.max( 1, ( long ) Math.ceil( total * Math.min( 100, Math.max( 0, percentile ) ) / 100 ) );
+		long	seen	= 0;
+		for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+			seen += snapshot[ i ];
+			if ( seen >= target ) {
+				return Math.min( highestValueOf( i ), max.get() );
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * The bucket a value is counted in
+	 *
+	 * @param value The value, not negative
+	 *
+	 * @return The bucket index
+	 */
+	static int indexOf( long value ) {
+		if ( value < SUB_BUCKET_COUNT ) {
+			return ( int ) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros( value );
+		if ( exponent > MAX_EXPONENT ) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = ( int ) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKET_COUNT - 1 );
+		return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * The lowest value counted in a bucket
+	 *
+	 * @param index The bucket index
+	 *
+	 * @return The value
+	 */
+	static long lowestValueOf( int index ) {
+		if ( index < SUB_BUCKET_COUNT ) {
+			return index;
+		}
+		int	exponent	= index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		int	subBucket	= index % SUB_BUCKET_COUNT;
+		return ( long ) ( SUB_BUCKET_COUNT + subBucket ) << ( exponent - SUB_BUCKET_BITS );
+	}
+
+	/**
+	 * The highest value counted in a bucket
+	 *
+	 * @param index The bucket index
+	 *
+	 * @return The value
+	 */
+	static long highestValueOf( int index ) {
+		return index == BUCKET_COUNT - 1 ? Long.MAX_VALUE : lowestValueOf( index + 1 ) - 1;
+	}
+}
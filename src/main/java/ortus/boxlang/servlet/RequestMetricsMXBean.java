@@ -0,0 +1,96 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.util.Map;
+
+/**
+ * The request metrics of a servlet path pattern, as seen over JMX. Latencies are in milliseconds.
+ */
+public interface RequestMetricsMXBean {
+
+	/**
+	 * @return The servlet mapping pattern, or "all" for the totals
+	 */
+	String getPattern();
+
+	/**
+	 * @return The number of requests finished
+	 */
+	long getRequestCount();
+
+	/**
+	 * @return The number of requests running right now
+	 */
+	long getInFlight();
+
+	/**
+	 * @return The number of requests which ended with a 4xx or 5xx status, or an exception
+	 */
+	long getErrorCount();
+
+	/**
+	 * @return The error counts by status code
+	 */
+	Map<String, Long> getErrorCountsByStatus();
+
+	/**
+	 * @return The request body bytes received
+	 */
+	long getBytesIn();
+
+	/**
+	 * @return The response body bytes sent
+	 */
+	long getBytesOut();
+
+	/**
+	 * @return The number of files uploaded
+	 */
+	long getUploadCount();
+
+	/**
+	 * @return The bytes of the files uploaded
+	 */
+	long getUploadBytes();
+
+	/**
+	 * @return The mean latency
+	 */
+	double getLatencyMean();
+
+	/**
+	 * @return The median latency
+	 */
+	double getLatencyP50();
+
+	/**
+	 * @return The 90th percentile latency
+	 */
+	double getLatencyP90();
+
+	/**
+	 * @return The 99th percentile latency
+	 */
+	double getLatencyP99();
+
+	/**
+	 * @return The longest latency
+	 */
+	double getLatencyMax();
+}
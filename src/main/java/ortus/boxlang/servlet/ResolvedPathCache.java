@@ -0,0 +1,333 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.servlet.ServletContext;
+import ortus.boxlang.runtime.util.ResolvedFilePath;
+
+/**
+ * I am a bounded, concurrent cache of path to {@link ResolvedFilePath} lookups for a single {@link ServletContext}.
+ * One instance is stored as an attribute of each servlet context (see {@link #forContext(ServletContext, int, long, boolean)})
+ * so multi-site servers never share resolutions between sites. Every servlet which gets it hands it back with
+ * {@link #release(ServletContext, ResolvedPathCache)}, and the last one to do so closes it.
+ *
+ * Matches are always cached. Misses (paths the container could not map) are only cached when they can go away again,
+ * which is when there is a TTL or a file watcher, since otherwise a file created later would never be found.
+ * A cache hit does a single map lookup and a clock read, and returns the same immutable {@link ResolvedFilePath}
+ * instance every time.
+ */
+public class ResolvedPathCache {
+
+	/**
+	 * The servlet context attribute the cache is stored under
+	 */
+	public static final String							ATTRIBUTE_NAME	= ResolvedPathCache.class.getName();
+
+	/**
+	 * Returned by {@link #get(String)} when the servlet container could not resolve the path
+	 */
+	public static final ResolvedFilePath				NOT_FOUND		= ResolvedFilePath.ofReal( "/", "", "", Path.of( "" ) );
+
+	/**
+	 * The cached lookups
+	 */
+	private final ConcurrentHashMap<String, Entry>		entries;
+
+	/**
+	 * The max number of entries to keep
+	 */
+	private final int									maxSize;
+
+	/**
+	 * How long an entry lives, in nanoseconds. 0 or less means forever.
+	 */
+	private final long									ttlNanos;
+
+	/**
+	 * Hit/miss/eviction counters
+	 */
+	private final LongAdder								hits			= new LongAdder();
+	private final LongAdder								misses			= new LongAdder();
+	private final LongAdder								evictions		= new LongAdder();
+
+	/**
+	 * The file watcher, if enabled
+	 */
+	private WatchService								watchService;
+
+	/**
+	 * The number of servlets using this cache, guarded by the servlet context it belongs to
+	 */
+	private int											users;
+
+	/**
+	 * Cached lookup
+	 *
+	 * @param value     The resolved path, or {@link #NOT_FOUND}
+	 * @param expiresAt The System.nanoTime() this entry expires at
+	 */
+	private record Entry( ResolvedFilePath value, long expiresAt ) {
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param maxSize    The max number of entries to keep
+	 * @param ttlSeconds How long to keep each entry, in seconds. 0 or less means forever.
+	 */
+	public ResolvedPathCache( int maxSize, long ttlSeconds ) {
+		this.maxSize	= Math.max( 1, maxSize );
+		this.ttlNanos	= ttlSeconds > 0 ? TimeUnit.SECONDS.toNanos( ttlSeconds ) : 0;
+		this.entries	= new ConcurrentHashMap<>( Math.min( this.maxSize, 1024 ) );
+	}
+
+	/**
+	 * Get the cache for a servlet context, creating it if neccessary.
+	 *
+	 * @param servletContext The servlet context
+	 * @param maxSize        The max number of entries to keep
+	 * @param ttlSeconds     How long to keep each entry, in seconds. 0 or less means forever.
+	 * @param watch          Whether to clear the cache when files under the web root change
+	 *
+	 * @return The cache for this servlet context
+	 */
+	public static ResolvedPathCache forContext( ServletContext servletContext, int maxSize, long ttlSeconds, boolean watch ) {
+		synchronized ( servletContext ) {
+			ResolvedPathCache cache = ( ResolvedPathCache ) servletContext.getAttribute( ATTRIBUTE_NAME );
+			if ( cache == null ) {
+				cache = new ResolvedPathCache( maxSize, ttlSeconds );
+				if ( watch ) {
+					String webRoot = servletContext.getRealPath( "/" );
+					if ( webRoot != null ) {
+						cache.watch( Path.of( webRoot ) );
+					}
+				}
+				servletContext.setAttribute( ATTRIBUTE_NAME, cache );
+			}
+			cache.users++;
+			return cache;
+		}
+	}
+
+	/**
+	 * Hand back a cache got from {@link #forContext(ServletContext, int, long, boolean)}. Once no servlet uses it
+	 * any more it is closed and removed from the servlet context.
+	 *
+	 * @param servletContext The servlet context
+	 * @param cache          The cache
+	 */
+	public static void release( ServletContext servletContext, ResolvedPathCache cache ) {
+		synchronized ( servletContext ) {
+			if ( --cache.users > 0 ) {
+				return;
+			}
+			if ( servletContext.getAttribute( ATTRIBUTE_NAME ) == cache ) {
+				servletContext.removeAttribute( ATTRIBUTE_NAME );
+			}
+		}
+		cache.close();
+	}
+
+	/**
+	 * Look up a path.
+	 *
+	 * @param path The path as passed to the servlet's getRealPath()
+	 *
+	 * @return The resolved path, {@link #NOT_FOUND} if the container could not resolve the path last time, or null if not cached.
+	 */
+	public ResolvedFilePath get( String path ) {
+		Entry entry = entries.get( path );
+		if ( entry == null ) {
+			misses.increment();
+			return null;
+		}
+		if ( entry.expiresAt != Long.MAX_VALUE && entry.expiresAt - System.nanoTime() < 0 ) {
+			entries.remove( path, entry );
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.value;
+	}
+
+	/**
+	 * Cache a lookup.
+	 *
+	 * @param path  The path as passed to the servlet's getRealPath()
+	 * @param value The resolved path, or null if the container could not resolve it
+	 */
+	public void put( String path, ResolvedFilePath value ) {
+		if ( value == null && ttlNanos == 0 && watchService == null ) {
+			// Nothing would ever expire the miss
+			return;
+		}
+		if ( entries.size() >= maxSize ) {
+			evict();
+		}
+		entries.put( path, new Entry( value == null ? NOT_FOUND : value, ttlNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + ttlNanos ) );
+	}
+
+	/**
+	 * Remove roughly a tenth of the entries to make room. The map is unordered, so this is an approximation
+	 * of random eviction which keeps the hot path free of any LRU bookkeeping.
+	 */
+	private void evict() {
+		int					toRemove	= Math.max( 1, maxSize / 10 );
+		long				now			= System.nanoTime();
+		Iterator<Entry>		it			= entries.values().iterator();
+		// Expired entries go first
+		while ( it.hasNext() && toRemove > 0 ) {
+			Entry entry = it.next();
+			if ( entry.expiresAt != Long.MAX_VALUE && entry.expiresAt - now < 0 ) {
+				it.remove();
+				toRemove--;
+				evictions.increment();
+			}
+		}
+		it = entries.values().iterator();
+		while ( it.hasNext() && toRemove > 0 ) {
+			it.next();
+			it.remove();
+			toRemove--;
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Clear all entries
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Get the number of cache hits
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of cache misses
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of entries evicted to make room
+	 *
+	 * @return The number of evictions
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Get the number of cached entries
+	 *
+	 * @return The number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Clear the cache whenever a file or folder is created or deleted under the given root.
+	 * The watcher runs on a single daemon thread until {@link #close()} is called.
+	 *
+	 * @param root The folder to watch
+	 */
+	void watch( Path root ) {
+		try {
+			WatchService service = FileSystems.getDefault().newWatchService();
+			Files.walkFileTree( root, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) throws IOException {
+					dir.register( service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE );
+					return FileVisitResult.CONTINUE;
+				}
+			} );
+			this.watchService = service;
+		} catch ( IOException e ) {
+			System.err.println( "Ortus BoxLang Servlet could not watch [" + root + "] for path cache invalidation: " + e.getMessage() );
+			return;
+		}
+
+		Thread watcher = new Thread( () -> {
+			try {
+				while ( true ) {
+					WatchKey key = watchService.take();
+					for ( WatchEvent<?> event : key.pollEvents() ) {
+						if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE ) {
+							Path created = ( ( Path ) key.watchable() ).resolve( ( Path ) event.context() );
+							if ( Files.isDirectory( created ) ) {
+								created.register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE );
+							}
+						}
+					}
+					clear();
+					key.reset();
+				}
+			} catch ( InterruptedException | java.nio.file.ClosedWatchServiceException e ) {
+				// shutting down
+			} catch ( IOException e ) {
+				System.err.println( "Ortus BoxLang Servlet path cache watcher stopped: " + e.getMessage() );
+			}
+		}, "boxlang-path-cache-watcher" );
+		watcher.setDaemon( true );
+		watcher.start();
+	}
+
+	/**
+	 * Stop the file watcher, if any, and clear the cache
+	 */
+	public void close() {
+		if ( watchService != null ) {
+			try {
+				watchService.close();
+			} catch ( IOException e ) {
+				// nothing to do
+			}
+			watchService = null;
+		}
+		clear();
+	}
+
+}
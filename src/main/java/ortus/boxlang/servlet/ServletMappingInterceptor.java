@@ -33,7 +33,12 @@ import ortus.boxlang.runtime.util.ResolvedFilePath;
 @Interceptor( autoLoad = false )
 public class ServletMappingInterceptor extends BaseInterceptor {
 
-	private ServletContext servletContext;
+	private ServletContext		servletContext;
+
+	/**
+	 * Cache of resolved paths for this servlet context. Null if caching is disabled.
+	 */
+	private ResolvedPathCache	pathCache;
 
 	/**
 	 * No Arg-Constructor
@@ -48,12 +53,59 @@ public class ServletMappingInterceptor extends BaseInterceptor {
 		this.servletContext = servletContext;
 	}
 
+	/**
+	 * Constructor
+	 *
+	 * @param servletContext The servlet context to resolve paths against
+	 * @param pathCache      The cache of resolved paths for this servlet context, or null to disable caching
+	 */
+	public ServletMappingInterceptor( ServletContext servletContext, ResolvedPathCache pathCache ) {
+		this.servletContext	= servletContext;
+		this.pathCache		= pathCache;
+	}
+
+	/**
+	 * Get the resolved path cache for this interceptor
+	 *
+	 * @return The cache, or null if caching is disabled
+	 */
+	public ResolvedPathCache getPathCache() {
+		return pathCache;
+	}
+
 	/**
 	 * Listen to the "onMissingMapping" event
 	 */
 	@InterceptionPoint
 	public void onMissingMapping( IStruct data ) {
-		String	path			= data.getAsString( Key.path );
+		String path = data.getAsString( Key.path );
+
+		if ( pathCache == null ) {
+			ResolvedFilePath resolved = resolve( path );
+			if ( resolved != null ) {
+				data.put( Key.resolvedFilePath, resolved );
+			}
+			return;
+		}
+
+		ResolvedFilePath resolved = pathCache.get( path );
+		if ( resolved == null ) {
+			resolved = resolve( path );
+			pathCache.put( path, resolved );
+		}
+		if ( resolved != null && resolved != ResolvedPathCache.NOT_FOUND ) {
+			data.put( Key.resolvedFilePath, resolved );
+		}
+	}
+
+	/**
+	 * Resolve a path using the servlet's getRealPath()
+	 *
+	 * @param path The path to resolve
+	 *
+	 * @return The resolved path, or null if the servlet container could not resolve it
+	 */
+	private ResolvedFilePath resolve( String path ) {
 		// Check if path contains "..". If so, get the path leading up to the first ".." and then resolve the rest of the path against that
 		// This is because the servlet's getRealPath() will not allow you to back up "above" the web root.
 		int		dotDotIndex		= path.indexOf( ".." );
@@ -110,16 +162,15 @@ public class ServletMappingInterceptor extends BaseInterceptor {
 			 * It's important that the absolute path is actually under the mapping path.
 			 */
 
-			data.put( Key.resolvedFilePath,
-			    // The servlet already makes the path "real", so we can use ofReal() for better performance
-			    ResolvedFilePath.ofReal(
-			        mappingName,
-			        mappingPath,
-			        relativePath.toString(),
-			        resolvedPath
-			    )
+			// The servlet already makes the path "real", so we can use ofReal() for better performance
+			return ResolvedFilePath.ofReal(
+			    mappingName,
+			    mappingPath,
+			    relativePath.toString(),
+			    resolvedPath
 			);
 		}
+		return null;
 	}
 
 }
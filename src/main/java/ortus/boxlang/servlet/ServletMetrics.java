@@ -0,0 +1,335 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Request metrics for a servlet: latency histograms, in-flight requests, bytes in and out, uploads and errors by
+ * status, kept for every servlet mapping pattern (such as <code>*.bxm</code>) and in total.
+ * <p>
+ * Recording only touches atomic counters. The metrics are published as JMX MXBeans named
+ * <code>ortus.boxlang:type=RequestMetrics,context=...,servlet=...,pattern=...</code>, and can be rendered in the
+ * Prometheus text format.
+ */
+public final class ServletMetrics {
+
+	/**
+	 * The max number of patterns tracked on their own. Requests for any others are counted under {@link #OTHER}.
+	 */
+	static final int									MAX_PATTERNS	= 100;
+
+	static final String									TOTAL			= "all";
+	static final String									OTHER			= "other";
+
+	private final RequestMetrics						total			= new RequestMetrics( TOTAL );
+	private final ConcurrentHashMap<String, RequestMetrics>	byPattern		= new ConcurrentHashMap<>();
+	private final List<ObjectName>						registered		= new ArrayList<>();
+	private final String								jmxDomain;
+
+	/**
+	 * Create the metrics of a servlet
+	 *
+	 * @param contextPath The context path of the web application
+	 * @param servletName The servlet name
+	 * @param jmx         Whether to publish the metrics over JMX
+	 */
+	public ServletMetrics( String contextPath, String servletName, boolean jmx ) {
+		this.jmxDomain = jmx
+		    ? "ortus.boxlang:type=RequestMetrics,context=" + ObjectName.quote( contextPath.isEmpty() ? "/" : contextPath ) + ",servlet="
+		        + ObjectName.quote( servletName )
+		    : null;
+		register( total );
+	}
+
+	/**
+	 * A request has started
+	 *
+	 * @param pattern The servlet mapping pattern of the request
+	 *
+	 * @return The metrics to pass to {@link #finished}
+	 */
+	public RequestMetrics started( String pattern ) {
+		RequestMetrics metrics = forPattern( pattern == null ? "" : pattern );
+		metrics.inFlight.increment();
+		total.inFlight.increment();
+		return metrics;
+	}
+
+	/**
+	 * A request has finished
+	 *
+	 * @param metrics     The metrics returned by {@link #started}
+	 * @param nanos       How long the request took
+	 * @param status      The response status, 500 if the request threw
+	 * @param bytesIn     The request body bytes, or -1 if unknown
+	 * @param bytesOut    The response body bytes
+	 * @param uploads     The number of files uploaded
+	 * @param uploadBytes The bytes of the files uploaded
+	 */
+	public void finished( RequestMetrics metrics, long nanos, int status, long bytesIn, long bytesOut, int uploads, long uploadBytes ) {
+		long micros = nanos / 1000;
+		metrics.record( micros, status, bytesIn, bytesOut, uploads, uploadBytes );
+		total.record( micros, status, bytesIn, bytesOut, uploads, uploadBytes );
+	}
+
+	/**
+	 * Write the metrics in the Prometheus text exposition format
+	 *
+	 * @param out Where to write them
+	 *
+	 * @throws IOException If they can't be written
+	 */
+	public void writePrometheus( Writer out ) throws IOException {
+		List<RequestMetrics> all = new ArrayList<>( new TreeMap<>( byPattern ).values() );
+
+		header( out, "boxlang_requests_total", "counter", "Requests finished" );
+		for ( RequestMetrics m : all ) {
+			sample( out, "boxlang_requests_total", m, null, m.histogram.getCount() );
+		}
+		header( out, "boxlang_requests_in_flight", "gauge", "Requests running right now" );
+		for ( RequestMetrics m : all ) {
+			sample( out, "boxlang_requests_in_flight", m, null, m.inFlight.sum() );
+		}
+		header( out, "boxlang_request_errors_total", "counter", "Requests which ended with a 4xx or 5xx status" );
+		for ( RequestMetrics m : all ) {
+			for ( Map.Entry<String, Long> error : m.getErrorCountsByStatus().entrySet() ) {
+				sample( out, "boxlang_request_errors_total", m, "status=\"" + error.getKey() + "\"", error.getValue() );
+			}
+		}
+		header( out, "boxlang_request_bytes_total", "counter", "Request body bytes received" );
+		for ( RequestMetrics m : all ) {
+			sample( out, "boxlang_request_bytes_total", m, null, m.bytesIn.sum() );
+		}
+		header( out, "boxlang_response_bytes_total", "counter", "Response body bytes sent" );
+		for ( RequestMetrics m : all ) {
+			sample( out, "boxlang_response_bytes_total", m, null, m.bytesOut.sum() );
+		}
+		header( out, "boxlang_uploads_total", "counter", "Files uploaded" );
+		for ( RequestMetrics m : all ) {
+			sample( out, "boxlang_uploads_total", m, null, m.uploads.sum() );
+		}
+		header( out, "boxlang_upload_bytes_total", "counter", "Bytes of the files uploaded" );
+		for ( RequestMetrics m : all ) {
+			sample( out, "boxlang_upload_bytes_total", m, null, m.uploadBytes.sum() );
+		}
+		header( out, "boxlang_request_duration_seconds", "summary", "Request latency" );
+		for ( RequestMetrics m : all ) {
+			for ( String quantile : new String[] { "0.5", "0.9", "0.99" } ) {
+				double seconds = m.histogram.getValueAtPercentile( Double.parseDouble( quantile ) * 100 ) / 1e6;
+				out.write( "boxlang_request_duration_seconds{" + labels( m ) + ",quantile=\"" + quantile + "\"} " + seconds + "\n" );
+			}
+			out.write( "boxlang_request_duration_seconds_sum{" + labels( m ) + "} " + ( m.histogram.getSum() / 1e6 ) + "\n" );
+			out.write( "boxlang_request_duration_seconds_count{" + labels( m ) + "} " + m.histogram.getCount() + "\n" );
+		}
+	}
+
+	/**
+	 * Get the totals across all patterns
+	 *
+	 * @return The totals
+	 */
+	public RequestMetrics getTotal() {
+		return total;
+	}
+
+	/**
+	 * Unregister the JMX beans. Called when the servlet is destroyed.
+	 */
+	public void close() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		synchronized ( registered ) {
+			for ( ObjectName name : registered ) {
+				try {
+					server.unregisterMBean( name );
+				} catch ( JMException e ) {
+					// Already gone
+				}
+			}
+			registered.clear();
+		}
+	}
+
+	private RequestMetrics forPattern( String pattern ) {
+		RequestMetrics metrics = byPattern.get( pattern );
+		if ( metrics != null ) {
+			return metrics;
+		}
+		// A bounded number of patterns, so a misconfigured mapping can't grow this forever
+		String key = byPattern.size() >= MAX_PATTERNS ? OTHER : pattern;
+		return byPattern.computeIfAbsent( key, k -> {
+			RequestMetrics created = new RequestMetrics( k );
+			register( created );
+			return created;
+		} );
+	}
+
+	private void register( RequestMetrics metrics ) {
+		if ( jmxDomain == null ) {
+			return;
+		}
+		try {
+			ObjectName	name	= new ObjectName( jmxDomain + ",pattern=" + ObjectName.quote( metrics.pattern ) );
+			MBeanServer	server	= ManagementFactory.getPlatformMBeanServer();
+			synchronized ( registered ) {
+				if ( server.isRegistered( name ) ) {
+					// Left behind by an earlier deployment of the same servlet
+					server.unregisterMBean( name );
+				}
+				server.registerMBean( metrics, name );
+				registered.add( name );
+			}
+		} catch ( JMException e ) {
+			System.err.println( "Ortus BoxLang Servlet could not register request metrics over JMX: " + e.getMessage() );
+		}
+	}
+
+	private static void header( Writer out, String name, String type, String help ) throws IOException {
+		out.write( "# HELP " + name + " " + help + "\n# TYPE " + name + " " + type + "\n" );
+	}
+
+	private static void sample( Writer out, String name, RequestMetrics metrics, String extraLabel, long value ) throws IOException {
+		out.write( name + "{" + labels( metrics ) + ( extraLabel == null ? "" : "," + extraLabel ) + "} " + value + "\n" );
+	}
+
+	private static String labels( RequestMetrics metrics ) {
+		return "pattern=\"" + metrics.pattern.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" ) + "\"";
+	}
+
+	/**
+	 * The metrics of one servlet mapping pattern
+	 */
+	public static final class RequestMetrics implements RequestMetricsMXBean {
+
+		private final String								pattern;
+		private final LatencyHistogram						histogram	= new LatencyHistogram();
+		private final LongAdder								inFlight	= new LongAdder();
+		private final LongAdder								errors		= new LongAdder();
+		private final ConcurrentHashMap<Integer, LongAdder>	byStatus	= new ConcurrentHashMap<>();
+		private final LongAdder								bytesIn		= new LongAdder();
+		private final LongAdder								bytesOut	= new LongAdder();
+		private final LongAdder								uploads		= new LongAdder();
+		private final LongAdder								uploadBytes	= new LongAdder();
+
+		RequestMetrics( String pattern ) {
+			this.pattern = pattern;
+		}
+
+		private void record( long micros, int status, long bytesIn, long bytesOut, int uploads, long uploadBytes ) {
+			histogram.record( micros );
+			inFlight.decrement();
+			if ( status >= 400 ) {
+				errors.increment();
+				byStatus.computeIfAbsent( status, k -> new LongAdder() ).increment();
+			}
+			if ( bytesIn > 0 ) {
+				this.bytesIn.add( bytesIn );
+			}
+			this.bytesOut.add( bytesOut );
+			if ( uploads > 0 ) {
+				this.uploads.add( uploads );
+				this.uploadBytes.add( uploadBytes );
+			}
+		}
+
+		@Override
+		public String getPattern() {
+			return pattern;
+		}
+
+		@Override
+		public long getRequestCount() {
+			return histogram.getCount();
+		}
+
+		@Override
+		public long getInFlight() {
+			return inFlight.sum();
+		}
+
+		@Override
+		public long getErrorCount() {
+			return errors.sum();
+		}
+
+		@Override
+		public Map<String, Long> getErrorCountsByStatus() {
+			Map<String, Long> counts = new TreeMap<>();
+			byStatus.forEach( ( status, count ) -> counts.put( String.valueOf( status ), count.sum() ) );
+			return counts;
+		}
+
+		@Override
+		public long getBytesIn() {
+			return bytesIn.sum();
+		}
+
+		@Override
+		public long getBytesOut() {
+			return bytesOut.sum();
+		}
+
+		@Override
+		public long getUploadCount() {
+			return uploads.sum();
+		}
+
+		@Override
+		public long getUploadBytes() {
+			return uploadBytes.sum();
+		}
+
+		@Override
+		public double getLatencyMean() {
+			long count = histogram.getCount();
+			return count == 0 ? 0 : histogram.getSum() / 1000.0 / count;
+		}
+
+		@Override
+		public double getLatencyP50() {
+			return histogram.getValueAtPercentile( 50 ) / 1000.0;
+		}
+
+		@Override
+		public double getLatencyP90() {
+			return histogram.getValueAtPercentile( 90 ) / 1000.0;
+		}
+
+		@Override
+		public double getLatencyP99() {
+			return histogram.getValueAtPercentile( 99 ) / 1000.0;
+		}
+
+		@Override
+		public double getLatencyMax() {
+			return histogram.getMax() / 1000.0;
+		}
+	}
+}
@@ -0,0 +1,322 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * I keep track of the requests running right now, by thread, and sample the stack of any that run longer than a
+ * threshold, so a stuck template can be found in production without attaching a profiler.
+ * <p>
+ * A single background thread takes the samples. The BoxLang templates on the stack are picked out by the file name of
+ * their frames, which the BoxLang compiler sets to the template path, with the line number of the template source.
+ * A slow request is logged when it crosses the threshold and again each time its running time doubles, and the last
+ * sample of every slow request can be rendered as JSON.
+ */
+public class SlowRequestDetector {
+
+	/**
+	 * The file extensions of BoxLang and CFML templates and classes
+	 */
+	private static final Set<String>							TEMPLATE_EXTENSIONS	= Set.of( "bx", "bxs", "bxm", "cfm", "cfc", "cfs" );
+
+	/**
+	 * How many Java frames of each sample are kept
+	 */
+	private static final int									MAX_FRAMES			= 40;
+
+	private final ConcurrentHashMap<Thread, InFlightRequest>	inFlight			= new ConcurrentHashMap<>();
+	private final long											thresholdNanos;
+	private final boolean										log;
+	private ScheduledExecutorService							sampler;
+
+	/**
+	 * Create a detector
+	 *
+	 * @param thresholdMillis How long a request runs before it is sampled
+	 * @param log             Whether to log slow requests
+	 */
+	public SlowRequestDetector( long thresholdMillis, boolean log ) {
+		this.thresholdNanos	= TimeUnit.MILLISECONDS.toNanos( thresholdMillis );
+		this.log			= log;
+	}
+
+	/**
+	 * Start sampling
+	 *
+	 * @param intervalMillis How often the running requests are checked
+	 */
+	public void start( long intervalMillis ) {
+		sampler = Executors.newSingleThreadScheduledExecutor( r -> {
+			Thread t = new Thread( r, "boxlang-slow-request-sampler" );
+			t.setDaemon( true );
+			return t;
+		} );
+		sampler.scheduleWithFixedDelay( this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS );
+	}
+
+	/**
+	 * Stop sampling
+	 */
+	public void stop() {
+		if ( sampler != null ) {
+			sampler.shutdownNow();
+			sampler = null;
+		}
+	}
+
+	/**
+	 * A request has started on the current thread
+	 *
+	 * @param request The servlet request
+	 * @param start   When the servlet received it, from System.nanoTime()
+	 *
+	 * @return The entry to pass to {@link #end}
+	 */
+	public InFlightRequest begin( HttpServletRequest request, long start ) {
+		String			query	= request.getQueryString();
+		InFlightRequest	entry	= new InFlightRequest(
+		    Thread.currentThread(),
+		    request.getMethod(),
+		    query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query,
+		    start,
+		    System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start )
+		);
+		// An include or forward runs on the same thread, so remember the outer request
+		entry.outer = inFlight.put( entry.thread, entry );
+		return entry;
+	}
+
+	/**
+	 * A request has finished
+	 *
+	 * @param entry The entry returned by {@link #begin}
+	 */
+	public void end( InFlightRequest entry ) {
+		if ( entry.outer != null ) {
+			inFlight.put( entry.thread, entry.outer );
+		} else {
+			inFlight.remove( entry.thread, entry );
+		}
+	}
+
+	/**
+	 * The number of requests running right now
+	 *
+	 * @return The count
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Write every running request as a JSON array, slowest first. Requests over the threshold include their last
+	 * sample.
+	 *
+	 * @param out Where to write it
+	 *
+	 * @throws IOException If it can't be written
+	 */
+	public void writeJson( Writer out ) throws IOException {
+		List<InFlightRequest> requests = new ArrayList<>( inFlight.values() );
+		requests.sort( Comparator.comparingLong( r -> r.start ) );
+		long			now	= System.nanoTime();
+		StringBuilder	sb	= new StringBuilder( 1024 );
+		sb.append( '[' );
+		for ( int i = 0; i < requests.size(); i++ ) {
+			InFlightRequest r = requests.get( i );
+			if ( i > 0 ) {
+				sb.append( ',' );
+			}
+			sb.append( "\n{\"thread\":" ).append( quote( r.thread.getName() ) )
+			    .append( ",\"method\":" ).append( quote( r.method ) )
+			    .append( ",\"uri\":" ).append( quote( r.uri ) )
+			    .append( ",\"startedAt\":" ).append( r.startedAt )
+			    .append( ",\"durationMs\":" ).append( TimeUnit.NANOSECONDS.toMillis( now - r.start ) );
+			Sample sample = r.lastSample;
+			if ( sample != null ) {
+				sb.append( ",\"template\":" ).append( sample.template() == null ? "null" : quote( sample.template() ) )
+				    .append( ",\"line\":" ).append( sample.line() )
+				    .append( ",\"templateStack\":[" );
+				for ( int f = 0; f < sample.templateStack().size(); f++ ) {
+					sb.append( f > 0 ? "," : "" ).append( quote( sample.templateStack().get( f ) ) );
+				}
+				sb.append( "],\"stack\":[" );
+				for ( int f = 0; f < sample.stack().size(); f++ ) {
+					sb.append( f > 0 ? "," : "" ).append( quote( sample.stack().get( f ).toString() ) );
+				}
+				sb.append( ']' );
+			}
+			sb.append( '}' );
+		}
+		sb.append( "\n]\n" );
+		out.write( sb.toString() );
+	}
+
+	/**
+	 * Sample every request over the threshold. Runs on the sampler thread.
+	 */
+	void sample() {
+		try {
+			long now = System.nanoTime();
+			for ( InFlightRequest r : inFlight.values() ) {
+				long running = now - r.start;
+				if ( running < thresholdNanos ) {
+					continue;
+				}
+				Sample sample = takeSample( r.thread.getStackTrace() );
+				if ( inFlight.get( r.thread ) != r ) {
+					// It finished while we were looking
+					continue;
+				}
+				r.lastSample = sample;
+				if ( log && running >= r.nextReport ) {
+					// Log again each time the running time doubles, so a stuck request doesn't flood the log
+					r.nextReport = running * 2;
+					System.err.println( describe( r, sample, running ) );
+				}
+			}
+		} catch ( Throwable e ) {
+			// Never let the sampler die
+			System.err.println( "Ortus BoxLang Servlet slow request sampler failed: " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Turn a stack trace into a sample, picking out the BoxLang templates
+	 *
+	 * @param stack The stack trace, innermost frame first
+	 *
+	 * @return The sample
+	 */
+	static Sample takeSample( StackTraceElement[] stack ) {
+		List<String>	templateStack	= new ArrayList<>();
+		String			template		= null;
+		int				line			= -1;
+		for ( StackTraceElement frame : stack ) {
+			if ( isTemplateFrame( frame ) ) {
+				String location = frame.getFileName() + ":" + frame.getLineNumber();
+				// A template's generated code can have several frames on the same line
+				if ( templateStack.isEmpty() || !templateStack.get( templateStack.size() - 1 ).equals( location ) ) {
+					templateStack.add( location );
+				}
+				if ( template == null ) {
+					template	= frame.getFileName();
+					line		= frame.getLineNumber();
+				}
+			}
+		}
+		List<StackTraceElement> frames = List.of( stack ).subList( 0, Math.min( stack.length, MAX_FRAMES ) );
+		return new Sample( template, line, templateStack, frames );
+	}
+
+	private static boolean isTemplateFrame( StackTraceElement frame ) {
+		String fileName = frame.getFileName();
+		if ( fileName == null || frame.getLineNumber() < 0 ) {
+			return false;
+		}
+		int dot = fileName.lastIndexOf( '.' );
+		return dot > 0 && TEMPLATE_EXTENSIONS.contains( fileName.substring( dot + 1 ).toLowerCase( Locale.ROOT ) );
+	}
+
+	private static String describe( InFlightRequest r, Sample sample, long running ) {
+		StringBuilder sb = new StringBuilder( 1024 );
+		sb.append( "Ortus BoxLang Servlet slow request: " ).append( r.method ).append( ' ' ).append( r.uri )
+		    .append( " has been running for " ).append( TimeUnit.NANOSECONDS.toMillis( running ) ).append( "ms on [" )
+		    .append( r.thread.getName() ).append( "]" );
+		if ( sample.template() != null ) {
+			sb.append( " in " ).append( sample.template() ).append( ':' ).append( sample.line() );
+		}
+		for ( String location : sample.templateStack() ) {
+			sb.append( "\n    at " ).append( location );
+		}
+		sb.append( "\n  Java stack:" );
+		for ( StackTraceElement frame : sample.stack() ) {
+			sb.append( "\n    at " ).append( frame );
+		}
+		return sb.toString();
+	}
+
+	private static String quote( String value ) {
+		StringBuilder sb = new StringBuilder( value.length() + 2 ).append( '"' );
+		for ( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+			switch ( c ) {
+				case '"' -> sb.append( "\\\"" );
+				case '\\' -> sb.append( "\\\\" );
+				case '\n' -> sb.append( "\\n" );
+				case '\r' -> sb.append( "\\r" );
+				case '\t' -> sb.append( "\\t" );
+				default -> {
+					if ( c < 0x20 ) {
+						sb.append( String.format( "\\u%04x", ( int ) c ) );
+					} else {
+						sb.append( c );
+					}
+				}
+			}
+		}
+		return sb.append( '"' ).toString();
+	}
+
+	/**
+	 * A sample of a slow request
+	 *
+	 * @param template      The innermost template on the stack, or null if there is none
+	 * @param line          The line of the innermost template, or -1
+	 * @param templateStack Every template on the stack as path:line, innermost first
+	 * @param stack         The innermost Java frames
+	 */
+	public record Sample( String template, int line, List<String> templateStack, List<StackTraceElement> stack ) {
+	}
+
+	/**
+	 * A request running right now
+	 */
+	public static final class InFlightRequest {
+
+		final Thread			thread;
+		final String			method;
+		final String			uri;
+		final long				start;
+		final long				startedAt;
+		InFlightRequest			outer;
+		volatile Sample			lastSample;
+		long					nextReport;
+
+		InFlightRequest( Thread thread, String method, String uri, long start, long startedAt ) {
+			this.thread		= thread;
+			this.method		= method;
+			this.uri		= uri;
+			this.start		= start;
+			this.startedAt	= startedAt;
+		}
+	}
+}
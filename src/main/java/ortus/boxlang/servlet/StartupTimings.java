@@ -0,0 +1,115 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * I time the phases of the servlet's startup, in order, so a slow deployment can be pinned on the BoxLang home, the
+ * servlet settings, the runtime boot, the rest of the runtime startup (which loads and activates the modules) or the
+ * interceptor registration.
+ * <p>
+ * Each phase runs from the end of the one before it. With background startup the runtime phases run on the startup
+ * thread after init() has returned, so the timings are synchronized.
+ */
+public final class StartupTimings {
+
+	private final long				start		= System.nanoTime();
+	private final Map<String, Long>	phases		= new LinkedHashMap<>();
+	private long					phaseStart	= start;
+	private long					total		= -1;
+
+	/**
+	 * End a phase
+	 *
+	 * @param name The name of the phase which just ended
+	 */
+	public synchronized void phase( String name ) {
+		long now = System.nanoTime();
+		phases.put( name, now - phaseStart );
+		phaseStart = now;
+	}
+
+	/**
+	 * The servlet is ready for requests
+	 */
+	public synchronized void ready() {
+		total = System.nanoTime() - start;
+	}
+
+	/**
+	 * The time of each phase so far, in the order they ran
+	 *
+	 * @return The phase names and their times in milliseconds
+	 */
+	public synchronized Map<String, Long> getPhaseMillis() {
+		Map<String, Long> millis = new LinkedHashMap<>();
+		phases.forEach( ( name, nanos ) -> millis.put( name, TimeUnit.NANOSECONDS.toMillis( nanos ) ) );
+		return millis;
+	}
+
+	/**
+	 * The time from the start of init() until the servlet was ready
+	 *
+	 * @return The time in milliseconds, or -1 if it isn't ready yet
+	 */
+	public synchronized long getTotalMillis() {
+		return total < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis( total );
+	}
+
+	/**
+	 * Write the timings in the Prometheus text exposition format
+	 *
+	 * @param out Where to write them
+	 *
+	 * @throws IOException If they can't be written
+	 */
+	public synchronized void writePrometheus( Writer out ) throws IOException {
+		out.write( "# HELP boxlang_startup_phase_seconds Time taken by each phase of the servlet startup\n" );
+		out.write( "# TYPE boxlang_startup_phase_seconds gauge\n" );
+		for ( Map.Entry<String, Long> phase : phases.entrySet() ) {
+			out.write( "boxlang_startup_phase_seconds{phase=\"" + phase.getKey() + "\"} " + ( phase.getValue() / 1e9 ) + "\n" );
+		}
+		if ( total >= 0 ) {
+			out.write( "# HELP boxlang_startup_seconds Time from the start of the servlet init until it was ready for requests\n" );
+			out.write( "# TYPE boxlang_startup_seconds gauge\n" );
+			out.write( "boxlang_startup_seconds " + ( total / 1e9 ) + "\n" );
+		}
+	}
+
+	/**
+	 * The timings on one line, for the log
+	 *
+	 * @return Such as <code>1234ms (home: 2ms, settings: 5ms, runtime-boot: 800ms, ...)</code>
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder( 128 );
+		sb.append( total < 0 ? "(not ready)" : TimeUnit.NANOSECONDS.toMillis( total ) + "ms" ).append( " (" );
+		boolean first = true;
+		for ( Map.Entry<String, Long> phase : phases.entrySet() ) {
+			sb.append( first ? "" : ", " ).append( phase.getKey() ).append( ": " ).append( TimeUnit.NANOSECONDS.toMillis( phase.getValue() ) ).append( "ms" );
+			first = false;
+		}
+		return sb.append( ')' ).toString();
+	}
+}
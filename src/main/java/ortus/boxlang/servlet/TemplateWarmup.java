@@ -0,0 +1,365 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.runnables.RunnableLoader;
+import ortus.boxlang.runtime.util.ResolvedFilePath;
+
+/**
+ * I take the template compilation off the first requests after a deploy. I compile the BoxLang and CFML templates and
+ * classes under the web root in parallel on a fork-join pool while the servlet starts, and then request a list of
+ * warm-up URLs once the container is listening.
+ * <p>
+ * The files to compile are given as paths relative to the web root, which take every template and class under a
+ * directory (or a single file), or as globs matched against the path relative to the web root, such as
+ * <code>views/**.bxm</code>. The files are compiled through the root mapping, the way the servlet mapping interceptor
+ * resolves them, so the requests find them in the runtime's class pool. A file which fails to compile is reported, and
+ * fails again on its first request as it would have anyway.
+ */
+public class TemplateWarmup {
+
+	/**
+	 * The file extensions of the templates and classes to compile
+	 */
+	private static final Set<String>	TEMPLATE_EXTENSIONS	= Set.of( "bx", "bxm", "cfm", "cfc" );
+
+	/**
+	 * The file extensions of classes, which are loaded as classes rather than templates
+	 */
+	private static final Set<String>	CLASS_EXTENSIONS	= Set.of( "bx", "cfc" );
+
+	/**
+	 * How many of the slowest files are logged
+	 */
+	private static final int			SLOWEST_LOGGED		= 10;
+
+	/**
+	 * How long the warm-up requests keep trying to connect while the container starts listening
+	 */
+	private static final Duration		CONNECT_RETRY		= Duration.ofSeconds( 60 );
+
+	private final String				webroot;
+	private final List<String>			patterns;
+	private final int					parallelism;
+	private final List<URI>				urls;
+
+	/**
+	 * Create a warm-up
+	 *
+	 * @param webroot     The real path of the web root, or null if the container doesn't serve the app from a folder,
+	 *                    in which case nothing is compiled
+	 * @param patterns    The directories, files and globs to compile, relative to the web root
+	 * @param parallelism How many files are compiled at once
+	 * @param urls        The URLs to request once the container is listening
+	 */
+	public TemplateWarmup( String webroot, List<String> patterns, int parallelism, List<URI> urls ) {
+		this.webroot		= webroot;
+		this.patterns		= List.copyOf( patterns );
+		this.parallelism	= parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.urls			= List.copyOf( urls );
+		if ( webroot == null && !patterns.isEmpty() ) {
+			System.err.println( "Ortus BoxLang Servlet precompile: the web root has no real path (is the app deployed as an unexploded WAR?), skipping" );
+		}
+	}
+
+	/**
+	 * Whether there is anything to compile
+	 */
+	public boolean hasTemplates() {
+		return webroot != null && !patterns.isEmpty();
+	}
+
+	/**
+	 * Whether there are any URLs to request
+	 */
+	public boolean hasUrls() {
+		return !urls.isEmpty();
+	}
+
+	/**
+	 * Find the templates and classes to compile
+	 *
+	 * @return Their paths, sorted and without duplicates
+	 *
+	 * @throws IOException If the web root can't be walked
+	 */
+	List<Path> findFiles() throws IOException {
+		if ( webroot == null ) {
+			return List.of();
+		}
+		Path		root	= Path.of( webroot );
+		Set<Path>	files	= new TreeSet<>();
+		for ( String pattern : patterns ) {
+			String relative = pattern.startsWith( "/" ) ? pattern.substring( 1 ) : pattern;
+			if ( relative.chars().anyMatch( c -> "*?[{".indexOf( c ) >= 0 ) ) {
+				PathMatcher matcher = FileSystems.getDefault().getPathMatcher( "glob:" + relative );
+				walk( root, file -> matcher.matches( root.relativize( file ) ), files );
+			} else {
+				Path start = root.resolve( relative ).normalize();
+				if ( !start.startsWith( root ) || !Files.exists( start ) ) {
+					System.err.println( "Ortus BoxLang Servlet precompile: [" + pattern + "] is not under the web root, skipping" );
+					continue;
+				}
+				walk( start, file -> true, files );
+			}
+		}
+		return new ArrayList<>( files );
+	}
+
+	/**
+	 * Add the templates and classes under a directory which match a filter
+	 */
+	private static void walk( Path start, Predicate<Path> filter, Set<Path> files ) throws IOException {
+		try ( Stream<Path> walk = Files.walk( start ) ) {
+			walk.filter( Files::isRegularFile )
+			    .filter( file -> TEMPLATE_EXTENSIONS.contains( extension( file ) ) )
+			    .filter( filter )
+			    .forEach( files::add );
+		}
+	}
+
+	/**
+	 * The lower case file extension of a path
+	 */
+	private static String extension( Path file ) {
+		String	name	= file.getFileName().toString();
+		int		dot		= name.lastIndexOf( '.' );
+		return dot < 0 ? "" : name.substring( dot + 1 ).toLowerCase( Locale.ROOT );
+	}
+
+	/**
+	 * Compile the templates and classes with the runtime
+	 *
+	 * @param runtime The started runtime
+	 * @param verbose Whether to log the time of every file, rather than only the slowest and the failures
+	 *
+	 * @return The report
+	 */
+	public Report precompile( BoxRuntime runtime, boolean verbose ) {
+		IBoxContext		context	= runtime.getRuntimeContext();
+		RunnableLoader	loader	= RunnableLoader.getInstance();
+		return precompile( file -> {
+			ResolvedFilePath resolved = ResolvedFilePath.ofReal( "/", webroot, relativePath( file ), file );
+			if ( CLASS_EXTENSIONS.contains( extension( file ) ) ) {
+				loader.loadClass( resolved, context );
+			} else {
+				loader.loadTemplateAbsolute( context, resolved );
+			}
+		}, verbose );
+	}
+
+	/**
+	 * Compile the templates and classes in parallel
+	 *
+	 * @param compiler What compiles a file
+	 * @param verbose  Whether to log the time of every file
+	 *
+	 * @return The report
+	 */
+	Report precompile( FileCompiler compiler, boolean verbose ) {
+		long			start	= System.nanoTime();
+		List<Result>	results;
+		ForkJoinPool	pool	= new ForkJoinPool( parallelism );
+		try {
+			List<Path> files = findFiles();
+			results = pool.submit( () -> files.parallelStream().map( file -> compile( compiler, file ) ).toList() ).get();
+		} catch ( IOException e ) {
+			System.err.println( "Ortus BoxLang Servlet precompile: could not list the templates: " + e.getMessage() );
+			results = List.of();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			results = List.of();
+		} catch ( ExecutionException e ) {
+			System.err.println( "Ortus BoxLang Servlet precompile failed: " + e.getCause() );
+			results = List.of();
+		} finally {
+			pool.shutdown();
+		}
+		Report report = new Report( results, System.nanoTime() - start, parallelism );
+		report.log( verbose );
+		return report;
+	}
+
+	/**
+	 * Compile one file and time it
+	 */
+	private Result compile( FileCompiler compiler, Path file ) {
+		long start = System.nanoTime();
+		try {
+			compiler.compile( file );
+			return new Result( relativePath( file ), System.nanoTime() - start, null );
+		} catch ( Throwable e ) {
+			return new Result( relativePath( file ), System.nanoTime() - start, e );
+		}
+	}
+
+	/**
+	 * The path of a file relative to the web root, the way requests see it
+	 */
+	private String relativePath( Path file ) {
+		return "/" + Path.of( webroot ).relativize( file ).toString().replace( '\\', '/' );
+	}
+
+	/**
+	 * Request the warm-up URLs one at a time on a daemon thread, once the container is listening, and log how each
+	 * one went
+	 */
+	public void requestUrls() {
+		Thread thread = new Thread( () -> {
+			HttpClient client = HttpClient.newBuilder().connectTimeout( Duration.ofSeconds( 5 ) ).build();
+			for ( URI url : urls ) {
+				request( client, url );
+			}
+		}, "boxlang-warmup" );
+		thread.setDaemon( true );
+		thread.start();
+	}
+
+	/**
+	 * Request a warm-up URL, retrying while the container isn't listening yet
+	 */
+	private static void request( HttpClient client, URI url ) {
+		HttpRequest	request		= HttpRequest.newBuilder( url ).timeout( Duration.ofMinutes( 2 ) ).header( "User-Agent", "BoxLang-Warmup" ).build();
+		long		giveUpAt	= System.nanoTime() + CONNECT_RETRY.toNanos();
+		while ( true ) {
+			long start = System.nanoTime();
+			try {
+				int status = client.send( request, HttpResponse.BodyHandlers.discarding() ).statusCode();
+				System.out.println( "Ortus BoxLang Servlet warm-up: " + url + " -> " + status + " in "
+				    + TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) + "ms" );
+				return;
+			} catch ( ConnectException e ) {
+				if ( System.nanoTime() - giveUpAt > 0 ) {
+					System.err.println( "Ortus BoxLang Servlet warm-up: could not connect to " + url );
+					return;
+				}
+				try {
+					Thread.sleep( 500 );
+				} catch ( InterruptedException ie ) {
+					return;
+				}
+			} catch ( InterruptedException e ) {
+				return;
+			} catch ( IOException e ) {
+				System.err.println( "Ortus BoxLang Servlet warm-up: " + url + " failed: " + e );
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Compiles a file
+	 */
+	@FunctionalInterface
+	interface FileCompiler {
+
+		void compile( Path file ) throws Exception;
+	}
+
+	/**
+	 * How the compilation of a file went
+	 *
+	 * @param path  The path relative to the web root
+	 * @param nanos How long it took
+	 * @param error Why it failed, or null if it compiled
+	 */
+	public record Result( String path, long nanos, Throwable error ) {
+	}
+
+	/**
+	 * How the compilation went
+	 *
+	 * @param results     Each file, in the order they were found
+	 * @param nanos       How long it all took
+	 * @param parallelism How many files were compiled at once
+	 */
+	public record Report( List<Result> results, long nanos, int parallelism ) {
+
+		/**
+		 * The files which failed to compile
+		 */
+		public List<Result> failures() {
+			return results.stream().filter( result -> result.error() != null ).toList();
+		}
+
+		/**
+		 * Log the summary, the failures and the slowest files, or every file if verbose
+		 *
+		 * @param verbose Whether to log every file
+		 */
+		void log( boolean verbose ) {
+			List<Result> failures = failures();
+			System.out.println( "Ortus BoxLang Servlet precompiled " + ( results.size() - failures.size() ) + " of " + results.size() + " files in "
+			    + TimeUnit.NANOSECONDS.toMillis( nanos ) + "ms on " + parallelism + " threads" );
+			for ( Result failure : failures ) {
+				System.err.println( "Ortus BoxLang Servlet precompile failed: " + failure.path() + ": " + failure.error().getMessage() );
+			}
+			results.stream()
+			    .filter( result -> result.error() == null )
+			    .sorted( Comparator.comparingLong( Result::nanos ).reversed() )
+			    .limit( verbose ? Long.MAX_VALUE : SLOWEST_LOGGED )
+			    .forEach( result -> System.out.println(
+			        "Ortus BoxLang Servlet precompiled " + result.path() + " in " + TimeUnit.NANOSECONDS.toMillis( result.nanos() ) + "ms" ) );
+		}
+
+		/**
+		 * Write the totals in the Prometheus text exposition format
+		 *
+		 * @param out Where to write them
+		 *
+		 * @throws IOException If they can't be written
+		 */
+		public void writePrometheus( Writer out ) throws IOException {
+			int failed = failures().size();
+			out.write( "# HELP boxlang_precompile_files Templates and classes compiled at startup, by result\n" );
+			out.write( "# TYPE boxlang_precompile_files gauge\n" );
+			out.write( "boxlang_precompile_files{result=\"compiled\"} " + ( results.size() - failed ) + "\n" );
+			out.write( "boxlang_precompile_files{result=\"failed\"} " + failed + "\n" );
+			out.write( "# HELP boxlang_precompile_seconds Time taken to compile the templates and classes at startup\n" );
+			out.write( "# TYPE boxlang_precompile_seconds gauge\n" );
+			out.write( "boxlang_precompile_seconds " + ( nanos / 1e9 ) + "\n" );
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * I report virtual threads that get pinned to their carrier thread, which happens when a virtual thread blocks
+ * while inside a synchronized block or a native frame. A pinned request holds a carrier for the whole time it blocks,
+ * which defeats the point of running requests on virtual threads.
+ *
+ * Pinning is detected with the JDK's own "jdk.VirtualThreadPinned" JFR event, streamed in-process, so no recording
+ * file or external tooling is needed.
+ */
+public class VirtualThreadPinningMonitor {
+
+	private static final String	PINNED_EVENT	= "jdk.VirtualThreadPinned";
+
+	/**
+	 * How many frames of each pinned stack to report
+	 */
+	private static final int	MAX_FRAMES		= 15;
+
+	/**
+	 * The number of pinning events seen
+	 */
+	private final LongAdder		pinnedCount		= new LongAdder();
+
+	/**
+	 * The JFR event stream
+	 */
+	private RecordingStream		stream;
+
+	/**
+	 * Start listening for pinned virtual threads.
+	 *
+	 * @param threshold Only report pinning which lasts at least this long
+	 */
+	public void start( Duration threshold ) {
+		stream = new RecordingStream();
+		stream.enable( PINNED_EVENT ).withThreshold( threshold ).withStackTrace();
+		stream.onEvent( PINNED_EVENT, this::report );
+		stream.startAsync();
+	}
+
+	/**
+	 * Report a pinning event
+	 *
+	 * @param event The JFR event
+	 */
+	private void report( RecordedEvent event ) {
+		pinnedCount.increment();
+		StringBuilder sb = new StringBuilder( 512 );
+		sb.append( "Ortus BoxLang Servlet virtual thread pinned for " )
+		    .append( event.getDuration().toMillis() )
+		    .append( "ms" );
+		if ( event.getThread() != null ) {
+			sb.append( " on [" ).append( event.getThread().getJavaName() ).append( "]" );
+		}
+		if ( event.getStackTrace() != null ) {
+			List<RecordedFrame>	frames	= event.getStackTrace().getFrames();
+			int					count	= Math.min( frames.size(), MAX_FRAMES );
+			for ( int i = 0; i < count; i++ ) {
+				RecordedFrame frame = frames.get( i );
+				sb.append( System.lineSeparator() )
+				    .append( "\tat " )
+				    .append( frame.getMethod().getType().getName() )
+				    .append( '.' )
+				    .append( frame.getMethod().getName() )
+				    .append( ":" )
+				    .append( frame.getLineNumber() );
+			}
+			if ( frames.size() > count ) {
+				sb.append( System.lineSeparator() ).append( "\t..." );
+			}
+		}
+		System.err.println( sb );
+	}
+
+	/**
+	 * Get the number of pinning events seen since the monitor was started
+	 *
+	 * @return The number of events
+	 */
+	public long getPinnedCount() {
+		return pinnedCount.sum();
+	}
+
+	/**
+	 * Write the pinning count in the Prometheus text format
+	 *
+	 * @param out Where to write it
+	 *
+	 * @throws IOException If the writer fails
+	 */
+	public void writePrometheus( Writer out ) throws IOException {
+		out.write( "# HELP boxlang_virtual_threads_pinned_total Virtual threads pinned to their carrier thread for at least the report threshold\n" );
+		out.write( "# TYPE boxlang_virtual_threads_pinned_total counter\n" );
+		out.write( "boxlang_virtual_threads_pinned_total " + getPinnedCount() + "\n" );
+	}
+
+	/**
+	 * Stop listening
+	 */
+	public void stop() {
+		if ( stream != null ) {
+			stream.close();
+			stream = null;
+		}
+	}
+}
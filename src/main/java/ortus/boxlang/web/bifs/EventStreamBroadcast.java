@@ -0,0 +1,68 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package ortus.boxlang.web.bifs;
+
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.web.exchange.EventStreamRegistry;
+
+@BoxBIF
+public class EventStreamBroadcast extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public EventStreamBroadcast() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, Argument.STRING, EventStreamStart.channel ),
+		    new Argument( true, Argument.STRING, EventStreamSend.data ),
+		    new Argument( false, Argument.STRING, EventStreamSend.event )
+		};
+	}
+
+	/**
+	 *
+	 * Sends an event to every open Server-Sent Events stream listening to a channel, from any request.
+	 * Returns the number of streams the event was sent to.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.channel The channel, as passed to eventStreamStart().
+	 *
+	 * @argument.data The event data. Each line is sent as its own data field.
+	 *
+	 * @argument.event The event name. Optional, clients treat an unnamed event as "message".
+	 *
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		EventStreamRegistry registry = EventStreamStart.getExchange( context ).getEventStreamRegistry();
+		if ( registry == null ) {
+			throw new BoxRuntimeException( "Event streams are only available in a request run by the BoxLang servlet" );
+		}
+		return registry.broadcast(
+		    arguments.getAsString( EventStreamStart.channel ),
+		    arguments.getAsString( EventStreamSend.event ),
+		    arguments.getAsString( EventStreamSend.data )
+		);
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package ortus.boxlang.web.bifs;
+
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.web.exchange.EventStream;
+
+@BoxBIF
+public class EventStreamSend extends BIF {
+
+	static final Key	data	= Key.of( "data" );
+	static final Key	event	= Key.of( "event" );
+	static final Key	id		= Key.of( "id" );
+
+	/**
+	 * Constructor
+	 */
+	public EventStreamSend() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, Argument.STRING, data ),
+		    new Argument( false, Argument.STRING, event ),
+		    new Argument( false, Argument.STRING, id )
+		};
+	}
+
+	/**
+	 *
+	 * Sends an event to the Server-Sent Events stream of the current request, started with eventStreamStart().
+	 * Returns false if the client has gone away and the event was dropped.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.data The event data. Each line is sent as its own data field.
+	 *
+	 * @argument.event The event name. Optional, clients treat an unnamed event as "message".
+	 *
+	 * @argument.id The event id, which the client sends back in the Last-Event-ID header when it reconnects. Optional.
+	 *
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		EventStream stream = EventStreamStart.getExchange( context ).getEventStream();
+		if ( stream == null ) {
+			throw new BoxRuntimeException( "This request has no event stream. Start one with eventStreamStart() first." );
+		}
+		return stream.send( arguments.getAsString( event ), arguments.getAsString( data ), arguments.getAsString( id ) );
+	}
+
+}
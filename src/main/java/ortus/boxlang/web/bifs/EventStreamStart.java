@@ -0,0 +1,73 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package ortus.boxlang.web.bifs;
+
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.web.context.WebRequestBoxContext;
+import ortus.boxlang.web.exchange.BoxHTTPServletExchange;
+
+@BoxBIF
+public class EventStreamStart extends BIF {
+
+	static final Key channel = Key.of( "channel" );
+
+	/**
+	 * Constructor
+	 */
+	public EventStreamStart() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( false, Argument.STRING, channel )
+		};
+	}
+
+	/**
+	 *
+	 * Turns the response of the current request into a Server-Sent Events stream, which stays open after the page ends.
+	 * Returns the stream, which events can be sent to with <code>send()</code> and which is ended with <code>close()</code>.
+	 * Calling it again in the same request returns the same stream.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.channel The channel the stream listens to for broadcasts from eventStreamBroadcast(). Optional.
+	 *
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		return getExchange( context ).startEventStream( arguments.getAsString( channel ) );
+	}
+
+	/**
+	 * Get the servlet exchange of the request a BIF is running in
+	 *
+	 * @param context The context in which the BIF is being invoked.
+	 *
+	 * @return The exchange
+	 */
+	static BoxHTTPServletExchange getExchange( IBoxContext context ) {
+		WebRequestBoxContext requestContext = context.getParentOfType( WebRequestBoxContext.class );
+		if ( requestContext == null || ! ( requestContext.getHTTPExchange() instanceof BoxHTTPServletExchange exchange ) ) {
+			throw new BoxRuntimeException( "Event streams are only available in a request run by the BoxLang servlet" );
+		}
+		return exchange;
+	}
+
+}
@@ -14,6 +14,8 @@
  */
 package ortus.boxlang.web.bifs;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import jakarta.servlet.jsp.JspWriter;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
@@ -27,7 +29,19 @@ import ortus.boxlang.web.exchange.BoxHTTPServletExchange;
 @BoxBIF
 public class GetPageContext extends BIF {
 
-	private static final Key page_context_attachment = Key.of( "page_context_attachment" );
+	private static final Key			page_context_attachment	= Key.of( "page_context_attachment" );
+
+	/**
+	 * Striped locks for creating the PageContext. We don't synchronize on the request context as a virtual thread
+	 * blocking inside a synchronized block is pinned to its carrier thread.
+	 */
+	private static final ReentrantLock[]	LOCKS					= new ReentrantLock[ 64 ];
+
+	static {
+		for ( int i = 0; i < LOCKS.length; i++ ) {
+			LOCKS[ i ] = new ReentrantLock();
+		}
+	}
 
 	/**
 	 * Constructor
@@ -49,7 +63,9 @@ public class GetPageContext extends BIF {
 		WebRequestBoxContext requestContext = context.getParentOfType( WebRequestBoxContext.class );
 		// Create if neccessary
 		if ( !requestContext.hasAttachment( page_context_attachment ) ) {
-			synchronized ( requestContext ) {
+			ReentrantLock lock = LOCKS[ System.identityHashCode( requestContext ) & ( LOCKS.length - 1 ) ];
+			lock.lock();
+			try {
 				// Double check lock pattern
 				if ( !requestContext.hasAttachment( page_context_attachment ) ) {
 					// Create a PageContext object
@@ -68,6 +84,8 @@ public class GetPageContext extends BIF {
 					// Attach the PageContext to the request context so it's available for the duration of the request
 					requestContext.putAttachment( page_context_attachment, pageContext );
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 		// Return the PageContext object which is now attached to the request context
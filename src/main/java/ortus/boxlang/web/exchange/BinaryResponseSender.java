@@ -0,0 +1,149 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * I write binary response bodies from an array, a buffer, a stream or a channel.
+ * <p>
+ * When the size is known up front the Content-Length is set, so the container doesn't have to chunk the response.
+ * Arrays and heap buffers go out in a single write, file channels use <code>transferTo()</code>, and everything else is
+ * copied through a pooled buffer so the body never has to be on the heap as a whole.
+ */
+final class BinaryResponseSender {
+
+	private BinaryResponseSender() {
+	}
+
+	/**
+	 * Send a byte array
+	 *
+	 * @param response The servlet response
+	 * @param data     The bytes
+	 *
+	 * @throws IOException If the response can't be written
+	 */
+	static void send( HttpServletResponse response, byte[] data ) throws IOException {
+		setContentLength( response, data.length );
+		response.getOutputStream().write( data );
+	}
+
+	/**
+	 * Send the remaining bytes of a buffer. The buffer's position is moved to its limit.
+	 *
+	 * @param response The servlet response
+	 * @param data     The buffer
+	 *
+	 * @throws IOException If the response can't be written
+	 */
+	static void send( HttpServletResponse response, ByteBuffer data ) throws IOException {
+		setContentLength( response, data.remaining() );
+		OutputStream out = response.getOutputStream();
+		if ( data.hasArray() ) {
+			out.write( data.array(), data.arrayOffset() + data.position(), data.remaining() );
+			data.position( data.limit() );
+			return;
+		}
+		WritableByteChannel target = Channels.newChannel( out );
+		while ( data.hasRemaining() ) {
+			target.write( data );
+		}
+	}
+
+	/**
+	 * Send everything left in a stream. The stream is not closed.
+	 *
+	 * @param response The servlet response
+	 * @param in       The stream
+	 * @param length   The number of bytes the stream will produce, or -1 if unknown
+	 *
+	 * @throws IOException If the stream can't be read or the response can't be written
+	 */
+	static void send( HttpServletResponse response, InputStream in, long length ) throws IOException {
+		setContentLength( response, length );
+		OutputStream	out		= response.getOutputStream();
+		byte[]			buffer	= BufferPool.SHARED.acquire();
+		try {
+			int read;
+			while ( ( read = in.read( buffer ) ) >= 0 ) {
+				out.write( buffer, 0, read );
+			}
+		} finally {
+			BufferPool.SHARED.release( buffer );
+		}
+	}
+
+	/**
+	 * Send everything left in a channel. The channel is not closed. It must be in blocking mode, since a non-blocking
+	 * channel can read nothing over and over without being at its end.
+	 *
+	 * @param response The servlet response
+	 * @param channel  The channel
+	 * @param length   The number of bytes the channel will produce, or -1 if unknown
+	 *
+	 * @throws IOException If the channel can't be read or the response can't be written
+	 */
+	static void send( HttpServletResponse response, ReadableByteChannel channel, long length ) throws IOException {
+		if ( channel instanceof SelectableChannel selectable && !selectable.isBlocking() ) {
+			throw new BoxRuntimeException( "Cannot send a response body from a non-blocking channel" );
+		}
+		if ( channel instanceof FileChannel file ) {
+			long position = file.position();
+			if ( length < 0 ) {
+				length = Math.max( 0, file.size() - position );
+			}
+			setContentLength( response, length );
+			FileResponseSender.transfer( file, position, length, response.getOutputStream() );
+			file.position( position + length );
+			return;
+		}
+		setContentLength( response, length );
+		OutputStream	out		= response.getOutputStream();
+		byte[]			buffer	= BufferPool.SHARED.acquire();
+		try {
+			ByteBuffer wrapped = ByteBuffer.wrap( buffer );
+			while ( channel.read( wrapped ) >= 0 ) {
+				out.write( buffer, 0, wrapped.position() );
+				wrapped.clear();
+			}
+		} finally {
+			BufferPool.SHARED.release( buffer );
+		}
+	}
+
+	/**
+	 * Set the Content-Length if it's known and the headers haven't been sent yet
+	 */
+	private static void setContentLength( HttpServletResponse response, long length ) {
+		if ( length >= 0 && !response.isCommitted() ) {
+			response.setContentLengthLong( length );
+		}
+	}
+}
@@ -18,40 +18,34 @@
 package ortus.boxlang.web.exchange;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.io.Writer;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.Path;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
-import org.apache.commons.fileupload2.core.DiskFileItem;
-import org.apache.commons.fileupload2.core.DiskFileItemFactory;
-import org.apache.commons.fileupload2.jakarta.servlet5.JakartaServletFileUpload;
 import org.apache.commons.io.output.NullWriter;
 
+import jakarta.servlet.AsyncContext;
 import jakarta.servlet.Servlet;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
 import ortus.boxlang.web.context.WebRequestBoxContext;
 
@@ -86,6 +80,11 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 	 */
 	protected WebRequestBoxContext	boxContext;
 
+	/**
+	 * The settings from the servlet that created this exchange
+	 */
+	protected ServletExchangeSettings	settings;
+
 	/**
 	 * The list of file uploads
 	 */
@@ -96,16 +95,67 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 	 */
 	WhitespaceManagingPrintWriter	writer;
 
+	/**
+	 * The BoxLang-owned output buffer under the writer, when one is configured
+	 */
+	PooledResponseWriter			bufferedWriter;
+
+	/**
+	 * The table-driven whitespace compressor under the writer, when that engine is configured
+	 */
+	WhitespaceCompressingWriter		whitespaceWriter;
+
+	/**
+	 * Flushes the output to the client as the page renders, when progressive flushing is configured
+	 */
+	ProgressiveFlushWriter			progressiveWriter;
+
+	/**
+	 * The Server-Sent Events stream which has taken over the response, if one was started
+	 */
+	EventStream						eventStream;
+
+	/**
+	 * The event streams of the servlet that created this exchange. Null if it has none.
+	 */
+	EventStreamRegistry				eventStreams;
+
+	/**
+	 * Counts the page output when request metrics are on
+	 */
+	CountingWriter					countingWriter;
+
+	/**
+	 * The bytes sent as binary and file responses, for the request metrics
+	 */
+	long							sentBytes	= 0;
+
 	/**
 	 * Cache of the form fields
 	 */
 	Map<String, String[]>			formFields	= null;
 
+	/**
+	 * The error the form fields failed to parse with, thrown again each time they are asked for, since the body
+	 * can't be read twice
+	 */
+	RuntimeException				formError	= null;
+
 	/**
 	 * Cache of the url params
 	 */
 	Map<String, String[]>			urlParams	= null;
 
+	/**
+	 * The request header values looked up through the header map views, by case-insensitive name
+	 */
+	Map<String, String[]>			requestHeaderValues	= null;
+
+	/**
+	 * The request cookies, indexed by name
+	 */
+	RequestCookieIndex				requestCookies		= null;
+
 	/**
 	 * Create a new BoxLang HTTP exchange for a Servlet
 	 *
@@ -113,10 +163,79 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 	 * @param response The servlet response
 	 */
 	public BoxHTTPServletExchange( HttpServletRequest request, HttpServletResponse response, Servlet servlet ) {
+		this( request, response, servlet, ServletExchangeSettings.DEFAULTS );
+	}
+
+	/**
+	 * Create a new BoxLang HTTP exchange for a Servlet
+	 *
+	 * @param request  The servlet request
+	 * @param response The servlet response
+	 * @param servlet  The servlet
+	 * @param settings The settings from the servlet's init-params
+	 */
+	public BoxHTTPServletExchange( HttpServletRequest request, HttpServletResponse response, Servlet servlet, ServletExchangeSettings settings ) {
+		this( request, response, servlet, settings, null );
+	}
+
+	/**
+	 * Create a new BoxLang HTTP exchange for a Servlet
+	 *
+	 * @param request      The servlet request
+	 * @param response     The servlet response
+	 * @param servlet      The servlet
+	 * @param settings     The settings from the servlet's init-params
+	 * @param eventStreams The servlet's event streams, or null if it can't start any
+	 */
+	public BoxHTTPServletExchange( HttpServletRequest request, HttpServletResponse response, Servlet servlet, ServletExchangeSettings settings,
+	    EventStreamRegistry eventStreams ) {
+		init( request, response, servlet, settings, eventStreams );
+	}
+
+	/**
+	 * Point the exchange at a request. Used by the constructor, and by the {@link ExchangePool} to reuse a recycled exchange.
+	 *
+	 * @param request      The servlet request
+	 * @param response     The servlet response
+	 * @param servlet      The servlet
+	 * @param settings     The settings from the servlet's init-params
+	 * @param eventStreams The servlet's event streams, or null
+	 */
+	void init( HttpServletRequest request, HttpServletResponse response, Servlet servlet, ServletExchangeSettings settings,
+	    EventStreamRegistry eventStreams ) {
 		this.servletContext	= request.getServletContext();
 		this.request		= request;
-		this.response		= response;
+		this.response		= CompressingResponseWrapper.wrap( request, response, settings );
 		this.servlet		= servlet;
+		this.settings		= settings;
+		this.eventStreams	= eventStreams;
+	}
+
+	/**
+	 * Forget everything about the current request so the exchange can be reused. The upload list is kept, emptied.
+	 *
+	 * @param request  What the request is replaced with until the exchange is reused, or null
+	 * @param response What the response is replaced with until the exchange is reused, or null
+	 */
+	void recycle( HttpServletRequest request, HttpServletResponse response ) {
+		this.servletContext			= null;
+		this.request				= request;
+		this.response				= response;
+		this.boxContext				= null;
+		this.writer					= null;
+		this.bufferedWriter			= null;
+		this.whitespaceWriter		= null;
+		this.progressiveWriter		= null;
+		this.eventStream			= null;
+		this.eventStreams			= null;
+		this.countingWriter			= null;
+		this.sentBytes				= 0;
+		this.formFields				= null;
+		this.formError				= null;
+		this.urlParams				= null;
+		this.requestHeaderValues	= null;
+		this.requestCookies			= null;
+		this.fileUploads.clear();
 	}
 
 	/**
@@ -146,6 +265,136 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 		return response;
 	}
 
+	/**
+	 * Finish the response once the request is done. This sends what is left in the BoxLang output buffer, hands the
+	 * buffer back to its pool, and ends the compressed stream when the response is compressed.
+	 */
+	public void finishResponse() {
+		if ( eventStream != null ) {
+			// The stream owns the response now, so page output still buffered is dropped rather than sent
+			if ( bufferedWriter != null ) {
+				bufferedWriter.reset();
+				try {
+					bufferedWriter.close();
+				} catch ( IOException e ) {
+					// Nothing was left to write
+				}
+			}
+			return;
+		}
+		try {
+			if ( bufferedWriter != null ) {
+				bufferedWriter.close();
+			}
+			if ( response instanceof CompressingResponseWrapper compressing ) {
+				compressing.finish();
+			}
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Could not finish the response", e );
+		}
+	}
+
+	/**
+	 * The response body bytes sent so far, for the request metrics. Page output is only counted when metrics are on, and
+	 * is counted before response compression.
+	 *
+	 * @return The byte count
+	 */
+	public long getResponseBytes() {
+		return sentBytes + ( countingWriter == null ? 0 : countingWriter.getBytes() );
+	}
+
+	/**
+	 * Turn the response into a Server-Sent Events stream. The response is kept open in async mode after the page ends,
+	 * until the stream is closed or the client goes away, and events sent to the stream are flushed to the client
+	 * straight away. Page output written before the stream starts is discarded, and any written after it must not be,
+	 * as it would end up in the middle of the stream.
+	 *
+	 * @param channel The channel the stream listens to for broadcasts from the {@link #getEventStreamRegistry() registry}, or null
+	 *
+	 * @return The stream. Calling this again returns the same one.
+	 */
+	public EventStream startEventStream( String channel ) {
+		if ( eventStream != null ) {
+			return eventStream;
+		}
+		if ( eventStreams == null ) {
+			throw new BoxRuntimeException( "An event stream can only be started by an exchange the BoxLang servlet created" );
+		}
+		if ( response.isCommitted() ) {
+			throw new BoxRuntimeException( "An event stream can't be started once the response has been flushed" );
+		}
+		AsyncContext asyncContext;
+		if ( request.isAsyncStarted() ) {
+			// Async mode already started it
+			asyncContext = request.getAsyncContext();
+		} else if ( request.isAsyncSupported() ) {
+			asyncContext = request.startAsync( request, response );
+		} else {
+			throw new BoxRuntimeException(
+			    "An event stream needs async support. Set <async-supported>true</async-supported> on the servlet and on any filters in front of it." );
+		}
+		// The heartbeats keep the connection alive, so the stream never times out
+		asyncContext.setTimeout( 0 );
+
+		resetResponseBuffer();
+		response.setStatus( HttpServletResponse.SC_OK );
+		response.setContentType( "text/event-stream" );
+		response.setCharacterEncoding( "UTF-8" );
+		response.setHeader( "Cache-Control", "no-cache" );
+		// Stops nginx from buffering the stream
+		response.setHeader( "X-Accel-Buffering", "no" );
+
+		Writer out;
+		try {
+			HttpServletResponse target = response instanceof CompressingResponseWrapper compressing ? compressing.uncompressed() : response;
+			try {
+				out = new OutputStreamWriter( target.getOutputStream(), StandardCharsets.UTF_8 );
+			} catch ( IllegalStateException e ) {
+				// The page has already asked the container for its writer
+				out = target.getWriter();
+			}
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Could not start the event stream", e );
+		}
+
+		eventStream = new EventStream( eventStreams, asyncContext, out, channel, request.getHeader( "Last-Event-ID" ) );
+		request.setAttribute( EventStream.ATTRIBUTE, eventStream );
+		eventStreams.register( eventStream, settings.getEventStreamHeartbeat() );
+		// Send the headers now so the client knows the stream is open
+		eventStream.comment( "" );
+		return eventStream;
+	}
+
+	/**
+	 * Turn the response into a Server-Sent Events stream which doesn't listen to any channel
+	 *
+	 * @return The stream
+	 *
+	 * @see #startEventStream(String)
+	 */
+	public EventStream startEventStream() {
+		return startEventStream( null );
+	}
+
+	/**
+	 * Get the Server-Sent Events stream of this request
+	 *
+	 * @return The stream, or null if none was started
+	 */
+	public EventStream getEventStream() {
+		return eventStream;
+	}
+
+	/**
+	 * Get the event streams of the servlet, to broadcast to them by channel
+	 *
+	 * @return The registry, or null if the exchange wasn't created by the BoxLang servlet
+	 */
+	public EventStreamRegistry getEventStreamRegistry() {
+		return eventStreams;
+	}
+
 	/**
 	 * Get the servlet
 	 *
@@ -212,7 +461,12 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 			ensureResponseContentType();
 
 			// Update this in case the content type has changed
-			writer.setWhitespaceCompressionEnabled( boxContext == null ? false : boxContext.isWhitespaceCompressionEnabled() );
+			boolean compressWhitespace = boxContext == null ? false : boxContext.isWhitespaceCompressionEnabled();
+			if ( whitespaceWriter != null ) {
+				whitespaceWriter.setEnabled( compressWhitespace );
+			} else {
+				writer.setWhitespaceCompressionEnabled( compressWhitespace );
+			}
 			writer.flush();
 			response.flushBuffer();
 		} catch ( IOException e ) {
@@ -227,13 +481,7 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 
 	@Override
 	public Map<String, Object> getRequestAttributeMap() {
-		Map<String, Object>	attributes		= new HashMap<>();
-		Enumeration<String>	attributeNames	= request.getAttributeNames();
-		while ( attributeNames.hasMoreElements() ) {
-			String name = attributeNames.nextElement();
-			attributes.put( name, request.getAttribute( name ) );
-		}
-		return attributes;
+		return new ServletMapViews.RequestAttributes( request );
 	}
 
 	@Override
@@ -263,31 +511,15 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 
 	@Override
 	public BoxCookie[] getRequestCookies() {
-		Cookie[] cookies = request.getCookies();
-		if ( cookies == null ) {
-			return new BoxCookie[ 0 ];
-		}
-		List<Cookie>	cookieList	= List.of( cookies );
-		List<BoxCookie>	boxCookies	= new ArrayList<>();
-		for ( Cookie cookie : cookieList ) {
-			// Only name and value are sent from the browser, so we don't bother with the other getters
-			var c = BoxCookie.fromEncoded( cookie.getName(), cookie.getValue() );
-			boxCookies.add( c );
-		}
-		return boxCookies.toArray( new BoxCookie[ 0 ] );
+		return getRequestCookieIndex().getAll();
 	}
 
 	@Override
 	public Map<String, String[]> getRequestHeaderMap() {
-		Map<String, String[]>	headers		= new HashMap<>();
-		Enumeration<String>		headerNames	= request.getHeaderNames();
-		while ( headerNames.hasMoreElements() ) {
-			String				name		= headerNames.nextElement();
-			Enumeration<String>	values		= request.getHeaders( name );
-			List<String>		valueList	= Collections.list( values );
-			headers.put( name, valueList.toArray( new String[ 0 ] ) );
+		if ( requestHeaderValues == null ) {
+			requestHeaderValues = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
 		}
-		return headers;
+		return new ServletMapViews.RequestHeaders( request, requestHeaderValues );
 	}
 
 	@Override
@@ -337,27 +569,13 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 			return urlParams;
 		}
 
-		try {
-			Map<String, List<String>>	params	= new HashMap<>();
-			String[]					pairs	= queryString.split( "&" );
-			for ( String pair : pairs ) {
-				int		idx	= pair.indexOf( "=" );
-				String	key;
-				key = idx > 0 ? URLDecoder.decode( pair.substring( 0, idx ), "UTF-8" ) : pair;
-				if ( !params.containsKey( key ) ) {
-					params.put( key, new LinkedList<String>() );
-				}
-				String value = idx > 0 && pair.length() > idx + 1 ? URLDecoder.decode( pair.substring( idx + 1 ), "UTF-8" ) : "";
-				params.get( key ).add( value );
-			}
-
-			urlParams = params.entrySet().stream()
-			    .collect( Collectors.toMap( Map.Entry::getKey, e -> e.getValue().toArray( new String[ 0 ] ) ) );
-
-			return urlParams;
-		} catch ( UnsupportedEncodingException e ) {
-			throw new BoxRuntimeException( "Could not decode URL", e );
-		}
+		urlParams = UrlEncodedParser.parseQueryString(
+		    queryString,
+		    StandardCharsets.UTF_8,
+		    settings.getMaxParameterCount(),
+		    settings.getMaxParameterNameLength()
+		);
+		return urlParams;
 	}
 
 	@Override
@@ -366,9 +584,7 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 			return formFields;
 		}
 
-		Map<String, List<String>>	params		= new HashMap<>();
-
-		String						contentType	= request.getContentType();
+		String contentType = request.getContentType();
 		// We can only parse form fields if this is a POST, PUT, PATCH, or DELETE request with a form content type
 		if ( contentType == null ||
 		    ( !getRequestMethod().equalsIgnoreCase( "POST" ) &&
@@ -379,76 +595,39 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 			return formFields;
 		}
 
+		if ( formError != null ) {
+			throw formError;
+		}
+
+		Map<String, String[]> fields = new HashMap<>();
 		try {
 			if ( contentType.startsWith( "application/x-www-form-urlencoded" ) ) {
-				String		requestBody	= request.getReader().lines().collect( Collectors.joining( System.lineSeparator() ) );
-				String[]	pairs		= requestBody.split( "&" );
-				for ( String pair : pairs ) {
-					int idx = pair.indexOf( "=" );
-					// ignore empty names
-					if ( idx <= 0 ) {
-						continue;
-					}
-					String key = URLDecoder.decode( pair.substring( 0, idx ), getCharacterEncodingOrDefault() );
-					// Just in case, check again for empty names
-					if ( key.isEmpty() ) {
-						continue;
-					}
-					String value = URLDecoder.decode( pair.substring( idx + 1 ), getCharacterEncodingOrDefault() );
-					params.computeIfAbsent( key, k -> new LinkedList<>() ).add( value );
+				long maxBodySize = settings.getMaxFormBodySize();
+				if ( maxBodySize > 0 && request.getContentLengthLong() > maxBodySize ) {
+					throw RequestLimitException.tooLarge( "The form body is larger than the maximum of [" + maxBodySize + "] bytes" );
 				}
+				// Empty names are ignored by the parser
+				fields = UrlEncodedParser.parseFormBody(
+				    request.getInputStream(),
+				    Charset.forName( getCharacterEncodingOrDefault() ),
+				    maxBodySize,
+				    settings.getMaxParameterCount(),
+				    settings.getMaxParameterNameLength()
+				);
 			} else if ( contentType.startsWith( "multipart/form-data" ) ) {
-
-				DiskFileItemFactory											factory	= DiskFileItemFactory.builder()
-				    .setCharset( getCharacterEncodingOrDefault() )
-				    .get();
-				JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory>	upload	= new JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory>(
-				    factory );
-
-				List<DiskFileItem>											items	= upload.parseRequest( request );
-				for ( DiskFileItem item : items ) {
-					String name = item.getFieldName();
-					if ( item.isFormField() ) {
-						// This is a regular form field
-						// Whether or not the value was buffered in memory or to disk, getString() will work
-						String value = item.getString();
-						params.computeIfAbsent( name, k -> new LinkedList<>() ).add( value );
-					} else if ( item.getName() == null || item.getName().isEmpty() ) {
-						// The file input field was left empty
-						params.computeIfAbsent( name, k -> new LinkedList<>() ).add( "" );
-					} else if ( item.isInMemory() ) {
-						// Small files buffered in memory need to be manually written to a temp file
-						// so we have a Path to return
-						Path tempFile = java.nio.file.Files.createTempFile( "boxlang-upload-", null );
-						item.write( tempFile );
-						String filePath = tempFile.toString();
-						params.computeIfAbsent( name, k -> new LinkedList<>() ).add( filePath );
-						fileUploads.add( new FileUpload( Key.of( name ), tempFile, item.getName() ) );
-					} else {
-						// This is a file
-						Path storeLocation = item.getPath();
-						// I don't think this will ever be null here, but just in case
-						if ( storeLocation != null ) {
-							// A file was uploaded (it might be a 0KB file)
-							String filePath = storeLocation.toString();
-							params.computeIfAbsent( name, k -> new LinkedList<>() ).add( filePath );
-							fileUploads.add( new FileUpload( Key.of( name ), storeLocation, item.getName() ) );
-						} else {
-							// The file input field was left empty
-							params.computeIfAbsent( name, k -> new LinkedList<>() ).add( "" );
-						}
-					}
-				}
+				fields = MultipartFormParser.parse( request, Charset.forName( getCharacterEncodingOrDefault() ), settings, fileUploads );
 			}
 		} catch ( IllegalStateException e ) {
 			// if request is already read, we can't read it again
 		} catch ( IOException e ) {
-			throw new RuntimeException( "Could not parse form parameters", e );
+			formError = new RuntimeException( "Could not parse form parameters", e );
+			throw formError;
+		} catch ( RuntimeException e ) {
+			formError = e;
+			throw e;
 		}
 
-		formFields = params.entrySet().stream()
-		    .collect( Collectors.toMap( Map.Entry::getKey, e -> e.getValue().toArray( new String[ 0 ] ) ) );
-
+		formFields = fields;
 		return formFields;
 	}
 
@@ -578,12 +757,7 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 
 	@Override
 	public Map<String, String[]> getResponseHeaderMap() {
-		Map<String, String[]>	headers		= new HashMap<>();
-		Collection<String>		headerNames	= response.getHeaderNames();
-		for ( String name : headerNames ) {
-			headers.put( name, response.getHeaders( name ).toArray( new String[ 0 ] ) );
-		}
-		return headers;
+		return new ServletMapViews.ResponseHeaders( response );
 	}
 
 	@Override
@@ -597,14 +771,51 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 			PrintWriter servletWriter;
 
 			try {
-				servletWriter = response.getWriter();
+				if ( settings.getOutputBufferSize() > 0 ) {
+					// Setting it explicitly keeps the charset in the Content-Type, as the container's writer would
+					response.setCharacterEncoding( response.getCharacterEncoding() );
+					bufferedWriter	= new PooledResponseWriter(
+					    response.getOutputStream(),
+					    Charset.forName( response.getCharacterEncoding() ),
+					    settings.getOutputBufferSize(),
+					    settings.getOutputFlushThreshold()
+					);
+					servletWriter	= new PrintWriter( bufferedWriter, false );
+				} else {
+					servletWriter = response.getWriter();
+				}
 			} catch ( IOException e ) {
 				throw new BoxRuntimeException( "Could not get response writer", e );
 			} catch ( IllegalStateException e ) {
 				// reponse has already been sent, so return a dummy writer
 				servletWriter = new PrintWriter( NullWriter.INSTANCE );
 			}
-			writer = new WhitespaceManagingPrintWriter( servletWriter, boxContext == null ? false : boxContext.isWhitespaceCompressionEnabled() );
+			Writer target = servletWriter;
+			if ( settings.isMetrics() ) {
+				countingWriter	= new CountingWriter( target, "UTF-8".equalsIgnoreCase( response.getCharacterEncoding() ) );
+				target			= countingWriter;
+			}
+			if ( settings.isProgressiveFlush() ) {
+				// Sits under the whitespace compression so it counts what is actually sent
+				progressiveWriter	= new ProgressiveFlushWriter(
+				    target,
+				    settings.getProgressiveFlushChars(),
+				    settings.getProgressiveFlushMillis(),
+				    this::isProgressiveFlushActive,
+				    this::ensureResponseContentType
+				);
+				target				= progressiveWriter;
+			}
+			boolean compressWhitespace = boxContext == null ? false : boxContext.isWhitespaceCompressionEnabled();
+			if ( settings.isTableWhitespaceEngine() ) {
+				// Our engine does the compressing, so the WhitespaceManagingPrintWriter on top of it never does
+				whitespaceWriter	= new WhitespaceCompressingWriter( target, compressWhitespace );
+				writer				= new WhitespaceManagingPrintWriter( new PrintWriter( whitespaceWriter, false ), false );
+			} else if ( target != servletWriter ) {
+				writer = new WhitespaceManagingPrintWriter( new PrintWriter( target, false ), compressWhitespace );
+			} else {
+				writer = new WhitespaceManagingPrintWriter( servletWriter, compressWhitespace );
+			}
 		}
 		return writer;
 	}
@@ -613,14 +824,58 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 	public void sendResponseBinary( byte[] data ) {
 		resetResponseBuffer();
 		try {
-			var			out			= response.getOutputStream();
-			final int	bufferSize	= 8192;
-			int			offset		= 0;
-			while ( offset < data.length ) {
-				int len = Math.min( bufferSize, data.length - offset );
-				out.write( data, offset, len );
-				offset += len;
-			}
+			BinaryResponseSender.send( response, data );
+			sentBytes += data.length;
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Could not send binary response", e );
+		}
+	}
+
+	/**
+	 * Send the remaining bytes of a buffer as the response body. Heap buffers are written in a single call.
+	 *
+	 * @param data The buffer
+	 */
+	public void sendResponseBinary( ByteBuffer data ) {
+		resetResponseBuffer();
+		try {
+			int length = data.remaining();
+			BinaryResponseSender.send( response, data );
+			sentBytes += length;
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Could not send binary response", e );
+		}
+	}
+
+	/**
+	 * Stream the rest of an input stream as the response body, without reading it all into memory first.
+	 * The stream is not closed.
+	 *
+	 * @param data   The stream
+	 * @param length The number of bytes the stream will produce, or -1 if unknown (the response is then chunked)
+	 */
+	public void sendResponseBinary( InputStream data, long length ) {
+		resetResponseBuffer();
+		try {
+			BinaryResponseSender.send( response, data, length );
+			sentBytes += Math.max( 0, length );
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Could not send binary response", e );
+		}
+	}
+
+	/**
+	 * Stream the rest of a channel as the response body, without reading it all into memory first.
+	 * File channels are sent with transferTo(). The channel is not closed.
+	 *
+	 * @param data   The channel
+	 * @param length The number of bytes the channel will produce, or -1 if unknown
+	 */
+	public void sendResponseBinary( ReadableByteChannel data, long length ) {
+		resetResponseBuffer();
+		try {
+			BinaryResponseSender.send( response, data, length );
+			sentBytes += Math.max( 0, length );
 		} catch ( IOException e ) {
 			throw new BoxRuntimeException( "Could not send binary response", e );
 		}
@@ -629,14 +884,11 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 	@Override
 	public void sendResponseFile( File file ) {
 		resetResponseBuffer();
-		try ( FileInputStream inputStream = new FileInputStream( file ) ) {
-			FileChannel	channel	= inputStream.getChannel();
-			ByteBuffer	buffer	= ByteBuffer.allocate( 8192 );
-			while ( channel.read( buffer ) > 0 ) {
-				buffer.flip();
-				response.getOutputStream().write( buffer.array(), 0, buffer.limit() );
-				buffer.clear();
-			}
+		try {
+			// Files skip compression so they keep sendfile and Range support
+			HttpServletResponse target = response instanceof CompressingResponseWrapper compressing ? compressing.uncompressed() : response;
+			FileResponseSender.send( request, target, file, settings );
+			sentBytes += parseContentLength( target.getHeader( "Content-Length" ) );
 		} catch ( IOException e ) {
 			throw new BoxRuntimeException( "Could not send file response", e );
 		}
@@ -656,6 +908,15 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 	public void resetResponseBuffer() {
 		try {
 			response.resetBuffer();
+			if ( bufferedWriter != null ) {
+				bufferedWriter.reset();
+			}
+			if ( whitespaceWriter != null ) {
+				whitespaceWriter.reset();
+			}
+			if ( progressiveWriter != null ) {
+				progressiveWriter.reset();
+			}
 		} catch ( IllegalStateException e ) {
 			throw new BoxRuntimeException( "Could not reset response buffer", e );
 		}
@@ -685,13 +946,51 @@ public class BoxHTTPServletExchange implements IBoxHTTPExchange {
 
 	@Override
 	public BoxCookie getRequestCookie( String name ) {
-		var cookies = getRequestCookies();
-		for ( BoxCookie cookie : cookies ) {
-			if ( cookie.getName().equalsIgnoreCase( name ) ) {
-				return cookie;
-			}
+		return getRequestCookieIndex().get( name );
+	}
+
+	/**
+	 * Get the cookie index for this request, building it the first time
+	 *
+	 * @return The cookie index
+	 */
+	private RequestCookieIndex getRequestCookieIndex() {
+		if ( requestCookies == null ) {
+			requestCookies = new RequestCookieIndex( request.getCookies() );
+		}
+		return requestCookies;
+	}
+
+	/**
+	 * Parse a Content-Length header
+	 *
+	 * @param value The header value, or null
+	 *
+	 * @return The length, or 0 if there is none
+	 */
+	private static long parseContentLength( String value ) {
+		if ( value == null ) {
+			return 0;
+		}
+		try {
+			return Math.max( 0, Long.parseLong( value.trim() ) );
+		} catch ( NumberFormatException e ) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Whether progressive flushing applies to this request right now. In the <code>request</code> mode the request
+	 * must have set the {@link ServletExchangeSettings#PROGRESSIVE_FLUSH} attribute to true, and can clear it again.
+	 *
+	 * @return True if the output should be flushed once a threshold is reached
+	 */
+	private boolean isProgressiveFlushActive() {
+		if ( !settings.isProgressiveFlushOptIn() ) {
+			return true;
 		}
-		return null;
+		Object optIn = request.getAttribute( ServletExchangeSettings.PROGRESSIVE_FLUSH );
+		return Boolean.TRUE.equals( optIn ) || "true".equalsIgnoreCase( String.valueOf( optIn ) );
 	}
 
 	@Override
@@ -0,0 +1,88 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A small, bounded pool of fixed-size byte arrays used to copy response bodies.
+ * <p>
+ * This is a shared queue rather than a ThreadLocal on purpose: with virtual threads every request gets a new thread,
+ * so a ThreadLocal buffer would never be reused. When the pool is empty a new array is allocated, and arrays released
+ * into a full pool are simply dropped.
+ */
+final class BufferPool {
+
+	/**
+	 * The pool used for response bodies
+	 */
+	static final BufferPool						SHARED	= new BufferPool( 8192, 256 );
+
+	private final int							bufferSize;
+	private final ArrayBlockingQueue<byte[]>	buffers;
+
+	/**
+	 * Create a pool
+	 *
+	 * @param bufferSize The size of each buffer
+	 * @param maxPooled  The max number of idle buffers to keep
+	 */
+	BufferPool( int bufferSize, int maxPooled ) {
+		this.bufferSize	= bufferSize;
+		this.buffers	= new ArrayBlockingQueue<>( maxPooled );
+	}
+
+	/**
+	 * Take a buffer from the pool, or allocate one if the pool is empty
+	 *
+	 * @return A buffer, with undefined contents
+	 */
+	byte[] acquire() {
+		byte[] buffer = buffers.poll();
+		return buffer == null ? new byte[ bufferSize ] : buffer;
+	}
+
+	/**
+	 * Give a buffer back to the pool
+	 *
+	 * @param buffer The buffer. Buffers of the wrong size are ignored.
+	 */
+	void release( byte[] buffer ) {
+		if ( buffer != null && buffer.length == bufferSize ) {
+			buffers.offer( buffer );
+		}
+	}
+
+	/**
+	 * The size of the buffers in this pool
+	 *
+	 * @return The size in bytes
+	 */
+	int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * The number of idle buffers in the pool
+	 *
+	 * @return The count
+	 */
+	int getPooledCount() {
+		return buffers.size();
+	}
+}
@@ -0,0 +1,568 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * I compress the response body with gzip or deflate when the client accepts it.
+ * <p>
+ * The decision is made as late as possible, once the content type is known: the first bytes written are held back
+ * until either the min size is reached (the response is then compressed if its content type is in the allow-list and
+ * it doesn't already have a Content-Encoding) or the response ends (it is then sent as-is, with a Content-Length).
+ * A flush makes the decision too: output flushed before the min size is reached goes out as-is, since compressing
+ * so little would only add overhead.
+ * <p>
+ * Deflaters are pooled, since each one holds a sizeable chunk of native memory.
+ */
+final class CompressingResponseWrapper extends HttpServletResponseWrapper {
+
+	static final String							GZIP				= "gzip";
+	static final String							DEFLATE				= "deflate";
+
+	private static final byte[]					GZIP_HEADER			= new byte[] { 0x1f, ( byte ) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, ( byte ) 0xff };
+
+	/**
+	 * Idle Deflaters, for gzip (raw deflate data) and deflate (zlib-wrapped) respectively
+	 */
+	private static final ArrayBlockingQueue<Deflater>	GZIP_DEFLATERS		= new ArrayBlockingQueue<>( 64 );
+	private static final ArrayBlockingQueue<Deflater>	DEFLATE_DEFLATERS	= new ArrayBlockingQueue<>( 64 );
+
+	private final ServletExchangeSettings		settings;
+	private final String						encoding;
+	private CompressingOutputStream				stream;
+	private ResponseStreamWriter				streamWriter;
+	private PrintWriter							writer;
+
+	/**
+	 * The Content-Length set by the application, held back until we know whether we compress. -1 if none.
+	 */
+	private long								contentLength		= -1;
+
+	CompressingResponseWrapper( HttpServletResponse response, ServletExchangeSettings settings, String encoding ) {
+		super( response );
+		this.settings	= settings;
+		this.encoding	= encoding;
+	}
+
+	/**
+	 * Wrap a response if compression is enabled and the client accepts gzip or deflate
+	 *
+	 * @param request  The servlet request
+	 * @param response The servlet response
+	 * @param settings The exchange settings
+	 *
+	 * @return The wrapped response, or the response itself if it won't be compressed
+	 */
+	static HttpServletResponse wrap( HttpServletRequest request, HttpServletResponse response, ServletExchangeSettings settings ) {
+		if ( !settings.isCompression() || "HEAD".equals( request.getMethod() ) ) {
+			return response;
+		}
+		String encoding = negotiate( request.getHeader( "Accept-Encoding" ) );
+		return encoding == null ? response : new CompressingResponseWrapper( response, settings, encoding );
+	}
+
+	/**
+	 * Pick the encoding to use from an Accept-Encoding header. gzip is preferred over deflate, and anything with a
+	 * quality of 0 is refused.
+	 *
+	 * @param acceptEncoding The header value
+	 *
+	 * @return {@link #GZIP}, {@link #DEFLATE} or null if neither is accepted
+	 */
+	static String negotiate( String acceptEncoding ) {
+		if ( acceptEncoding == null || acceptEncoding.isBlank() ) {
+			return null;
+		}
+		boolean	gzip		= false;
+		boolean	deflate		= false;
+		boolean	wildcard	= false;
+		boolean	gzipSeen	= false;
+		boolean	deflateSeen	= false;
+		for ( String part : acceptEncoding.split( "," ) ) {
+			int		semicolon	= part.indexOf( ';' );
+			String	coding		= ( semicolon < 0 ? part : part.substring( 0, semicolon ) ).trim().toLowerCase( Locale.ROOT );
+			boolean	accepted	= semicolon < 0 || quality( part.substring( semicolon + 1 ) ) > 0;
+			switch ( coding ) {
+				case GZIP, "x-gzip" -> {
+					gzip		= accepted;
+					gzipSeen	= true;
+				}
+				case DEFLATE -> {
+					deflate		= accepted;
+					deflateSeen	= true;
+				}
+				case "*" -> wildcard = accepted;
+				default -> {
+				}
+			}
+		}
+		if ( gzip || ( wildcard && !gzipSeen ) ) {
+			return GZIP;
+		}
+		if ( deflate || ( wildcard && !deflateSeen ) ) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	/**
+	 * Whether an Accept-Encoding header allows a content coding, either by name or through <code>*</code>
+	 *
+	 * @param acceptEncoding The header value
+	 * @param coding         The content coding, in lower case
+	 *
+	 * @return True if the client accepts it
+	 */
+	static boolean accepts( String acceptEncoding, String coding ) {
+		if ( acceptEncoding == null || acceptEncoding.isBlank() ) {
+			return false;
+		}
+		boolean wildcard = false;
+		for ( String part : acceptEncoding.split( "," ) ) {
+			int		semicolon	= part.indexOf( ';' );
+			String	name		= ( semicolon < 0 ? part : part.substring( 0, semicolon ) ).trim();
+			boolean	accepted	= semicolon < 0 || quality( part.substring( semicolon + 1 ) ) > 0;
+			if ( name.equalsIgnoreCase( coding ) ) {
+				return accepted;
+			}
+			if ( name.equals( "*" ) ) {
+				wildcard = accepted;
+			}
+		}
+		return wildcard;
+	}
+
+	/**
+	 * Parse the q= parameter of an Accept-Encoding entry
+	 */
+	private static double quality( String params ) {
+		for ( String param : params.split( ";" ) ) {
+			String trimmed = param.trim();
+			if ( trimmed.startsWith( "q=" ) || trimmed.startsWith( "Q=" ) ) {
+				try {
+					return Double.parseDouble( trimmed.substring( 2 ).trim() );
+				} catch ( NumberFormatException e ) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Give up on compressing so the caller can write to the real response directly, for example to use sendfile.
+	 * This only works while nothing has been compressed yet, which is always true right after a buffer reset.
+	 *
+	 * @return The response to write to
+	 *
+	 * @throws IOException If the response can't be written
+	 */
+	HttpServletResponse uncompressed() throws IOException {
+		if ( stream == null ) {
+			stream = new CompressingOutputStream();
+		}
+		if ( stream.compressing ) {
+			return this;
+		}
+		stream.decide( false );
+		return ( HttpServletResponse ) getResponse();
+	}
+
+	/**
+	 * Finish the response body: send anything held back and end the compressed stream. Called once the request is done.
+	 *
+	 * @throws IOException If the response can't be written
+	 */
+	void finish() throws IOException {
+		if ( streamWriter != null ) {
+			// Closing the writer hands its buffer back to the pool and finishes the stream
+			streamWriter.close();
+		}
+		if ( stream != null ) {
+			stream.finish();
+		}
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		// Unlike the container we allow both the stream and the writer, they share the same underlying stream
+		if ( stream == null ) {
+			stream = new CompressingOutputStream();
+		}
+		return stream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if ( writer == null ) {
+			if ( stream == null ) {
+				stream = new CompressingOutputStream();
+			}
+			streamWriter	= new ResponseStreamWriter( stream, Charset.forName( getCharacterEncoding() ) );
+			writer			= new PrintWriter( streamWriter, false );
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength( int len ) {
+		setContentLengthLong( len );
+	}
+
+	@Override
+	public void setContentLengthLong( long len ) {
+		if ( stream != null && stream.decided ) {
+			if ( !stream.compressing ) {
+				super.setContentLengthLong( len );
+			}
+			return;
+		}
+		contentLength = len;
+	}
+
+	@Override
+	public void setHeader( String name, String value ) {
+		if ( "Content-Length".equalsIgnoreCase( name ) ) {
+			setContentLengthLong( value == null ? -1 : Long.parseLong( value.trim() ) );
+			return;
+		}
+		super.setHeader( name, value );
+	}
+
+	@Override
+	public void addHeader( String name, String value ) {
+		if ( "Content-Length".equalsIgnoreCase( name ) ) {
+			setHeader( name, value );
+			return;
+		}
+		super.addHeader( name, value );
+	}
+
+	@Override
+	public void setIntHeader( String name, int value ) {
+		if ( "Content-Length".equalsIgnoreCase( name ) ) {
+			setContentLengthLong( value );
+			return;
+		}
+		super.setIntHeader( name, value );
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		if ( stream != null ) {
+			stream.flush();
+		}
+		super.flushBuffer();
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		resetStream( true );
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		contentLength = -1;
+		resetStream( false );
+	}
+
+	/**
+	 * Throw away anything held back or compressed so far and go back to undecided
+	 */
+	private void resetStream( boolean keepHeaders ) {
+		if ( streamWriter != null ) {
+			streamWriter.discard();
+		}
+		if ( stream != null ) {
+			stream.reset( keepHeaders );
+		}
+	}
+
+	/**
+	 * Header setters which skip our Content-Length handling
+	 */
+	private void setRawHeader( String name, String value ) {
+		super.setHeader( name, value );
+	}
+
+	private void addRawHeader( String name, String value ) {
+		super.addHeader( name, value );
+	}
+
+	private void setRawContentLength( long len ) {
+		super.setContentLengthLong( len );
+	}
+
+	/**
+	 * Whether the response, as it stands, should be compressed
+	 */
+	private boolean isCompressible() {
+		int status = getStatus();
+		if ( status < 200 || status == SC_NO_CONTENT || status == SC_PARTIAL_CONTENT || status == SC_NOT_MODIFIED ) {
+			return false;
+		}
+		if ( containsHeader( "Content-Encoding" ) ) {
+			// The body is already encoded, for example a pre-gzipped file sent as binary
+			return false;
+		}
+		// BoxLang defaults the content type to text/html when it first flushes, which can be after we decide
+		String contentType = getContentType();
+		if ( contentType == null ) {
+			contentType = "text/html";
+		}
+		int semicolon = contentType.indexOf( ';' );
+		if ( semicolon >= 0 ) {
+			contentType = contentType.substring( 0, semicolon );
+		}
+		return settings.getCompressionMimeTypes().contains( contentType.trim().toLowerCase( Locale.ROOT ) );
+	}
+
+	/**
+	 * The output stream, which holds back the first bytes until it knows whether to compress them
+	 */
+	private final class CompressingOutputStream extends ServletOutputStream {
+
+		private final byte[]	held	= new byte[ Math.max( 0, settings.getCompressionMinSize() ) ];
+		private int				heldCount;
+
+		boolean					decided;
+		boolean					compressing;
+		private boolean			finished;
+
+		private Deflater		deflater;
+		private CRC32			crc;
+		private byte[]			buffer;
+		private boolean			headerWritten;
+
+		@Override
+		public void write( int b ) throws IOException {
+			write( new byte[] { ( byte ) b }, 0, 1 );
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			if ( finished ) {
+				throw new IOException( "The response has already been completed" );
+			}
+			if ( !decided ) {
+				if ( contentLength >= 0 && contentLength < held.length ) {
+					// We already know this response is too small to be worth compressing
+					decide( false );
+				} else if ( heldCount + len < held.length ) {
+					System.arraycopy( b, off, held, heldCount, len );
+					heldCount += len;
+					return;
+				} else {
+					decide( isCompressible() );
+				}
+			}
+			if ( compressing ) {
+				compress( b, off, len );
+			} else {
+				target().write( b, off, len );
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if ( finished ) {
+				return;
+			}
+			if ( !decided && heldCount > 0 ) {
+				// Less than the minimum size so far, and the client wants it now, so it goes out as-is
+				decide( false );
+			}
+			if ( compressing ) {
+				deflate( Deflater.SYNC_FLUSH );
+			}
+			if ( decided ) {
+				target().flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener( WriteListener writeListener ) {
+			throw new IllegalStateException( "Non-blocking output is not supported on a compressed response" );
+		}
+
+		/**
+		 * Decide whether to compress and send anything held back
+		 */
+		void decide( boolean compress ) throws IOException {
+			decided		= true;
+			compressing	= compress;
+			if ( compress ) {
+				setRawHeader( "Content-Encoding", encoding );
+				if ( !getHeaders( "Vary" ).contains( "Accept-Encoding" ) ) {
+					addRawHeader( "Vary", "Accept-Encoding" );
+				}
+				boolean gzip = GZIP.equals( encoding );
+				deflater = ( gzip ? GZIP_DEFLATERS : DEFLATE_DEFLATERS ).poll();
+				if ( deflater == null ) {
+					deflater = new Deflater( settings.getCompressionLevel(), gzip );
+				} else {
+					deflater.setLevel( settings.getCompressionLevel() );
+				}
+				crc		= gzip ? new CRC32() : null;
+				buffer	= BufferPool.SHARED.acquire();
+			} else if ( contentLength >= 0 && !isCommitted() ) {
+				setRawContentLength( contentLength );
+			}
+			if ( heldCount > 0 ) {
+				int count = heldCount;
+				heldCount = 0;
+				if ( compressing ) {
+					compress( held, 0, count );
+				} else {
+					target().write( held, 0, count );
+				}
+			}
+		}
+
+		/**
+		 * End the response body
+		 */
+		void finish() throws IOException {
+			if ( finished ) {
+				return;
+			}
+			if ( !decided ) {
+				if ( contentLength < 0 && !isCommitted() ) {
+					contentLength = heldCount;
+				}
+				decide( heldCount >= held.length && isCompressible() );
+			}
+			finished = true;
+			if ( compressing ) {
+				writeHeader();
+				deflater.finish();
+				while ( !deflater.finished() ) {
+					deflate( Deflater.NO_FLUSH );
+				}
+				if ( crc != null ) {
+					byte[] trailer = new byte[ 8 ];
+					writeInt( trailer, 0, ( int ) crc.getValue() );
+					writeInt( trailer, 4, deflater.getTotalIn() );
+					target().write( trailer );
+				}
+				release();
+			}
+		}
+
+		/**
+		 * Go back to undecided after a buffer reset
+		 */
+		void reset( boolean keepHeaders ) {
+			heldCount	= 0;
+			finished	= false;
+			if ( compressing ) {
+				release();
+				if ( keepHeaders ) {
+					// Setting a header to null removes it in Tomcat, Jetty and Undertow
+					setRawHeader( "Content-Encoding", null );
+				}
+			}
+			decided		= false;
+			compressing	= false;
+		}
+
+		private void compress( byte[] b, int off, int len ) throws IOException {
+			writeHeader();
+			if ( crc != null ) {
+				crc.update( b, off, len );
+			}
+			deflater.setInput( b, off, len );
+			while ( !deflater.needsInput() ) {
+				deflate( Deflater.NO_FLUSH );
+			}
+		}
+
+		private void deflate( int flush ) throws IOException {
+			writeHeader();
+			int count;
+			do {
+				count = deflater.deflate( buffer, 0, buffer.length, flush );
+				if ( count > 0 ) {
+					target().write( buffer, 0, count );
+				}
+			} while ( count == buffer.length );
+		}
+
+		private void writeHeader() throws IOException {
+			if ( !headerWritten ) {
+				headerWritten = true;
+				if ( crc != null ) {
+					target().write( GZIP_HEADER );
+				}
+			}
+		}
+
+		/**
+		 * Give the Deflater and buffer back to their pools
+		 */
+		private void release() {
+			if ( deflater != null ) {
+				deflater.reset();
+				if ( ! ( crc != null ? GZIP_DEFLATERS : DEFLATE_DEFLATERS ).offer( deflater ) ) {
+					deflater.end();
+				}
+				deflater = null;
+			}
+			BufferPool.SHARED.release( buffer );
+			buffer			= null;
+			crc				= null;
+			headerWritten	= false;
+		}
+
+		private ServletOutputStream target() throws IOException {
+			return getResponse().getOutputStream();
+		}
+
+		private static void writeInt( byte[] b, int offset, int value ) {
+			b[ offset ]		= ( byte ) value;
+			b[ offset + 1 ]	= ( byte ) ( value >> 8 );
+			b[ offset + 2 ]	= ( byte ) ( value >> 16 );
+			b[ offset + 3 ]	= ( byte ) ( value >> 24 );
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Counts the bytes of the page output for the request metrics. The chars are counted as they would be encoded in
+ * UTF-8 when that is the response charset, and one byte each otherwise, so the count is exact for UTF-8 and the
+ * single-byte charsets.
+ */
+final class CountingWriter extends Writer {
+
+	private final Writer	out;
+	private final boolean	utf8;
+	private long			bytes;
+
+	/**
+	 * Create a writer
+	 *
+	 * @param out  The writer to write to
+	 * @param utf8 Whether the response charset is UTF-8
+	 */
+	CountingWriter( Writer out, boolean utf8 ) {
+		this.out	= out;
+		this.utf8	= utf8;
+	}
+
+	/**
+	 * The bytes written so far
+	 *
+	 * @return The count
+	 */
+	long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public void write( int c ) throws IOException {
+		out.write( c );
+		bytes += utf8 ? utf8Length( ( char ) c ) : 1;
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		out.write( cbuf, off, len );
+		if ( !utf8 ) {
+			bytes += len;
+			return;
+		}
+		long count = 0;
+		for ( int i = off; i < off + len; i++ ) {
+			count += utf8Length( cbuf[ i ] );
+		}
+		bytes += count;
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		out.write( str, off, len );
+		if ( !utf8 ) {
+			bytes += len;
+			return;
+		}
+		long count = 0;
+		for ( int i = off; i < off + len; i++ ) {
+			count += utf8Length( str.charAt( i ) );
+		}
+		bytes += count;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * The UTF-8 length of a char. Each half of a surrogate pair counts 2, which adds up to the 4 bytes of the pair.
+	 */
+	private static int utf8Length( char c ) {
+		if ( c < 0x80 ) {
+			return 1;
+		}
+		if ( c < 0x800 || Character.isSurrogate( c ) ) {
+			return 2;
+		}
+		return 3;
+	}
+}
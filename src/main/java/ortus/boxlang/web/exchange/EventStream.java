@@ -0,0 +1,343 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+/**
+ * A Server-Sent Events stream to one client, started with {@link BoxHTTPServletExchange#startEventStream(String)}.
+ * <p>
+ * The stream owns the response through an {@link AsyncContext}, so it stays open after the page that started it has
+ * finished, and no thread is held while it is idle. Events can be sent from any thread: they are queued, and the
+ * queue is written and flushed in order on a virtual thread, so a slow client never blocks the sender. A client that
+ * falls more than {@link #MAX_PENDING} events behind is disconnected.
+ * <p>
+ * Disconnects are noticed through the container's {@link AsyncListener} events and failed writes. Idle streams get a
+ * comment line as a heartbeat from their {@link EventStreamRegistry}'s scheduler, which keeps proxies from timing them
+ * out and finds dead connections. Only the drain completes the response, so it is never ended in the middle of a write.
+ */
+public final class EventStream {
+
+	/**
+	 * The request attribute holding the stream once it has started. Tells the async request processor not to complete
+	 * the async context when the page ends.
+	 */
+	public static final String					ATTRIBUTE		= "boxlang.eventStream";
+
+	/**
+	 * The max number of chunks waiting to be written before the client is considered gone
+	 */
+	static final int							MAX_PENDING		= 1024;
+
+	private final EventStreamRegistry			registry;
+	private final AsyncContext					asyncContext;
+	private final Writer						out;
+	private final String						channel;
+	private final String						lastEventId;
+
+	private final ConcurrentLinkedQueue<String>	pending			= new ConcurrentLinkedQueue<>();
+	private final AtomicInteger					pendingCount	= new AtomicInteger();
+	private final AtomicBoolean					draining		= new AtomicBoolean( false );
+	private final AtomicBoolean					completed		= new AtomicBoolean( false );
+	private volatile boolean					open			= true;
+	private volatile long						lastWrite		= System.nanoTime();
+	volatile ScheduledFuture<?>					heartbeat;
+
+	/**
+	 * Create a stream. The response headers must be set already.
+	 *
+	 * @param registry     The registry of the servlet the stream belongs to
+	 * @param asyncContext The async context of the request
+	 * @param out          Where the events are written
+	 * @param channel      The channel the stream listens to for broadcasts, or null
+	 * @param lastEventId  The Last-Event-ID header sent by a reconnecting client, or null
+	 */
+	EventStream( EventStreamRegistry registry, AsyncContext asyncContext, Writer out, String channel, String lastEventId ) {
+		this.registry		= registry;
+		this.asyncContext	= asyncContext;
+		this.out			= out;
+		this.channel		= channel;
+		this.lastEventId	= lastEventId;
+		try {
+			asyncContext.addListener( new AsyncListener() {
+
+				@Override
+				public void onComplete( AsyncEvent event ) {
+					completed.set( true );
+					disconnected();
+				}
+
+				@Override
+				public void onTimeout( AsyncEvent event ) {
+					disconnected();
+				}
+
+				@Override
+				public void onError( AsyncEvent event ) {
+					disconnected();
+				}
+
+				@Override
+				public void onStartAsync( AsyncEvent event ) {
+				}
+			} );
+		} catch ( IllegalStateException e ) {
+			// Some containers only take listeners during the dispatch that started async, failed writes still tell us
+		}
+	}
+
+	/**
+	 * Send an unnamed event
+	 *
+	 * @param data The event data. Each line becomes its own data field.
+	 *
+	 * @return False if the stream is closed and the event was dropped
+	 */
+	public boolean send( String data ) {
+		return send( null, data, null );
+	}
+
+	/**
+	 * Send a named event
+	 *
+	 * @param event The event name, or null for the default "message" event
+	 * @param data  The event data. Each line becomes its own data field.
+	 *
+	 * @return False if the stream is closed and the event was dropped
+	 */
+	public boolean send( String event, String data ) {
+		return send( event, data, null );
+	}
+
+	/**
+	 * Send a named event with an id, which the client sends back in the Last-Event-ID header when it reconnects
+	 *
+	 * @param event The event name, or null for the default "message" event
+	 * @param data  The event data. Each line becomes its own data field.
+	 * @param id    The event id, or null
+	 *
+	 * @return False if the stream is closed and the event was dropped
+	 */
+	public boolean send( String event, String data, String id ) {
+		return enqueue( format( event, data, id ) );
+	}
+
+	/**
+	 * Send a comment, which clients ignore
+	 *
+	 * @param text The comment
+	 *
+	 * @return False if the stream is closed
+	 */
+	public boolean comment( String text ) {
+		return enqueue( ": " + singleLine( text ) + "\n\n" );
+	}
+
+	/**
+	 * Tell the client how long to wait before reconnecting when the connection drops
+	 *
+	 * @param millis The reconnection time in milliseconds
+	 *
+	 * @return False if the stream is closed
+	 */
+	public boolean retry( long millis ) {
+		return enqueue( "retry: " + millis + "\n\n" );
+	}
+
+	/**
+	 * Whether the stream still accepts events. False once it has been closed or the client has gone away.
+	 *
+	 * @return True if open
+	 */
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * The channel the stream listens to for broadcasts
+	 *
+	 * @return The channel, or null
+	 */
+	public String getChannel() {
+		return channel;
+	}
+
+	/**
+	 * The id of the last event the client saw, sent when it reconnects
+	 *
+	 * @return The Last-Event-ID header, or null
+	 */
+	public String getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * Close the stream once the events already queued have been sent, and end the response
+	 */
+	public void close() {
+		if ( open ) {
+			open = false;
+			registry.unregister( this );
+			scheduleDrain();
+		}
+	}
+
+	/**
+	 * Send a heartbeat if nothing has been written for the given time. Called by the registry's scheduler.
+	 *
+	 * @param idleNanos How long the stream must have been idle
+	 */
+	void heartbeat( long idleNanos ) {
+		if ( System.nanoTime() - lastWrite >= idleNanos && pending.isEmpty() ) {
+			enqueue( ":\n\n" );
+		}
+	}
+
+	/**
+	 * Format an event in the text/event-stream format
+	 *
+	 * @param event The event name, or null
+	 * @param data  The data
+	 * @param id    The id, or null
+	 *
+	 * @return The event, ending with a blank line
+	 */
+	static String format( String event, String data, String id ) {
+		StringBuilder sb = new StringBuilder( ( data == null ? 0 : data.length() ) + 32 );
+		if ( event != null && !event.isEmpty() ) {
+			sb.append( "event: " ).append( singleLine( event ) ).append( '\n' );
+		}
+		if ( id != null ) {
+			sb.append( "id: " ).append( singleLine( id ) ).append( '\n' );
+		}
+		String	text	= data == null ? "" : data;
+		int		start	= 0;
+		int		length	= text.length();
+		// Every line of the data, whatever its line ending, gets its own data field
+		for ( int i = 0; i < length; i++ ) {
+			char c = text.charAt( i );
+			if ( c == '\r' || c == '\n' ) {
+				sb.append( "data: " ).append( text, start, i ).append( '\n' );
+				if ( c == '\r' && i + 1 < length && text.charAt( i + 1 ) == '\n' ) {
+					i++;
+				}
+				start = i + 1;
+			}
+		}
+		sb.append( "data: " ).append( text, start, length ).append( "\n\n" );
+		return sb.toString();
+	}
+
+	private static String singleLine( String text ) {
+		return text == null ? "" : text.replace( '\r', ' ' ).replace( '\n', ' ' );
+	}
+
+	/**
+	 * Queue a chunk of the stream to be written
+	 *
+	 * @param chunk One or more whole events
+	 *
+	 * @return False if the stream is closed
+	 */
+	boolean enqueue( String chunk ) {
+		if ( !open ) {
+			return false;
+		}
+		if ( pendingCount.incrementAndGet() > MAX_PENDING ) {
+			pendingCount.decrementAndGet();
+			System.err.println( "Ortus BoxLang Servlet event stream dropped: the client is more than " + MAX_PENDING + " events behind" );
+			disconnected();
+			// The drain ends the response, as it may be writing right now
+			scheduleDrain();
+			return false;
+		}
+		pending.add( chunk );
+		scheduleDrain();
+		return true;
+	}
+
+	private void scheduleDrain() {
+		if ( draining.compareAndSet( false, true ) ) {
+			registry.execute( this::drain );
+		}
+	}
+
+	/**
+	 * Write out what is queued. Only one drain runs at a time, so events keep their order.
+	 */
+	private void drain() {
+		do {
+			try {
+				boolean	wrote	= false;
+				String	chunk;
+				while ( ( chunk = pending.poll() ) != null ) {
+					pendingCount.decrementAndGet();
+					if ( !completed.get() ) {
+						out.write( chunk );
+						wrote = true;
+					}
+				}
+				if ( wrote ) {
+					out.flush();
+					// The container's writer swallows IOExceptions
+					if ( out instanceof PrintWriter printWriter && printWriter.checkError() ) {
+						throw new IOException( "The client has gone away" );
+					}
+					lastWrite = System.nanoTime();
+				}
+			} catch ( IOException | IllegalStateException e ) {
+				disconnected();
+			}
+			if ( !open ) {
+				complete();
+			}
+			draining.set( false );
+			// Go again for chunks queued, or a close, while we were finishing
+		} while ( ( !pending.isEmpty() || ( !open && !completed.get() ) ) && draining.compareAndSet( false, true ) );
+	}
+
+	/**
+	 * The client has gone away, or the response has ended. Stops accepting events and drops what is queued.
+	 */
+	private void disconnected() {
+		open = false;
+		pending.clear();
+		pendingCount.set( 0 );
+		registry.unregister( this );
+	}
+
+	private void complete() {
+		if ( completed.compareAndSet( false, true ) ) {
+			try {
+				asyncContext.complete();
+			} catch ( IllegalStateException e ) {
+				// Already completed by the container
+			}
+		}
+	}
+}
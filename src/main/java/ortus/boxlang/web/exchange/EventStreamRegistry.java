@@ -0,0 +1,209 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * I keep track of the open {@link EventStream}s of a servlet, send their heartbeats and broadcast events to them by
+ * channel. Each servlet owns one, hands it to its exchanges, and shuts it down when it is destroyed, so its threads
+ * don't outlive the webapp and it only ever closes its own streams.
+ * <p>
+ * A single scheduler thread checks every stream for heartbeats, however many there are, and the writes themselves
+ * run on virtual threads so one stuck client can't hold up the others. The scheduler thread is only started by the
+ * first stream with a heartbeat.
+ */
+public final class EventStreamRegistry {
+
+	/**
+	 * How long shutdown waits for the closed streams to send what they have queued, in milliseconds
+	 */
+	private static final long									SHUTDOWN_WAIT	= 1000;
+
+	/**
+	 * All open streams
+	 */
+	private final Set<EventStream>								streams			= ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The open streams of each channel
+	 */
+	private final ConcurrentHashMap<String, Set<EventStream>>	channels		= new ConcurrentHashMap<>();
+
+	/**
+	 * Writes the events
+	 */
+	private final ExecutorService								writers			= Executors.newThreadPerTaskExecutor(
+	    Thread.ofVirtual().name( "boxlang-event-stream-", 1 ).factory()
+	);
+
+	/**
+	 * Schedules the heartbeats. Null until the first stream with a heartbeat is registered.
+	 */
+	private ScheduledThreadPoolExecutor							scheduler;
+
+	/**
+	 * Send an event to every open stream of a channel
+	 *
+	 * @param channel The channel
+	 * @param event   The event name, or null for the default "message" event
+	 * @param data    The event data
+	 *
+	 * @return The number of streams the event was queued for
+	 */
+	public int broadcast( String channel, String event, String data ) {
+		Set<EventStream> channelStreams = channels.get( channel );
+		if ( channelStreams == null ) {
+			return 0;
+		}
+		// Format once, however many streams there are
+		String	chunk	= EventStream.format( event, data, null );
+		int		sent	= 0;
+		for ( EventStream stream : channelStreams ) {
+			if ( stream.enqueue( chunk ) ) {
+				sent++;
+			}
+		}
+		return sent;
+	}
+
+	/**
+	 * The number of open streams
+	 *
+	 * @return The count
+	 */
+	public int getOpenStreamCount() {
+		return streams.size();
+	}
+
+	/**
+	 * The number of open streams of a channel
+	 *
+	 * @param channel The channel
+	 *
+	 * @return The count
+	 */
+	public int getOpenStreamCount( String channel ) {
+		Set<EventStream> channelStreams = channels.get( channel );
+		return channelStreams == null ? 0 : channelStreams.size();
+	}
+
+	/**
+	 * Close every open stream and stop the threads. Called when the servlet is destroyed.
+	 */
+	public void shutdown() {
+		for ( EventStream stream : streams ) {
+			stream.close();
+		}
+		synchronized ( this ) {
+			if ( scheduler != null ) {
+				scheduler.shutdownNow();
+			}
+		}
+		writers.shutdown();
+		try {
+			if ( !writers.awaitTermination( SHUTDOWN_WAIT, TimeUnit.MILLISECONDS ) ) {
+				writers.shutdownNow();
+			}
+		} catch ( InterruptedException e ) {
+			writers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Start tracking a stream
+	 *
+	 * @param stream          The stream
+	 * @param heartbeatMillis How long a stream may be idle before it gets a heartbeat, 0 or less for none
+	 */
+	void register( EventStream stream, long heartbeatMillis ) {
+		streams.add( stream );
+		if ( stream.getChannel() != null ) {
+			channels.computeIfAbsent( stream.getChannel(), k -> ConcurrentHashMap.newKeySet() ).add( stream );
+		}
+		if ( heartbeatMillis > 0 ) {
+			long idleNanos = TimeUnit.MILLISECONDS.toNanos( heartbeatMillis );
+			try {
+				stream.heartbeat = scheduler().scheduleWithFixedDelay( () -> stream.heartbeat( idleNanos ), heartbeatMillis, heartbeatMillis,
+				    TimeUnit.MILLISECONDS );
+			} catch ( RejectedExecutionException e ) {
+				// Shutting down
+				stream.close();
+			}
+		}
+		// It may have been closed while we were registering it
+		if ( !stream.isOpen() ) {
+			unregister( stream );
+		}
+	}
+
+	/**
+	 * Stop tracking a stream. Safe to call more than once.
+	 *
+	 * @param stream The stream
+	 */
+	void unregister( EventStream stream ) {
+		if ( stream.heartbeat != null ) {
+			stream.heartbeat.cancel( false );
+		}
+		streams.remove( stream );
+		if ( stream.getChannel() != null ) {
+			channels.computeIfPresent( stream.getChannel(), ( k, channelStreams ) -> {
+				channelStreams.remove( stream );
+				return channelStreams.isEmpty() ? null : channelStreams;
+			} );
+		}
+	}
+
+	/**
+	 * Run a stream's writes. Once the registry has shut down they run on the caller's thread, so a stream closed late
+	 * still ends its response.
+	 *
+	 * @param task The task
+	 */
+	void execute( Runnable task ) {
+		try {
+			writers.execute( task );
+		} catch ( RejectedExecutionException e ) {
+			task.run();
+		}
+	}
+
+	/**
+	 * The heartbeat scheduler, started on first use
+	 */
+	private synchronized ScheduledThreadPoolExecutor scheduler() {
+		if ( scheduler == null ) {
+			scheduler = new ScheduledThreadPoolExecutor( 1, r -> {
+				Thread t = new Thread( r, "boxlang-event-stream-heartbeat" );
+				t.setDaemon( true );
+				return t;
+			} );
+			// Closed streams cancel their heartbeat, so don't keep the cancelled tasks around until they are due
+			scheduler.setRemoveOnCancelPolicy( true );
+		}
+		return scheduler;
+	}
+}
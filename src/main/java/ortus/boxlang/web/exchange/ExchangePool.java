@@ -0,0 +1,122 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import jakarta.servlet.Servlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A bounded pool of {@link BoxHTTPServletExchange}s, so busy servers don't allocate a new exchange and its upload list
+ * for every request.
+ * <p>
+ * An exchange belongs to the thread running its request from {@link #acquire} until {@link #release}, and must not
+ * be kept by anything that outlives the request. The pool is a shared queue rather than a ThreadLocal so virtual
+ * threads reuse exchanges too.
+ * <p>
+ * In debug mode released exchanges are not reused. Their request and response are replaced with stand-ins which throw,
+ * with the stack trace of the release as the cause, so code holding on to an exchange after its request fails loudly
+ * instead of reading another request's data.
+ */
+public final class ExchangePool {
+
+	private final ArrayBlockingQueue<BoxHTTPServletExchange>	pool;
+	private final boolean										debug;
+
+	/**
+	 * Create a pool
+	 *
+	 * @param maxSize The max number of idle exchanges kept
+	 * @param debug   Whether to poison released exchanges instead of reusing them
+	 */
+	public ExchangePool( int maxSize, boolean debug ) {
+		this.pool	= new ArrayBlockingQueue<>( Math.max( 1, maxSize ) );
+		this.debug	= debug;
+	}
+
+	/**
+	 * Get an exchange for a request, reusing an idle one when there is one
+	 *
+	 * @param request      The servlet request
+	 * @param response     The servlet response
+	 * @param servlet      The servlet
+	 * @param settings     The settings from the servlet's init-params
+	 * @param eventStreams The servlet's event streams
+	 *
+	 * @return The exchange
+	 */
+	public BoxHTTPServletExchange acquire( HttpServletRequest request, HttpServletResponse response, Servlet servlet, ServletExchangeSettings settings,
+	    EventStreamRegistry eventStreams ) {
+		BoxHTTPServletExchange exchange = pool.poll();
+		if ( exchange == null ) {
+			return new BoxHTTPServletExchange( request, response, servlet, settings, eventStreams );
+		}
+		exchange.init( request, response, servlet, settings, eventStreams );
+		return exchange;
+	}
+
+	/**
+	 * Hand an exchange back once its request is done. It must not be used again by the caller.
+	 *
+	 * @param exchange The exchange
+	 */
+	public void release( BoxHTTPServletExchange exchange ) {
+		if ( debug ) {
+			BoxRuntimeException released = new BoxRuntimeException( "The exchange was released here" );
+			exchange.recycle( poisoned( HttpServletRequest.class, released ), poisoned( HttpServletResponse.class, released ) );
+			return;
+		}
+		exchange.recycle( null, null );
+		pool.offer( exchange );
+	}
+
+	/**
+	 * The number of idle exchanges in the pool
+	 *
+	 * @return The count
+	 */
+	public int getPooledCount() {
+		return pool.size();
+	}
+
+	/**
+	 * Create a stand-in which throws from every method
+	 */
+	private static <T> T poisoned( Class<T> type, BoxRuntimeException released ) {
+		InvocationHandler handler = ( proxy, method, args ) -> {
+			if ( method.getDeclaringClass() == Object.class ) {
+				return switch ( method.getName() ) {
+					case "equals" -> proxy == args[ 0 ];
+					case "hashCode" -> System.identityHashCode( proxy );
+					default -> "Released " + type.getSimpleName();
+				};
+			}
+			throw new BoxRuntimeException(
+			    "A BoxHTTPServletExchange was used after its request ended (" + type.getSimpleName() + "." + method.getName()
+			        + "). Code which outlives the request, such as a thread, must not keep the exchange.",
+			    released
+			);
+		};
+		return type.cast( Proxy.newProxyInstance( ExchangePool.class.getClassLoader(), new Class<?>[] { type }, handler ) );
+	}
+}
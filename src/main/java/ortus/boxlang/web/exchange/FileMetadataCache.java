@@ -0,0 +1,120 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * I cache whether a file exists, its size, its last modified time and its ETag, so files sent over and over don't cost a
+ * filesystem call every time. Entries are re-checked once they are older than the TTL the caller asks for.
+ * <p>
+ * The cache is bounded: when it grows past its max size it is simply cleared, which is cheap and good enough for the
+ * handful of files a site sends repeatedly.
+ */
+final class FileMetadataCache {
+
+	/**
+	 * The cache used for file responses
+	 */
+	static final FileMetadataCache						SHARED		= new FileMetadataCache( 10000 );
+
+	private final int									maxSize;
+	private final ConcurrentHashMap<Path, FileMetadata>	entries		= new ConcurrentHashMap<>();
+
+	/**
+	 * The metadata of a file
+	 *
+	 * @param exists       Whether the file exists and is a regular file
+	 * @param lastModified The last modified time in millis, or 0 if the file doesn't exist
+	 * @param length       The size in bytes, or 0 if the file doesn't exist
+	 * @param etag         A weak ETag made from the size and last modified time, or null if the file doesn't exist
+	 * @param checkedAt    When this was read from the filesystem, from {@link System#nanoTime()}
+	 */
+	record FileMetadata( boolean exists, long lastModified, long length, String etag, long checkedAt ) {
+	}
+
+	/**
+	 * Create a cache
+	 *
+	 * @param maxSize The number of files to remember before starting over
+	 */
+	FileMetadataCache( int maxSize ) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Get the metadata of a file
+	 *
+	 * @param path      The file
+	 * @param ttlMillis How old a cached entry may be, 0 or less to always read it from the filesystem
+	 *
+	 * @return The metadata
+	 */
+	FileMetadata get( Path path, long ttlMillis ) {
+		long now = System.nanoTime();
+		if ( ttlMillis > 0 ) {
+			FileMetadata cached = entries.get( path );
+			if ( cached != null && now - cached.checkedAt() < ttlMillis * 1_000_000L ) {
+				return cached;
+			}
+		}
+		FileMetadata metadata = read( path, now );
+		if ( ttlMillis > 0 ) {
+			if ( entries.size() >= maxSize ) {
+				entries.clear();
+			}
+			entries.put( path, metadata );
+		}
+		return metadata;
+	}
+
+	/**
+	 * Forget everything
+	 */
+	void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * The number of files cached
+	 *
+	 * @return The count
+	 */
+	int size() {
+		return entries.size();
+	}
+
+	private static FileMetadata read( Path path, long now ) {
+		try {
+			BasicFileAttributes	attributes		= Files.readAttributes( path, BasicFileAttributes.class );
+			long				lastModified	= attributes.lastModifiedTime().toMillis();
+			if ( !attributes.isRegularFile() ) {
+				return new FileMetadata( false, 0, 0, null, now );
+			}
+			String etag = "W/\"" + Long.toHexString( attributes.size() ) + "-" + Long.toHexString( lastModified ) + "\"";
+			return new FileMetadata( true, lastModified, attributes.size(), etag, now );
+		} catch ( IOException e ) {
+			// Usually a NoSuchFileException, and we treat an unreadable file the same way
+			return new FileMetadata( false, 0, 0, null, now );
+		}
+	}
+}
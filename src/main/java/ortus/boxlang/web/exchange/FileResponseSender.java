@@ -0,0 +1,380 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.web.exchange.FileMetadataCache.FileMetadata;
+
+/**
+ * I send a file as the body of a servlet response, using the cheapest path the container offers:
+ * <ol>
+ * <li>Tomcat's native sendfile, via the <code>org.apache.tomcat.sendfile.*</code> request attributes</li>
+ * <li>Jetty's <code>HttpOutput.sendContent()</code>, which streams the channel through Jetty's own pooled buffers</li>
+ * <li><code>FileChannel.transferTo()</code> into the servlet output stream</li>
+ * </ol>
+ * I also set the Content-Length, answer single-range <code>Range</code> requests with a 206, and, when enabled, send
+ * a weak ETag and Last-Modified and answer <code>If-None-Match</code> / <code>If-Modified-Since</code> with a 304.
+ * When enabled, a newer <code>.br</code> or <code>.gz</code> sibling of the file is sent instead if the client accepts it.
+ * A response which is already committed can't change its status or headers, so it just gets the whole file streamed.
+ */
+final class FileResponseSender {
+
+	/**
+	 * The Tomcat request attributes for native sendfile
+	 */
+	static final String						TOMCAT_SENDFILE_SUPPORT		= "org.apache.tomcat.sendfile.support";
+	static final String						TOMCAT_SENDFILE_FILENAME	= "org.apache.tomcat.sendfile.filename";
+	static final String						TOMCAT_SENDFILE_START		= "org.apache.tomcat.sendfile.start";
+	static final String						TOMCAT_SENDFILE_END			= "org.apache.tomcat.sendfile.end";
+
+	/**
+	 * Jetty's HttpOutput.sendContent( ReadableByteChannel ) method, looked up once per output stream class.
+	 * Null if the output stream doesn't have one.
+	 */
+	private static final ClassValue<Method>	SEND_CONTENT				= new SendContentLookup();
+
+	/**
+	 * Returned by {@link #parseRange(String, long)} when no part of the requested range is in the file
+	 */
+	static final long[]						UNSATISFIABLE				= new long[ 0 ];
+
+	/**
+	 * The precompressed siblings we look for, in order of preference, and their content coding
+	 */
+	private static final String[]			PRECOMPRESSED_EXTENSIONS	= new String[] { ".br", ".gz" };
+	private static final String[]			PRECOMPRESSED_CODINGS		= new String[] { "br", "gzip" };
+
+	private FileResponseSender() {
+	}
+
+	/**
+	 * Send a file as the response body.
+	 *
+	 * @param request  The servlet request
+	 * @param response The servlet response
+	 * @param file     The file to send
+	 * @param settings The exchange settings
+	 *
+	 * @throws IOException If the file can't be read or the response can't be written
+	 */
+	static void send( HttpServletRequest request, HttpServletResponse response, File file, ServletExchangeSettings settings ) throws IOException {
+		// A committed response has already sent its headers, so the Content-Encoding of a sibling would be lost
+		boolean committed = response.isCommitted();
+		if ( settings.isPrecompressed() && !committed ) {
+			file = precompressedSibling( request, response, file, settings );
+		}
+
+		// We only honor ranges and conditional requests for plain successful responses, not for error pages which happen to send a file
+		boolean			plain		= !committed && response.getStatus() == HttpServletResponse.SC_OK;
+		FileMetadata	metadata	= null;
+		if ( plain && settings.isConditionalGet() ) {
+			metadata = FileMetadataCache.SHARED.get( file.toPath(), settings.getFileMetadataTtl() );
+			if ( metadata.exists() ) {
+				response.setHeader( "ETag", metadata.etag() );
+				response.setDateHeader( "Last-Modified", metadata.lastModified() );
+				if ( isNotModified( request, metadata ) ) {
+					response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+					return;
+				}
+			}
+		}
+
+		try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) ) {
+			long	length		= channel.size();
+			long	start		= 0;
+			long	count		= length;
+
+			if ( plain ) {
+				response.setHeader( "Accept-Ranges", "bytes" );
+				long[] range = "GET".equalsIgnoreCase( request.getMethod() ) && ifRangeMatches( request, metadata )
+				    ? parseRange( request.getHeader( "Range" ), length )
+				    : null;
+				if ( range == UNSATISFIABLE ) {
+					response.setStatus( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+					response.setHeader( "Content-Range", "bytes */" + length );
+					response.setContentLengthLong( 0 );
+					return;
+				}
+				if ( range != null ) {
+					start	= range[ 0 ];
+					count	= range[ 1 ] - range[ 0 ] + 1;
+					response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+					response.setHeader( "Content-Range", "bytes " + range[ 0 ] + "-" + range[ 1 ] + "/" + length );
+				}
+			}
+			if ( !committed ) {
+				response.setContentLengthLong( count );
+			}
+
+			if ( "HEAD".equalsIgnoreCase( request.getMethod() ) || count == 0 ) {
+				return;
+			}
+
+			// Tomcat will send the file straight from the kernel once we return, but only for a response it hasn't started yet
+			if ( settings.isNativeSendfile() && !committed && count >= settings.getSendfileMinSize()
+			    && Boolean.TRUE.equals( request.getAttribute( TOMCAT_SENDFILE_SUPPORT ) ) ) {
+				request.setAttribute( TOMCAT_SENDFILE_FILENAME, file.getCanonicalPath() );
+				request.setAttribute( TOMCAT_SENDFILE_START, start );
+				request.setAttribute( TOMCAT_SENDFILE_END, start + count );
+				return;
+			}
+
+			OutputStream	out			= response.getOutputStream();
+
+			// Jetty reads the channel to the end, so it can only be used for the whole file
+			Method			sendContent	= settings.isNativeSendfile() && count == length ? SEND_CONTENT.get( out.getClass() ) : null;
+			if ( sendContent != null ) {
+				try {
+					sendContent.invoke( out, channel );
+					return;
+				} catch ( IllegalAccessException e ) {
+					// fall through to the portable path
+				} catch ( InvocationTargetException e ) {
+					if ( e.getCause() instanceof IOException ioe ) {
+						throw ioe;
+					}
+					throw new IOException( e.getCause() );
+				}
+			}
+
+			transfer( channel, start, count, out );
+		}
+	}
+
+	/**
+	 * Whether a GET or HEAD can be answered with a 304. If-None-Match wins over If-Modified-Since, as the spec requires.
+	 *
+	 * @param request  The servlet request
+	 * @param metadata The metadata of the file
+	 *
+	 * @return True if the client's copy is current
+	 */
+	static boolean isNotModified( HttpServletRequest request, FileMetadata metadata ) {
+		String method = request.getMethod();
+		if ( !"GET".equalsIgnoreCase( method ) && !"HEAD".equalsIgnoreCase( method ) ) {
+			return false;
+		}
+		String ifNoneMatch = request.getHeader( "If-None-Match" );
+		if ( ifNoneMatch != null ) {
+			return etagMatches( ifNoneMatch, metadata.etag() );
+		}
+		long ifModifiedSince = getDateHeader( request, "If-Modified-Since" );
+		// HTTP dates only have second precision
+		return ifModifiedSince >= 0 && metadata.lastModified() / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * Whether a Range can be honored given the request's If-Range. Our ETags are weak, and If-Range needs a strong
+	 * match, so only a date equal to the file's last modified time lets the range through.
+	 *
+	 * @param request  The servlet request
+	 * @param metadata The metadata of the file, or null if conditional requests are disabled
+	 *
+	 * @return True if the range may be sent
+	 */
+	static boolean ifRangeMatches( HttpServletRequest request, FileMetadata metadata ) {
+		String ifRange = request.getHeader( "If-Range" );
+		if ( ifRange == null || metadata == null ) {
+			return true;
+		}
+		if ( !metadata.exists() || ifRange.startsWith( "\"" ) || ifRange.startsWith( "W/" ) ) {
+			return false;
+		}
+		long date = getDateHeader( request, "If-Range" );
+		return date >= 0 && date / 1000 == metadata.lastModified() / 1000;
+	}
+
+	/**
+	 * Weak comparison of an If-None-Match header against an ETag
+	 *
+	 * @param header The If-None-Match value, a list of ETags or <code>*</code>
+	 * @param etag   The current ETag
+	 *
+	 * @return True if any of the ETags match
+	 */
+	static boolean etagMatches( String header, String etag ) {
+		if ( header.trim().equals( "*" ) ) {
+			return true;
+		}
+		String opaque = stripWeak( etag );
+		for ( String candidate : header.split( "," ) ) {
+			if ( stripWeak( candidate.trim() ).equals( opaque ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String stripWeak( String etag ) {
+		return etag.startsWith( "W/" ) ? etag.substring( 2 ) : etag;
+	}
+
+	/**
+	 * Get a date header, treating a malformed date as missing
+	 */
+	private static long getDateHeader( HttpServletRequest request, String name ) {
+		try {
+			return request.getDateHeader( name );
+		} catch ( IllegalArgumentException e ) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Find a precompressed sibling of a file which the client accepts and which is at least as new as the file.
+	 * When one is found the Content-Encoding is set to match. Vary is set whenever a sibling exists, since the
+	 * response then depends on Accept-Encoding.
+	 *
+	 * @param request  The servlet request
+	 * @param response The servlet response
+	 * @param file     The file to send
+	 * @param settings The exchange settings
+	 *
+	 * @return The sibling to send, or the file itself
+	 */
+	static File precompressedSibling( HttpServletRequest request, HttpServletResponse response, File file, ServletExchangeSettings settings ) {
+		if ( response.containsHeader( "Content-Encoding" ) ) {
+			return file;
+		}
+		long			ttl			= settings.getFileMetadataTtl();
+		FileMetadata	original	= FileMetadataCache.SHARED.get( file.toPath(), ttl );
+		if ( !original.exists() ) {
+			return file;
+		}
+		String	acceptEncoding	= request.getHeader( "Accept-Encoding" );
+		boolean	varies			= false;
+		for ( int i = 0; i < PRECOMPRESSED_EXTENSIONS.length; i++ ) {
+			Path			path	= Path.of( file.getPath() + PRECOMPRESSED_EXTENSIONS[ i ] );
+			FileMetadata	sibling	= FileMetadataCache.SHARED.get( path, ttl );
+			if ( !sibling.exists() || sibling.lastModified() < original.lastModified() ) {
+				continue;
+			}
+			varies = true;
+			if ( CompressingResponseWrapper.accepts( acceptEncoding, PRECOMPRESSED_CODINGS[ i ] ) ) {
+				response.setHeader( "Content-Encoding", PRECOMPRESSED_CODINGS[ i ] );
+				response.addHeader( "Vary", "Accept-Encoding" );
+				return path.toFile();
+			}
+		}
+		if ( varies ) {
+			response.addHeader( "Vary", "Accept-Encoding" );
+		}
+		return file;
+	}
+
+	/**
+	 * Copy part of a file to an output stream using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 *
+	 * @param channel The file
+	 * @param start   The first byte to copy
+	 * @param count   The number of bytes to copy
+	 * @param out     The output stream
+	 *
+	 * @throws IOException If the copy fails
+	 */
+	static void transfer( FileChannel channel, long start, long count, OutputStream out ) throws IOException {
+		WritableByteChannel	target		= Channels.newChannel( out );
+		long				position	= start;
+		long				end			= start + count;
+		while ( position < end ) {
+			long written = channel.transferTo( position, end - position, target );
+			if ( written <= 0 ) {
+				// The file was truncated while we were sending it
+				break;
+			}
+			position += written;
+		}
+	}
+
+	/**
+	 * Parse a single-range Range header.
+	 * Multiple ranges and malformed headers are ignored, as the spec allows, which means the whole file is sent.
+	 *
+	 * @param header The Range header value
+	 * @param length The length of the file
+	 *
+	 * @return The first and last byte positions (inclusive), null to send the whole file, or {@link #UNSATISFIABLE}
+	 */
+	static long[] parseRange( String header, long length ) {
+		if ( header == null || !header.regionMatches( true, 0, "bytes=", 0, 6 ) || header.indexOf( ',' ) >= 0 ) {
+			return null;
+		}
+		String	spec	= header.substring( 6 ).trim();
+		int		dash	= spec.indexOf( '-' );
+		if ( dash < 0 ) {
+			return null;
+		}
+		try {
+			long	first;
+			long	last;
+			if ( dash == 0 ) {
+				// bytes=-500 is the last 500 bytes
+				long suffix = Long.parseLong( spec.substring( 1 ) );
+				if ( suffix <= 0 ) {
+					return UNSATISFIABLE;
+				}
+				first	= Math.max( 0, length - suffix );
+				last	= length - 1;
+			} else {
+				first	= Long.parseLong( spec.substring( 0, dash ) );
+				last	= dash == spec.length() - 1 ? length - 1 : Long.parseLong( spec.substring( dash + 1 ) );
+				if ( last < first ) {
+					return null;
+				}
+				last = Math.min( last, length - 1 );
+			}
+			if ( first >= length || length == 0 ) {
+				return UNSATISFIABLE;
+			}
+			return new long[] { first, last };
+		} catch ( NumberFormatException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds Jetty's sendContent() method on an output stream class
+	 */
+	private static class SendContentLookup extends ClassValue<Method> {
+
+		@Override
+		protected Method computeValue( Class<?> type ) {
+			if ( !type.getName().startsWith( "org.eclipse.jetty." ) ) {
+				return null;
+			}
+			try {
+				return type.getMethod( "sendContent", ReadableByteChannel.class );
+			} catch ( NoSuchMethodException | SecurityException e ) {
+				return null;
+			}
+		}
+	}
+}
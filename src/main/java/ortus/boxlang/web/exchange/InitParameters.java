@@ -0,0 +1,147 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+
+/**
+ * I read the servlet's <code>boxlang-*</code> init-params. A blank init-param counts as not set, and a value which
+ * can't be parsed fails the servlet's initialization with a {@link ServletException} naming the init-param.
+ */
+public final class InitParameters {
+
+	private InitParameters() {
+	}
+
+	/**
+	 * Get a string init-param
+	 *
+	 * @param config       The servlet config
+	 * @param name         The init-param name
+	 * @param defaultValue The value to use if the init-param is not set
+	 *
+	 * @return The trimmed init-param value
+	 */
+	public static String getString( ServletConfig config, String name, String defaultValue ) {
+		String value = config.getInitParameter( name );
+		return value == null || value.isBlank() ? defaultValue : value.trim();
+	}
+
+	/**
+	 * Get a boolean init-param
+	 *
+	 * @param config       The servlet config
+	 * @param name         The init-param name
+	 * @param defaultValue The value to use if the init-param is not set
+	 *
+	 * @return The init-param value
+	 *
+	 * @throws ServletException If the init-param is not <code>true</code> or <code>false</code>
+	 */
+	public static boolean getBoolean( ServletConfig config, String name, boolean defaultValue ) throws ServletException {
+		String value = getString( config, name, null );
+		if ( value == null ) {
+			return defaultValue;
+		}
+		// Boolean.parseBoolean() would quietly turn a typo like "ture" into false
+		if ( value.equalsIgnoreCase( "true" ) ) {
+			return true;
+		}
+		if ( value.equalsIgnoreCase( "false" ) ) {
+			return false;
+		}
+		throw new ServletException( "Init-param [" + name + "] must be [true] or [false], but got [" + value + "]" );
+	}
+
+	/**
+	 * Get a numeric init-param
+	 *
+	 * @param config       The servlet config
+	 * @param name         The init-param name
+	 * @param defaultValue The value to use if the init-param is not set
+	 *
+	 * @return The init-param value
+	 *
+	 * @throws ServletException If the init-param is not a number
+	 */
+	public static long getLong( ServletConfig config, String name, long defaultValue ) throws ServletException {
+		String value = getString( config, name, null );
+		if ( value == null ) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong( value );
+		} catch ( NumberFormatException e ) {
+			throw new ServletException( "Init-param [" + name + "] must be a number, but got [" + value + "]", e );
+		}
+	}
+
+	/**
+	 * Get a numeric init-param which fits an int
+	 *
+	 * @param config       The servlet config
+	 * @param name         The init-param name
+	 * @param defaultValue The value to use if the init-param is not set
+	 *
+	 * @return The init-param value
+	 *
+	 * @throws ServletException If the init-param is not a number, or too large for an int
+	 */
+	public static int getInt( ServletConfig config, String name, int defaultValue ) throws ServletException {
+		long value = getLong( config, name, defaultValue );
+		if ( value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ) {
+			throw new ServletException( "Init-param [" + name + "] must be at most [" + Integer.MAX_VALUE + "], but got [" + value + "]" );
+		}
+		return ( int ) value;
+	}
+
+	/**
+	 * Get a comma separated init-param
+	 *
+	 * @param config The servlet config
+	 * @param name   The init-param name
+	 *
+	 * @return The trimmed, non-empty entries, empty if the init-param is not set
+	 */
+	public static List<String> getList( ServletConfig config, String name ) {
+		return split( config.getInitParameter( name ) );
+	}
+
+	/**
+	 * Split a comma separated value into its entries
+	 *
+	 * @param value The value, or null
+	 *
+	 * @return The trimmed entries, without blanks
+	 */
+	public static List<String> split( String value ) {
+		List<String> entries = new ArrayList<>();
+		if ( value != null ) {
+			for ( String entry : value.split( "," ) ) {
+				if ( !entry.isBlank() ) {
+					entries.add( entry.trim() );
+				}
+			}
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet5.JakartaServletFileUpload;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.web.exchange.IBoxHTTPExchange.FileUpload;
+
+/**
+ * I parse <code>multipart/form-data</code> requests using the upload settings from the servlet's init-params.
+ * <ul>
+ * <li><b>buffered</b> (default): Commons FileUpload parses the whole request first. Parts under the size threshold are held in memory
+ * and then written once to a temp file, larger parts are written straight to the temp folder.</li>
+ * <li><b>streaming</b>: Each part is read as it arrives and file parts are copied once, straight to their final temp file,
+ * so nothing is held in memory and nothing is copied twice.</li>
+ * </ul>
+ * Every file written is added to the exchange's upload list so the servlet deletes it when the request ends. Form
+ * fields, which are read into memory in both modes, are limited to the max field size.
+ */
+final class MultipartFormParser {
+
+	private static final String TEMP_FILE_PREFIX = "boxlang-upload-";
+
+	private MultipartFormParser() {
+	}
+
+	/**
+	 * Parse a multipart request
+	 *
+	 * @param request  The servlet request
+	 * @param charset  The charset of the form fields
+	 * @param settings The upload settings
+	 * @param uploads  The list to add uploaded files to
+	 *
+	 * @return The form fields, with the temp file path as the value of each file field
+	 *
+	 * @throws IOException           If the request can't be read
+	 * @throws RequestLimitException If a limit is exceeded
+	 */
+	static Map<String, String[]> parse( HttpServletRequest request, Charset charset, ServletExchangeSettings settings, List<FileUpload> uploads )
+	    throws IOException {
+		DiskFileItemFactory.Builder builder = DiskFileItemFactory.builder()
+		    .setCharset( charset )
+		    .setBufferSize( settings.getUploadSizeThreshold() );
+		if ( settings.getUploadTempDir() != null ) {
+			builder.setPath( settings.getUploadTempDir() );
+		}
+		JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory>( builder.get() );
+		upload.setSizeMax( settings.getUploadMaxRequestSize() );
+		upload.setFileSizeMax( settings.getUploadMaxFileSize() );
+		upload.setFileCountMax( settings.getUploadMaxParts() );
+
+		try {
+			if ( settings.isUploadStreaming() ) {
+				return parseStreaming( request, upload, charset, settings, uploads );
+			}
+			return parseBuffered( request, upload, settings, uploads );
+		} catch ( FileUploadSizeException e ) {
+			// Commons FileUpload enforces the request, file and part count limits
+			throw new RequestLimitException( HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Let Commons FileUpload buffer every part, then collect the results
+	 */
+	private static Map<String, String[]> parseBuffered( HttpServletRequest request, JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload,
+	    ServletExchangeSettings settings, List<FileUpload> uploads ) throws IOException {
+		Map<String, String[]>	params	= new HashMap<>();
+		List<DiskFileItem>		items	= upload.parseRequest( request );
+		for ( DiskFileItem item : items ) {
+			String name = item.getFieldName();
+			if ( item.isFormField() ) {
+				// This is a regular form field
+				// Whether or not the value was buffered in memory or to disk, getString() will work
+				checkFieldSize( name, item.getSize(), settings );
+				UrlEncodedParser.add( params, name, item.getString() );
+			} else if ( item.getName() == null || item.getName().isEmpty() ) {
+				// The file input field was left empty
+				UrlEncodedParser.add( params, name, "" );
+			} else if ( item.isInMemory() ) {
+				// Small files buffered in memory need to be written to a temp file so we have a Path to return
+				Path tempFile = createTempFile( settings );
+				uploads.add( new FileUpload( Key.of( name ), tempFile, item.getName() ) );
+				item.write( tempFile );
+				UrlEncodedParser.add( params, name, tempFile.toString() );
+			} else {
+				// This is a file
+				Path storeLocation = item.getPath();
+				// I don't think this will ever be null here, but just in case
+				if ( storeLocation != null ) {
+					// A file was uploaded (it might be a 0KB file)
+					uploads.add( new FileUpload( Key.of( name ), storeLocation, item.getName() ) );
+					UrlEncodedParser.add( params, name, storeLocation.toString() );
+				} else {
+					// The file input field was left empty
+					UrlEncodedParser.add( params, name, "" );
+				}
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Read each part as it arrives, copying files straight to their temp file
+	 */
+	private static Map<String, String[]> parseStreaming( HttpServletRequest request, JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload,
+	    Charset charset, ServletExchangeSettings settings, List<FileUpload> uploads ) throws IOException {
+		Map<String, String[]>	params		= new HashMap<>();
+		FileItemInputIterator	iterator	= upload.getItemIterator( request );
+		long					maxParts	= settings.getUploadMaxParts();
+		long					parts		= 0;
+		while ( iterator.hasNext() ) {
+			FileItemInput item = iterator.next();
+			if ( maxParts >= 0 && ++parts > maxParts ) {
+				throw RequestLimitException.tooLarge( "The upload has more than the maximum of [" + maxParts + "] parts" );
+			}
+			String name = item.getFieldName();
+			try ( InputStream in = item.getInputStream() ) {
+				if ( item.isFormField() ) {
+					UrlEncodedParser.add( params, name, new String( readField( name, in, settings ), charset ) );
+				} else if ( item.getName() == null || item.getName().isEmpty() ) {
+					// The file input field was left empty
+					UrlEncodedParser.add( params, name, "" );
+				} else {
+					// Register the file before writing it so it's cleaned up even if the copy fails part way
+					Path tempFile = createTempFile( settings );
+					uploads.add( new FileUpload( Key.of( name ), tempFile, item.getName() ) );
+					Files.copy( in, tempFile, StandardCopyOption.REPLACE_EXISTING );
+					UrlEncodedParser.add( params, name, tempFile.toString() );
+				}
+			}
+		}
+		return params;
+	}
+
+	/**
+	 * Read a form field part into memory, up to the max field size
+	 */
+	private static byte[] readField( String name, InputStream in, ServletExchangeSettings settings ) throws IOException {
+		long max = settings.getUploadMaxFieldSize();
+		if ( max < 0 ) {
+			return in.readAllBytes();
+		}
+		// One byte more than allowed tells us the field is too large without reading the rest of it
+		byte[] value = in.readNBytes( ( int ) Math.min( max + 1, Integer.MAX_VALUE - 8 ) );
+		checkFieldSize( name, value.length, settings );
+		return value;
+	}
+
+	/**
+	 * Reject a form field larger than the max field size
+	 */
+	private static void checkFieldSize( String name, long size, ServletExchangeSettings settings ) {
+		long max = settings.getUploadMaxFieldSize();
+		if ( max >= 0 && size > max ) {
+			throw RequestLimitException.tooLarge( "The form field [" + name + "] is larger than the maximum of [" + max + "] bytes" );
+		}
+	}
+
+	/**
+	 * Create a temp file for an upload in the configured temp folder
+	 */
+	private static Path createTempFile( ServletExchangeSettings settings ) throws IOException {
+		Path dir = settings.getUploadTempDir();
+		return dir == null ? Files.createTempFile( TEMP_FILE_PREFIX, null ) : Files.createTempFile( dir, TEMP_FILE_PREFIX, null );
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The response writer used instead of the container's when an output buffer size is configured.
+ * <p>
+ * Output is held in a char buffer borrowed from a pool for the length of the request. While it fits, a buffer reset
+ * is just a matter of forgetting it. Once the buffer is full it is encoded straight to the servlet output stream, and
+ * once the number of bytes encoded since the last flush reaches the flush threshold the stream is flushed to the client.
+ * <p>
+ * The pools are shared queues rather than ThreadLocals so virtual threads reuse buffers too.
+ */
+final class PooledResponseWriter extends Writer {
+
+	/**
+	 * The number of idle buffers kept for each buffer size
+	 */
+	private static final int											MAX_POOLED	= 256;
+
+	/**
+	 * Idle buffers, by size. There is one size per servlet so this stays tiny.
+	 */
+	private static final ConcurrentHashMap<Integer, ArrayBlockingQueue<char[]>>	POOLS		= new ConcurrentHashMap<>();
+
+	private final ArrayBlockingQueue<char[]>							pool;
+	private final ResponseStreamWriter									encoder;
+	private final long													flushThreshold;
+	private final CountingOutputStream									out;
+	private char[]														buffer;
+	private int															count;
+
+	/**
+	 * Create a writer
+	 *
+	 * @param out            The servlet output stream
+	 * @param charset        The response charset
+	 * @param bufferSize     The number of chars held before they are encoded
+	 * @param flushThreshold The number of bytes after which the stream is flushed to the client, 0 or less to leave it to the container
+	 */
+	PooledResponseWriter( OutputStream out, Charset charset, int bufferSize, long flushThreshold ) {
+		this.pool			= POOLS.computeIfAbsent( bufferSize, size -> new ArrayBlockingQueue<>( MAX_POOLED ) );
+		this.out			= new CountingOutputStream( out );
+		this.encoder		= new ResponseStreamWriter( this.out, charset );
+		this.flushThreshold	= flushThreshold;
+		char[] pooled = pool.poll();
+		this.buffer = pooled == null ? new char[ bufferSize ] : pooled;
+	}
+
+	@Override
+	public void write( int c ) throws IOException {
+		ensureOpen();
+		if ( count == buffer.length ) {
+			drain();
+		}
+		buffer[ count++ ] = ( char ) c;
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		ensureOpen();
+		if ( len > buffer.length - count ) {
+			drain();
+			if ( len >= buffer.length ) {
+				// Too big to be worth copying, so encode it straight away
+				encoder.write( cbuf, off, len );
+				afterEncode();
+				return;
+			}
+		}
+		System.arraycopy( cbuf, off, buffer, count, len );
+		count += len;
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		ensureOpen();
+		if ( len > buffer.length - count ) {
+			drain();
+			if ( len >= buffer.length ) {
+				encoder.write( str, off, len );
+				afterEncode();
+				return;
+			}
+		}
+		str.getChars( off, off + len, buffer, count );
+		count += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if ( buffer != null ) {
+			drain();
+		}
+		out.flush();
+		out.sinceFlush = 0;
+	}
+
+	/**
+	 * Encode what is buffered and give the buffer back to the pool. The servlet output stream is left open.
+	 */
+	@Override
+	public void close() throws IOException {
+		if ( buffer == null ) {
+			return;
+		}
+		try {
+			drain();
+		} finally {
+			pool.offer( buffer );
+			buffer = null;
+			// Hands the encoder's byte buffer back too
+			encoder.close();
+		}
+	}
+
+	/**
+	 * Throw away everything that hasn't been encoded yet. The caller resets the servlet response buffer.
+	 */
+	void reset() {
+		count = 0;
+		encoder.discard();
+	}
+
+	private void drain() throws IOException {
+		if ( count > 0 ) {
+			int length = count;
+			count = 0;
+			encoder.write( buffer, 0, length );
+			afterEncode();
+		}
+	}
+
+	private void afterEncode() throws IOException {
+		if ( flushThreshold > 0 && out.sinceFlush >= flushThreshold ) {
+			out.flush();
+			out.sinceFlush = 0;
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if ( buffer == null ) {
+			throw new IOException( "The response writer is closed" );
+		}
+	}
+
+	/**
+	 * Counts the bytes written since the last flush. Closing it doesn't close the servlet output stream.
+	 */
+	private static final class CountingOutputStream extends OutputStream {
+
+		private final OutputStream	out;
+		long						sinceFlush;
+
+		CountingOutputStream( OutputStream out ) {
+			this.out = out;
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			out.write( b );
+			sinceFlush++;
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			out.write( b, off, len );
+			sinceFlush += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * I flush the response to the client as the page renders, instead of holding everything until the end, so the
+ * browser can start on the head of the page while the rest is still being generated.
+ * <p>
+ * A flush happens at the end of a write once either threshold is reached: the number of chars written since the last
+ * flush, or the time since the last flush. There is no timer, so a page that stops writing isn't flushed until it
+ * writes again or ends. Explicit flushes (<code>bx:flush</code>) reset both counters.
+ * <p>
+ * Flushing commits the response, so headers, cookies and redirects set after the first flush are lost, exactly as
+ * with an explicit flush.
+ */
+final class ProgressiveFlushWriter extends Writer {
+
+	private final Writer			out;
+	private final long				maxChars;
+	private final long				intervalNanos;
+	private final BooleanSupplier	active;
+	private final Runnable			beforeFlush;
+
+	private long					pending;
+	private long					lastFlush	= System.nanoTime();
+
+	/**
+	 * Create a writer
+	 *
+	 * @param out            The writer to write to. Flushing it must send the output to the client.
+	 * @param maxChars       Flush once this many chars have been written since the last flush, 0 or less to ignore
+	 * @param intervalMillis Flush once this much time has passed since the last flush, 0 or less to ignore
+	 * @param active         Asked before each flush, so a request can decide whether it wants progressive output
+	 * @param beforeFlush    Run before each flush, while the headers can still be changed
+	 */
+	ProgressiveFlushWriter( Writer out, long maxChars, long intervalMillis, BooleanSupplier active, Runnable beforeFlush ) {
+		this.out			= out;
+		this.maxChars		= maxChars;
+		this.intervalNanos	= intervalMillis * 1_000_000L;
+		this.active			= active;
+		this.beforeFlush	= beforeFlush;
+	}
+
+	@Override
+	public void write( int c ) throws IOException {
+		out.write( c );
+		pending++;
+		flushIfDue();
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		out.write( cbuf, off, len );
+		pending += len;
+		flushIfDue();
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		out.write( str, off, len );
+		pending += len;
+		flushIfDue();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+		pending		= 0;
+		lastFlush	= System.nanoTime();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Forget the output since the last flush. Used when the response buffer is reset.
+	 */
+	void reset() {
+		pending = 0;
+	}
+
+	private void flushIfDue() throws IOException {
+		if ( pending == 0 ) {
+			return;
+		}
+		boolean due = ( maxChars > 0 && pending >= maxChars )
+		    || ( intervalNanos > 0 && System.nanoTime() - lastFlush >= intervalNanos );
+		if ( due && active.getAsBoolean() ) {
+			beforeFlush.run();
+			flush();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jakarta.servlet.http.Cookie;
+
+/**
+ * I index the cookies of a single request by name. The index is built once per exchange and each cookie is only
+ * decoded into a {@link BoxCookie} the first time it is asked for.
+ * <p>
+ * Names are matched case-insensitively and, when several cookies share a name, the first one sent wins. Lookups using
+ * the exact name the browser sent are a single hash lookup; any other casing falls back to a sorted, case-insensitive map.
+ */
+final class RequestCookieIndex {
+
+	private static final BoxCookie[]	EMPTY	= new BoxCookie[ 0 ];
+
+	/**
+	 * The raw cookies, in the order the browser sent them
+	 */
+	private final Cookie[]				cookies;
+
+	/**
+	 * The decoded cookies, filled in as they are asked for
+	 */
+	private final BoxCookie[]			decoded;
+
+	/**
+	 * Cookie name as sent to the position of the cookie that wins for that name
+	 */
+	private final Map<String, Integer>	exact;
+
+	/**
+	 * The same, for any casing of the names
+	 */
+	private final Map<String, Integer>	caseInsensitive;
+
+	/**
+	 * Whether every cookie has been decoded
+	 */
+	private boolean						allDecoded;
+
+	/**
+	 * Index the cookies of a request
+	 *
+	 * @param cookies The cookies from the servlet request, which may be null
+	 */
+	RequestCookieIndex( Cookie[] cookies ) {
+		this.cookies			= cookies == null ? new Cookie[ 0 ] : cookies;
+		this.decoded			= this.cookies.length == 0 ? EMPTY : new BoxCookie[ this.cookies.length ];
+		this.exact				= new HashMap<>( Math.max( 4, this.cookies.length * 2 ) );
+		this.caseInsensitive	= new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+		for ( int i = 0; i < this.cookies.length; i++ ) {
+			this.caseInsensitive.putIfAbsent( this.cookies[ i ].getName(), i );
+		}
+		for ( Cookie cookie : this.cookies ) {
+			this.exact.putIfAbsent( cookie.getName(), this.caseInsensitive.get( cookie.getName() ) );
+		}
+	}
+
+	/**
+	 * Get a cookie by name
+	 *
+	 * @param name The cookie name, in any case
+	 *
+	 * @return The cookie, or null if the request doesn't have it
+	 */
+	BoxCookie get( String name ) {
+		if ( name == null ) {
+			return null;
+		}
+		Integer index = exact.get( name );
+		if ( index == null ) {
+			index = caseInsensitive.get( name );
+			if ( index == null ) {
+				return null;
+			}
+		}
+		return decode( index );
+	}
+
+	/**
+	 * Get every cookie, in the order the browser sent them
+	 *
+	 * @return A new array the caller is free to change
+	 */
+	BoxCookie[] getAll() {
+		if ( !allDecoded ) {
+			for ( int i = 0; i < cookies.length; i++ ) {
+				decode( i );
+			}
+			allDecoded = true;
+		}
+		return decoded.length == 0 ? EMPTY : decoded.clone();
+	}
+
+	/**
+	 * Decode a cookie the first time it's needed
+	 */
+	private BoxCookie decode( int index ) {
+		BoxCookie cookie = decoded[ index ];
+		if ( cookie == null ) {
+			// Only name and value are sent from the browser, so we don't bother with the other getters
+			cookie				= BoxCookie.fromEncoded( cookies[ index ].getName(), cookies[ index ].getValue() );
+			decoded[ index ]	= cookie;
+		}
+		return cookie;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Thrown when a request breaks one of the limits on its query string, form or uploads. It's the client's fault, so the
+ * servlet answers with the HTTP status carried here instead of a 500.
+ */
+public final class RequestLimitException extends BoxRuntimeException {
+
+	private static final long	serialVersionUID	= 1L;
+
+	private final int			status;
+
+	/**
+	 * Create an exception
+	 *
+	 * @param status  The HTTP status to answer with
+	 * @param message The limit which was broken
+	 */
+	public RequestLimitException( int status, String message ) {
+		super( message );
+		this.status = status;
+	}
+
+	/**
+	 * Create an exception
+	 *
+	 * @param status  The HTTP status to answer with
+	 * @param message The limit which was broken
+	 * @param cause   What reported it
+	 */
+	public RequestLimitException( int status, String message, Throwable cause ) {
+		super( message, cause );
+		this.status = status;
+	}
+
+	/**
+	 * A request which is too large: {@link HttpServletResponse#SC_REQUEST_ENTITY_TOO_LARGE}
+	 *
+	 * @param message The limit which was broken
+	 *
+	 * @return The exception
+	 */
+	static RequestLimitException tooLarge( String message ) {
+		return new RequestLimitException( HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, message );
+	}
+
+	/**
+	 * A request which is malformed: {@link HttpServletResponse#SC_BAD_REQUEST}
+	 *
+	 * @param message The limit which was broken
+	 *
+	 * @return The exception
+	 */
+	static RequestLimitException badRequest( String message ) {
+		return new RequestLimitException( HttpServletResponse.SC_BAD_REQUEST, message );
+	}
+
+	/**
+	 * The HTTP status to answer with
+	 *
+	 * @return The status, 413 or 400
+	 */
+	public int getStatus() {
+		return status;
+	}
+}
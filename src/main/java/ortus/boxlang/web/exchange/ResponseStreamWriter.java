@@ -0,0 +1,155 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A Writer which encodes characters straight into an output stream, without holding on to any of them.
+ * <p>
+ * Unlike an OutputStreamWriter, nothing is kept back between calls except the high half of a surrogate pair split
+ * across two writes, so the bytes are always in the stream and a reset of the stream loses nothing of the writer's.
+ * The encode buffer comes from the {@link BufferPool} and goes back to it when the writer is closed.
+ */
+final class ResponseStreamWriter extends Writer {
+
+	private final OutputStream		out;
+	private final CharsetEncoder	encoder;
+	private byte[]					buffer;
+	private ByteBuffer				bytes;
+
+	/**
+	 * The high surrogate of a pair whose low half hasn't been written yet, or 0
+	 */
+	private char					pendingSurrogate;
+
+	/**
+	 * Create a writer
+	 *
+	 * @param out     The stream to write the encoded bytes to
+	 * @param charset The charset to encode with
+	 */
+	ResponseStreamWriter( OutputStream out, Charset charset ) {
+		this.out		= out;
+		this.encoder	= charset.newEncoder()
+		    .onMalformedInput( CodingErrorAction.REPLACE )
+		    .onUnmappableCharacter( CodingErrorAction.REPLACE );
+		this.buffer		= BufferPool.SHARED.acquire();
+		this.bytes		= ByteBuffer.wrap( buffer );
+	}
+
+	@Override
+	public void write( int c ) throws IOException {
+		write( new char[] { ( char ) c }, 0, 1 );
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		encode( CharBuffer.wrap( str, off, off + len ) );
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		encode( CharBuffer.wrap( cbuf, off, len ) );
+	}
+
+	@Override
+	public Writer append( CharSequence csq ) throws IOException {
+		encode( CharBuffer.wrap( csq == null ? "null" : csq ) );
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if ( buffer != null ) {
+			if ( pendingSurrogate != 0 ) {
+				// A lone high surrogate at the very end is malformed, so let the encoder replace it
+				char lone = pendingSurrogate;
+				pendingSurrogate = 0;
+				encoder.encode( CharBuffer.wrap( new char[] { lone } ), bytes, true );
+				drain();
+			}
+			BufferPool.SHARED.release( buffer );
+			buffer	= null;
+			bytes	= null;
+		}
+		out.close();
+	}
+
+	/**
+	 * Forget a half-written surrogate pair. Used when the response buffer is reset.
+	 */
+	void discard() {
+		pendingSurrogate = 0;
+		encoder.reset();
+	}
+
+	/**
+	 * Encode characters and write the bytes out
+	 */
+	private void encode( CharBuffer chars ) throws IOException {
+		if ( buffer == null ) {
+			throw new IOException( "The writer is closed" );
+		}
+		if ( pendingSurrogate != 0 && chars.hasRemaining() ) {
+			char[] pair = new char[] { pendingSurrogate, chars.get() };
+			pendingSurrogate = 0;
+			encode( CharBuffer.wrap( pair ) );
+		}
+		while ( true ) {
+			CoderResult result = encoder.encode( chars, bytes, false );
+			if ( result.isOverflow() ) {
+				drain();
+				continue;
+			}
+			if ( result.isError() ) {
+				// Only possible with REPORT actions, which we don't use
+				result.throwException();
+			}
+			break;
+		}
+		if ( chars.hasRemaining() ) {
+			// The encoder only stops short for a high surrogate at the end, which needs the next write's low surrogate
+			pendingSurrogate = chars.get();
+		}
+		drain();
+	}
+
+	/**
+	 * Write out whatever has been encoded so far
+	 */
+	private void drain() throws IOException {
+		if ( bytes.position() > 0 ) {
+			out.write( buffer, 0, bytes.position() );
+			bytes.clear();
+		}
+	}
+}
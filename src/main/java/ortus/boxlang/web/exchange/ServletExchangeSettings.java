@@ -0,0 +1,540 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+
+/**
+ * I hold the settings used by every {@link BoxHTTPServletExchange} created by a servlet.
+ * They are read once from the servlet's init-params so the per-request code never has to parse them.
+ */
+public class ServletExchangeSettings {
+
+	/**
+	 * The settings used when the servlet doesn't provide any
+	 */
+	public static final ServletExchangeSettings	DEFAULTS				= new ServletExchangeSettings();
+
+	/**
+	 * The request attribute which turns progressive flushing on for a request when it is set to true in the
+	 * <code>request</code> mode
+	 */
+	public static final String					PROGRESSIVE_FLUSH	= "boxlang.progressiveFlush";
+
+	/**
+	 * Whether to hand file responses to the container's native sendfile support when it has one
+	 */
+	private boolean								nativeSendfile			= true;
+
+	/**
+	 * Files smaller than this many bytes are written by us rather than by the container's sendfile, which costs more
+	 * than a copy for small files
+	 */
+	private long								sendfileMinSize			= 49152;
+
+	/**
+	 * Whether file responses look for a newer .br or .gz sibling to send when the client accepts it
+	 */
+	private boolean								precompressed			= false;
+
+	/**
+	 * Whether file responses carry an ETag and Last-Modified and answer conditional requests with a 304
+	 */
+	private boolean								conditionalGet			= true;
+
+	/**
+	 * How long, in milliseconds, the existence, size and last modified time of sent files are cached. 0 disables it.
+	 */
+	private long								fileMetadataTtl			= 2000;
+
+	/**
+	 * The max number of URL or form parameters a request may send. This guards against hash-flooding.
+	 */
+	private int									maxParameterCount		= 10000;
+
+	/**
+	 * The max length of a single URL or form parameter name
+	 */
+	private int									maxParameterNameLength	= 2048;
+
+	/**
+	 * The max size of a url-encoded form body in bytes. 0 or less means no limit.
+	 */
+	private long								maxFormBodySize			= 0;
+
+	/**
+	 * Whether multipart uploads are streamed part by part instead of buffered by Commons FileUpload
+	 */
+	private boolean								uploadStreaming			= false;
+
+	/**
+	 * The size in bytes under which buffered upload parts are kept in memory
+	 */
+	private int									uploadSizeThreshold		= 10240;
+
+	/**
+	 * The folder uploads are written to. Null for the system temp folder.
+	 */
+	private Path								uploadTempDir			= null;
+
+	/**
+	 * The max size of a single uploaded file in bytes. -1 means no limit.
+	 */
+	private long								uploadMaxFileSize		= -1;
+
+	/**
+	 * The max size of a whole multipart request in bytes. -1 means no limit.
+	 */
+	private long								uploadMaxRequestSize	= -1;
+
+	/**
+	 * The max number of parts (fields and files) in a multipart request. -1 means no limit.
+	 */
+	private long								uploadMaxParts			= -1;
+
+	/**
+	 * The max size of a multipart form field (a part which is not a file) in bytes, since fields are read into memory.
+	 * -1 means no limit.
+	 */
+	private long								uploadMaxFieldSize		= 1048576;
+
+	/**
+	 * The number of chars of output BoxLang buffers itself before encoding them to the servlet output stream.
+	 * 0 means the container's writer and buffer are used.
+	 */
+	private int									outputBufferSize		= 0;
+
+	/**
+	 * The number of bytes of output after which the BoxLang output buffer flushes to the client. 0 leaves it to the container.
+	 */
+	private long								outputFlushThreshold	= 0;
+
+	/**
+	 * Whether whitespace compression uses the chunked, table-driven {@link WhitespaceCompressingWriter} instead of the
+	 * per-char compression of the WhitespaceManagingPrintWriter
+	 */
+	private boolean								tableWhitespaceEngine	= false;
+
+	/**
+	 * Whether output is flushed to the client as the page renders, once the thresholds below are reached
+	 */
+	private boolean								progressiveFlush		= false;
+
+	/**
+	 * Whether progressive flushing only applies to requests which ask for it with the
+	 * {@link #PROGRESSIVE_FLUSH} request attribute
+	 */
+	private boolean								progressiveFlushOptIn	= false;
+
+	/**
+	 * The number of chars written after which the output is flushed in progressive mode. 0 means no size threshold.
+	 */
+	private long								progressiveFlushChars	= 16384;
+
+	/**
+	 * The milliseconds after which the output is flushed in progressive mode. 0 means no time threshold.
+	 */
+	private long								progressiveFlushMillis	= 0;
+
+	/**
+	 * How long, in milliseconds, an event stream may be idle before it gets a heartbeat. 0 disables heartbeats.
+	 */
+	private long								eventStreamHeartbeat	= 15000;
+
+	/**
+	 * Whether request metrics are kept, which makes the exchange count the bytes of the page output
+	 */
+	private boolean								metrics					= false;
+
+	/**
+	 * Whether responses are compressed when the client accepts it
+	 */
+	private boolean								compression				= false;
+
+	/**
+	 * The Deflater level used for compressed responses, from 1 (fastest) to 9 (smallest)
+	 */
+	private int									compressionLevel		= 6;
+
+	/**
+	 * Responses that end before reaching this many bytes are sent uncompressed
+	 */
+	private int									compressionMinSize		= 1024;
+
+	/**
+	 * The content types (without parameters) that are compressed
+	 */
+	private Set<String>							compressionMimeTypes	= Set.of(
+	    "text/html",
+	    "text/plain",
+	    "text/css",
+	    "text/xml",
+	    "text/csv",
+	    "text/javascript",
+	    "application/javascript",
+	    "application/json",
+	    "application/xml",
+	    "image/svg+xml"
+	);
+
+	/**
+	 * Create the default settings
+	 */
+	public ServletExchangeSettings() {
+	}
+
+	/**
+	 * Read the settings from the servlet's init-params. Any init-param not set keeps its default.
+	 *
+	 * @param config The servlet config
+	 *
+	 * @return The settings
+	 *
+	 * @throws ServletException If an init-param has an invalid value
+	 */
+	public static ServletExchangeSettings fromServletConfig( ServletConfig config ) throws ServletException {
+		ServletExchangeSettings settings = new ServletExchangeSettings();
+		settings.nativeSendfile			= InitParameters.getBoolean( config, "boxlang-native-sendfile", settings.nativeSendfile );
+		settings.sendfileMinSize		= InitParameters.getLong( config, "boxlang-sendfile-min-size", settings.sendfileMinSize );
+		settings.precompressed			= InitParameters.getBoolean( config, "boxlang-precompressed", settings.precompressed );
+		settings.conditionalGet			= InitParameters.getBoolean( config, "boxlang-conditional-get", settings.conditionalGet );
+		settings.fileMetadataTtl		= InitParameters.getLong( config, "boxlang-file-metadata-ttl", settings.fileMetadataTtl );
+		settings.maxParameterCount		= InitParameters.getInt( config, "boxlang-max-parameter-count", settings.maxParameterCount );
+		settings.maxParameterNameLength	= InitParameters.getInt( config, "boxlang-max-parameter-name-length", settings.maxParameterNameLength );
+		settings.maxFormBodySize		= InitParameters.getLong( config, "boxlang-max-form-body-size", settings.maxFormBodySize );
+
+		String uploadMode = InitParameters.getString( config, "boxlang-upload-mode", "buffered" );
+		if ( !uploadMode.equalsIgnoreCase( "buffered" ) && !uploadMode.equalsIgnoreCase( "streaming" ) ) {
+			throw new ServletException( "Init-param [boxlang-upload-mode] must be [buffered] or [streaming], but got [" + uploadMode + "]" );
+		}
+		settings.uploadStreaming		= uploadMode.equalsIgnoreCase( "streaming" );
+		settings.uploadSizeThreshold	= InitParameters.getInt( config, "boxlang-upload-size-threshold", settings.uploadSizeThreshold );
+		settings.uploadMaxFileSize		= InitParameters.getLong( config, "boxlang-upload-max-file-size", settings.uploadMaxFileSize );
+		settings.uploadMaxRequestSize	= InitParameters.getLong( config, "boxlang-upload-max-request-size", settings.uploadMaxRequestSize );
+		settings.uploadMaxParts			= InitParameters.getLong( config, "boxlang-upload-max-parts", settings.uploadMaxParts );
+		settings.uploadMaxFieldSize		= InitParameters.getLong( config, "boxlang-upload-max-field-size", settings.uploadMaxFieldSize );
+		String uploadTempDir = InitParameters.getString( config, "boxlang-upload-temp-dir", null );
+		if ( uploadTempDir != null ) {
+			settings.uploadTempDir = Path.of( uploadTempDir );
+			try {
+				Files.createDirectories( settings.uploadTempDir );
+			} catch ( IOException e ) {
+				throw new ServletException( "Could not create the upload temp folder [" + uploadTempDir + "]", e );
+			}
+		}
+
+		settings.outputBufferSize		= InitParameters.getInt( config, "boxlang-output-buffer-size", settings.outputBufferSize );
+		settings.outputFlushThreshold	= InitParameters.getLong( config, "boxlang-output-flush-threshold", settings.outputFlushThreshold );
+
+		String whitespaceEngine = InitParameters.getString( config, "boxlang-whitespace-engine", "default" );
+		if ( !whitespaceEngine.equalsIgnoreCase( "default" ) && !whitespaceEngine.equalsIgnoreCase( "table" ) ) {
+			throw new ServletException( "Init-param [boxlang-whitespace-engine] must be [default] or [table], but got [" + whitespaceEngine + "]" );
+		}
+		settings.tableWhitespaceEngine = whitespaceEngine.equalsIgnoreCase( "table" );
+
+		String progressiveFlush = InitParameters.getString( config, "boxlang-progressive-flush", "off" );
+		if ( !progressiveFlush.equalsIgnoreCase( "off" ) && !progressiveFlush.equalsIgnoreCase( "on" )
+		    && !progressiveFlush.equalsIgnoreCase( "request" ) ) {
+			throw new ServletException(
+			    "Init-param [boxlang-progressive-flush] must be [off], [on] or [request], but got [" + progressiveFlush + "]" );
+		}
+		settings.progressiveFlush			= !progressiveFlush.equalsIgnoreCase( "off" );
+		settings.progressiveFlushOptIn		= progressiveFlush.equalsIgnoreCase( "request" );
+		settings.progressiveFlushChars		= InitParameters.getLong( config, "boxlang-progressive-flush-bytes", settings.progressiveFlushChars );
+		settings.progressiveFlushMillis		= InitParameters.getLong( config, "boxlang-progressive-flush-interval", settings.progressiveFlushMillis );
+
+		settings.eventStreamHeartbeat	= InitParameters.getLong( config, "boxlang-event-stream-heartbeat", settings.eventStreamHeartbeat );
+		settings.metrics				= InitParameters.getBoolean( config, "boxlang-metrics", settings.metrics );
+
+		settings.compression		= InitParameters.getBoolean( config, "boxlang-compression", settings.compression );
+		settings.compressionLevel	= InitParameters.getInt( config, "boxlang-compression-level", settings.compressionLevel );
+		if ( settings.compressionLevel < 1 || settings.compressionLevel > 9 ) {
+			throw new ServletException( "Init-param [boxlang-compression-level] must be between 1 and 9, but got [" + settings.compressionLevel + "]" );
+		}
+		settings.compressionMinSize = InitParameters.getInt( config, "boxlang-compression-min-size", settings.compressionMinSize );
+		List<String> mimeTypes = InitParameters.getList( config, "boxlang-compression-mime-types" );
+		if ( !mimeTypes.isEmpty() ) {
+			Set<String> types = new HashSet<>();
+			for ( String type : mimeTypes ) {
+				types.add( type.toLowerCase() );
+			}
+			settings.compressionMimeTypes = Set.copyOf( types );
+		}
+		return settings;
+	}
+
+	/**
+	 * Whether to hand file responses to the container's native sendfile support when it has one
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isNativeSendfile() {
+		return nativeSendfile;
+	}
+
+	/**
+	 * The size in bytes under which files are not handed to the container's sendfile
+	 *
+	 * @return The min size
+	 */
+	public long getSendfileMinSize() {
+		return sendfileMinSize;
+	}
+
+	/**
+	 * Whether file responses look for a newer .br or .gz sibling to send when the client accepts it
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isPrecompressed() {
+		return precompressed;
+	}
+
+	/**
+	 * Whether file responses carry an ETag and Last-Modified and answer conditional requests with a 304
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isConditionalGet() {
+		return conditionalGet;
+	}
+
+	/**
+	 * How long the existence, size and last modified time of sent files are cached
+	 *
+	 * @return The TTL in milliseconds, 0 or less if disabled
+	 */
+	public long getFileMetadataTtl() {
+		return fileMetadataTtl;
+	}
+
+	/**
+	 * The max number of URL or form parameters a request may send
+	 *
+	 * @return The max count
+	 */
+	public int getMaxParameterCount() {
+		return maxParameterCount;
+	}
+
+	/**
+	 * The max length of a single URL or form parameter name
+	 *
+	 * @return The max length
+	 */
+	public int getMaxParameterNameLength() {
+		return maxParameterNameLength;
+	}
+
+	/**
+	 * The max size of a url-encoded form body in bytes
+	 *
+	 * @return The max size, 0 or less for no limit
+	 */
+	public long getMaxFormBodySize() {
+		return maxFormBodySize;
+	}
+
+	/**
+	 * Whether multipart uploads are streamed part by part instead of buffered by Commons FileUpload
+	 *
+	 * @return True if streaming
+	 */
+	public boolean isUploadStreaming() {
+		return uploadStreaming;
+	}
+
+	/**
+	 * The size in bytes under which buffered upload parts are kept in memory
+	 *
+	 * @return The threshold
+	 */
+	public int getUploadSizeThreshold() {
+		return uploadSizeThreshold;
+	}
+
+	/**
+	 * The folder uploads are written to
+	 *
+	 * @return The folder, or null for the system temp folder
+	 */
+	public Path getUploadTempDir() {
+		return uploadTempDir;
+	}
+
+	/**
+	 * The max size of a single uploaded file in bytes
+	 *
+	 * @return The max size, -1 for no limit
+	 */
+	public long getUploadMaxFileSize() {
+		return uploadMaxFileSize;
+	}
+
+	/**
+	 * The max size of a whole multipart request in bytes
+	 *
+	 * @return The max size, -1 for no limit
+	 */
+	public long getUploadMaxRequestSize() {
+		return uploadMaxRequestSize;
+	}
+
+	/**
+	 * The max number of parts (fields and files) in a multipart request
+	 *
+	 * @return The max number of parts, -1 for no limit
+	 */
+	public long getUploadMaxParts() {
+		return uploadMaxParts;
+	}
+
+	/**
+	 * The max size of a multipart form field which is not a file
+	 *
+	 * @return The max size in bytes, -1 for no limit
+	 */
+	public long getUploadMaxFieldSize() {
+		return uploadMaxFieldSize;
+	}
+
+	/**
+	 * The number of chars of output BoxLang buffers itself before encoding them to the servlet output stream
+	 *
+	 * @return The buffer size, 0 or less to use the container's writer
+	 */
+	public int getOutputBufferSize() {
+		return outputBufferSize;
+	}
+
+	/**
+	 * The number of bytes of output after which the BoxLang output buffer flushes to the client
+	 *
+	 * @return The threshold, 0 or less to leave it to the container
+	 */
+	public long getOutputFlushThreshold() {
+		return outputFlushThreshold;
+	}
+
+	/**
+	 * Whether whitespace compression uses the chunked, table-driven engine
+	 *
+	 * @return True for the table-driven engine, false for the WhitespaceManagingPrintWriter's own
+	 */
+	public boolean isTableWhitespaceEngine() {
+		return tableWhitespaceEngine;
+	}
+
+	/**
+	 * Whether output is flushed to the client as the page renders
+	 *
+	 * @return True if progressive flushing is on, for all requests or for those which opt in
+	 */
+	public boolean isProgressiveFlush() {
+		return progressiveFlush;
+	}
+
+	/**
+	 * Whether progressive flushing only applies to requests with the {@link #PROGRESSIVE_FLUSH} attribute set
+	 *
+	 * @return True if requests must opt in
+	 */
+	public boolean isProgressiveFlushOptIn() {
+		return progressiveFlushOptIn;
+	}
+
+	/**
+	 * The number of chars written after which the output is flushed in progressive mode
+	 *
+	 * @return The threshold, 0 or less for none
+	 */
+	public long getProgressiveFlushChars() {
+		return progressiveFlushChars;
+	}
+
+	/**
+	 * The milliseconds after which the output is flushed in progressive mode
+	 *
+	 * @return The interval, 0 or less for none
+	 */
+	public long getProgressiveFlushMillis() {
+		return progressiveFlushMillis;
+	}
+
+	/**
+	 * How long, in milliseconds, an event stream may be idle before it gets a heartbeat
+	 *
+	 * @return The idle time, 0 or less for no heartbeats
+	 */
+	public long getEventStreamHeartbeat() {
+		return eventStreamHeartbeat;
+	}
+
+	/**
+	 * Whether request metrics are kept
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Whether responses are compressed when the client accepts it
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isCompression() {
+		return compression;
+	}
+
+	/**
+	 * The Deflater level used for compressed responses
+	 *
+	 * @return The level, from 1 to 9
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * Responses that end before reaching this many bytes are sent uncompressed
+	 *
+	 * @return The min size in bytes
+	 */
+	public int getCompressionMinSize() {
+		return compressionMinSize;
+	}
+
+	/**
+	 * The content types (lower case, without parameters) that are compressed
+	 *
+	 * @return The content types
+	 */
+	public Set<String> getCompressionMimeTypes() {
+		return compressionMimeTypes;
+	}
+}
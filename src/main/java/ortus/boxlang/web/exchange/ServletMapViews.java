@@ -0,0 +1,239 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * {@link Map} views over the servlet request and response. Nothing is copied up front: a lookup goes straight to the
+ * servlet API. Each view is a private copy as far as its caller can tell, like the maps the exchange used to build: the
+ * first write, or the first walk over the whole map, copies the names and values, and the view works on the copy from
+ * then on. Writes never reach the request or response.
+ * <p>
+ * Header names are case-insensitive, as in the servlet API, everywhere: in lookups, in writes and in the key and entry
+ * sets, which hold the names as the container reports them. Attribute names are case-sensitive.
+ */
+final class ServletMapViews {
+
+	private ServletMapViews() {
+	}
+
+	/**
+	 * The request headers. Request headers never change, so each header's values are materialized once per exchange,
+	 * the first time they are looked up, in the cache the exchange passes in.
+	 */
+	static final class RequestHeaders extends LazyCopyMap<String[]> {
+
+		private final HttpServletRequest	request;
+		private final Map<String, String[]>	values;
+
+		/**
+		 * Create a view
+		 *
+		 * @param request The servlet request
+		 * @param values  The exchange's cache of header values, case-insensitive
+		 */
+		RequestHeaders( HttpServletRequest request, Map<String, String[]> values ) {
+			super( true );
+			this.request	= request;
+			this.values		= values;
+		}
+
+		@Override
+		String[] lookup( String name ) {
+			String[] cached = values.get( name );
+			if ( cached != null ) {
+				return cached;
+			}
+			String[] headerValues = toArray( request.getHeaders( name ) );
+			if ( headerValues != null ) {
+				values.put( name, headerValues );
+			}
+			return headerValues;
+		}
+
+		@Override
+		Enumeration<String> names() {
+			return request.getHeaderNames();
+		}
+
+		private static String[] toArray( Enumeration<String> headers ) {
+			if ( headers == null || !headers.hasMoreElements() ) {
+				return null;
+			}
+			String first = headers.nextElement();
+			if ( !headers.hasMoreElements() ) {
+				return new String[] { first };
+			}
+			List<String> list = new ArrayList<>( 4 );
+			list.add( first );
+			while ( headers.hasMoreElements() ) {
+				list.add( headers.nextElement() );
+			}
+			return list.toArray( new String[ 0 ] );
+		}
+	}
+
+	/**
+	 * The request attributes. Attributes can change during the request, so nothing is cached until the view is copied.
+	 */
+	static final class RequestAttributes extends LazyCopyMap<Object> {
+
+		private final HttpServletRequest request;
+
+		RequestAttributes( HttpServletRequest request ) {
+			super( false );
+			this.request = request;
+		}
+
+		@Override
+		Object lookup( String name ) {
+			return request.getAttribute( name );
+		}
+
+		@Override
+		Enumeration<String> names() {
+			return request.getAttributeNames();
+		}
+	}
+
+	/**
+	 * The response headers. Headers can be added until the response is committed, so nothing is cached until the view
+	 * is copied.
+	 */
+	static final class ResponseHeaders extends LazyCopyMap<String[]> {
+
+		private final HttpServletResponse response;
+
+		ResponseHeaders( HttpServletResponse response ) {
+			super( true );
+			this.response = response;
+		}
+
+		@Override
+		String[] lookup( String name ) {
+			Collection<String> headerValues = response.getHeaders( name );
+			return headerValues == null || headerValues.isEmpty() ? null : headerValues.toArray( new String[ 0 ] );
+		}
+
+		@Override
+		Enumeration<String> names() {
+			return Collections.enumeration( response.getHeaderNames() );
+		}
+	}
+
+	/**
+	 * A map which reads through to the servlet API until it is written to or walked, and then works on a copy
+	 */
+	private abstract static class LazyCopyMap<V> extends AbstractMap<String, V> {
+
+		private final boolean	caseInsensitive;
+		private Map<String, V>	copy;
+
+		LazyCopyMap( boolean caseInsensitive ) {
+			this.caseInsensitive = caseInsensitive;
+		}
+
+		/**
+		 * @param name The name
+		 *
+		 * @return The current value, or null if there is none
+		 */
+		abstract V lookup( String name );
+
+		/**
+		 * @return The current names
+		 */
+		abstract Enumeration<String> names();
+
+		@Override
+		public V get( Object key ) {
+			if ( copy != null ) {
+				return copy.get( key );
+			}
+			return key instanceof String name ? lookup( name ) : null;
+		}
+
+		@Override
+		public boolean containsKey( Object key ) {
+			if ( copy != null ) {
+				return copy.containsKey( key );
+			}
+			return key instanceof String name && lookup( name ) != null;
+		}
+
+		@Override
+		public V put( String key, V value ) {
+			return copy().put( key, value );
+		}
+
+		@Override
+		public V remove( Object key ) {
+			return copy().remove( key );
+		}
+
+		@Override
+		public void putAll( Map<? extends String, ? extends V> map ) {
+			copy().putAll( map );
+		}
+
+		@Override
+		public void clear() {
+			copy().clear();
+		}
+
+		@Override
+		public int size() {
+			return copy().size();
+		}
+
+		@Override
+		public Set<Entry<String, V>> entrySet() {
+			// Walking every entry reads every name and value anyway, so the copy costs little more
+			return copy().entrySet();
+		}
+
+		private Map<String, V> copy() {
+			if ( copy == null ) {
+				Map<String, V>		copied	= caseInsensitive ? new TreeMap<>( String.CASE_INSENSITIVE_ORDER ) : new HashMap<>();
+				Enumeration<String>	names	= names();
+				while ( names != null && names.hasMoreElements() ) {
+					String	name	= names.nextElement();
+					V		value	= lookup( name );
+					if ( value != null ) {
+						copied.put( name, value );
+					}
+				}
+				copy = copied;
+			}
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * I parse <code>application/x-www-form-urlencoded</code> data (query strings and form bodies) in a single pass,
+ * straight into the <code>Map&lt;String, String[]&gt;</code> the exchange hands to BoxLang.
+ * Names and values are only run through the decoder when they contain a <code>%</code> or <code>+</code>.
+ */
+public final class UrlEncodedParser {
+
+	private UrlEncodedParser() {
+	}
+
+	/**
+	 * Parse a query string. Empty names are ignored.
+	 *
+	 * @param query         The raw query string
+	 * @param charset       The charset percent-encoded bytes are decoded with
+	 * @param maxParameters The max number of name/value pairs allowed
+	 * @param maxKeyLength  The max length of a single (encoded) name
+	 *
+	 * @return The parameters, in a mutable map
+	 *
+	 * @throws RequestLimitException If a limit is exceeded
+	 */
+	public static Map<String, String[]> parseQueryString( String query, Charset charset, int maxParameters, int maxKeyLength ) {
+		Map<String, String[]>	params	= new HashMap<>();
+		int						length	= query.length();
+		int						start	= 0;
+		int						count	= 0;
+		while ( start < length ) {
+			int end = query.indexOf( '&', start );
+			if ( end < 0 ) {
+				end = length;
+			}
+			if ( end > start ) {
+				int equals = query.indexOf( '=', start );
+				if ( equals < 0 || equals > end ) {
+					equals = end;
+				}
+				if ( equals > start ) {
+					if ( ++count > maxParameters ) {
+						throw RequestLimitException.badRequest( "The query string has more than the maximum of [" + maxParameters + "] parameters" );
+					}
+					if ( equals - start > maxKeyLength ) {
+						throw RequestLimitException.badRequest( "The query string has a parameter name longer than the maximum of [" + maxKeyLength + "] characters" );
+					}
+					String	key		= decode( query, start, equals, charset );
+					String	value	= equals < end ? decode( query, equals + 1, end, charset ) : "";
+					add( params, key, value );
+				}
+			}
+			start = end + 1;
+		}
+		return params;
+	}
+
+	/**
+	 * Parse a url-encoded form body straight from the request's input stream. The body is never held in memory as a
+	 * whole; bytes are percent-decoded as they are read and each name and value is turned into a String once it ends.
+	 * Pairs without an <code>=</code> and empty names are ignored.
+	 *
+	 * @param in            The request body
+	 * @param charset       The charset the decoded bytes are in
+	 * @param maxBodySize   The max number of bytes to read, 0 or less for no limit
+	 * @param maxFields     The max number of fields allowed
+	 * @param maxKeyLength  The max length of a single (encoded) field name
+	 *
+	 * @return The fields, in a mutable map
+	 *
+	 * @throws IOException           If the body can't be read
+	 * @throws RequestLimitException If a limit is exceeded
+	 */
+	public static Map<String, String[]> parseFormBody( InputStream in, Charset charset, long maxBodySize, int maxFields, int maxKeyLength )
+	    throws IOException {
+		Map<String, String[]>	params		= new HashMap<>();
+		byte[]					buffer		= new byte[ 8192 ];
+		byte[]					token		= new byte[ 128 ];
+		int						tokenLength	= 0;
+		// The decoded name, once we've seen the "=" for the current pair
+		String					key			= null;
+		int						keyLength	= 0;
+		// 0 = not in an escape, 1 = read "%", 2 = read "%" and one hex digit
+		int						escape		= 0;
+		int						escapeValue	= 0;
+		byte					escapeFirst	= 0;
+		long					total		= 0;
+		int						count		= 0;
+		int						read;
+
+		while ( true ) {
+			read = in.read( buffer );
+			if ( read > 0 ) {
+				total += read;
+				if ( maxBodySize > 0 && total > maxBodySize ) {
+					throw RequestLimitException.tooLarge( "The form body is larger than the maximum of [" + maxBodySize + "] bytes" );
+				}
+			}
+			// A negative read means we're at the end, and we finish off the last pair by faking an "&"
+			int limit = read < 0 ? 1 : read;
+			for ( int i = 0; i < limit; i++ ) {
+				byte b = read < 0 ? ( byte ) '&' : buffer[ i ];
+
+				if ( escape > 0 ) {
+					int digit = Character.digit( b, 16 );
+					if ( digit >= 0 ) {
+						escapeFirst	= b;
+						escapeValue	= ( escapeValue << 4 ) | digit;
+						if ( ++escape == 3 ) {
+							token		= append( token, tokenLength++, ( byte ) escapeValue );
+							escape		= 0;
+							escapeValue	= 0;
+						}
+						continue;
+					}
+					// Not a valid escape, so keep what we read as-is
+					token = append( token, tokenLength++, ( byte ) '%' );
+					if ( escape == 2 ) {
+						token = append( token, tokenLength++, escapeFirst );
+					}
+					escape		= 0;
+					escapeValue	= 0;
+				}
+
+				if ( b == '&' ) {
+					if ( key != null && !key.isEmpty() ) {
+						if ( ++count > maxFields ) {
+							throw RequestLimitException.tooLarge( "The form has more than the maximum of [" + maxFields + "] fields" );
+						}
+						add( params, key, new String( token, 0, tokenLength, charset ) );
+					}
+					key			= null;
+					keyLength	= 0;
+					tokenLength	= 0;
+				} else if ( b == '=' && key == null ) {
+					key			= new String( token, 0, tokenLength, charset );
+					tokenLength	= 0;
+				} else {
+					if ( key == null && ++keyLength > maxKeyLength ) {
+						throw RequestLimitException.badRequest( "The form has a field name longer than the maximum of [" + maxKeyLength + "] characters" );
+					}
+					if ( b == '%' ) {
+						escape = 1;
+					} else {
+						token = append( token, tokenLength++, b == '+' ? ( byte ) ' ' : b );
+					}
+				}
+			}
+			if ( read < 0 ) {
+				return params;
+			}
+		}
+	}
+
+	/**
+	 * Append a byte to a token, growing it if needed
+	 *
+	 * @param token    The token bytes
+	 * @param position The position to write at
+	 * @param b        The byte
+	 *
+	 * @return The token, which may be a new, larger array
+	 */
+	private static byte[] append( byte[] token, int position, byte b ) {
+		if ( position == token.length ) {
+			token = Arrays.copyOf( token, token.length * 2 );
+		}
+		token[ position ] = b;
+		return token;
+	}
+
+	/**
+	 * Decode part of a string, only allocating a decoded copy if there is something to decode.
+	 * A <code>%</code> which isn't followed by two hex digits is kept as-is, as in form bodies.
+	 *
+	 * @param source  The string
+	 * @param start   The first char (inclusive)
+	 * @param end     The last char (exclusive)
+	 * @param charset The charset percent-encoded bytes are decoded with
+	 *
+	 * @return The decoded string
+	 */
+	static String decode( String source, int start, int end, Charset charset ) {
+		int i = start;
+		while ( i < end && source.charAt( i ) != '%' && source.charAt( i ) != '+' ) {
+			i++;
+		}
+		if ( i == end ) {
+			return start == 0 && end == source.length() ? source : source.substring( start, end );
+		}
+
+		StringBuilder	decoded	= new StringBuilder( end - start ).append( source, start, i );
+		byte[]			bytes	= null;
+		while ( i < end ) {
+			char c = source.charAt( i );
+			if ( isEscape( source, i, end ) ) {
+				// A run of escapes is decoded at once, since a single character may take several bytes
+				if ( bytes == null ) {
+					bytes = new byte[ ( end - i ) / 3 ];
+				}
+				int count = 0;
+				while ( isEscape( source, i, end ) ) {
+					bytes[ count++ ]	= ( byte ) ( ( Character.digit( source.charAt( i + 1 ), 16 ) << 4 ) | Character.digit( source.charAt( i + 2 ), 16 ) );
+					i					+= 3;
+				}
+				decoded.append( new String( bytes, 0, count, charset ) );
+			} else {
+				decoded.append( c == '+' ? ' ' : c );
+				i++;
+			}
+		}
+		return decoded.toString();
+	}
+
+	/**
+	 * Whether a valid escape, a <code>%</code> and two hex digits, starts at a position
+	 */
+	private static boolean isEscape( String source, int position, int end ) {
+		return position + 2 < end
+		    && source.charAt( position ) == '%'
+		    && Character.digit( source.charAt( position + 1 ), 16 ) >= 0
+		    && Character.digit( source.charAt( position + 2 ), 16 ) >= 0;
+	}
+
+	/**
+	 * Add a value to a parameter, growing its array if the name repeats.
+	 *
+	 * @param params The parameters
+	 * @param key    The name
+	 * @param value  The value
+	 */
+	static void add( Map<String, String[]> params, String key, String value ) {
+		String[] existing = params.get( key );
+		if ( existing == null ) {
+			params.put( key, new String[] { value } );
+		} else {
+			String[] values = Arrays.copyOf( existing, existing.length + 1 );
+			values[ existing.length ] = value;
+			params.put( key, values );
+		}
+	}
+}
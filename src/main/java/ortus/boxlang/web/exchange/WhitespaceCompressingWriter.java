@@ -0,0 +1,302 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A whitespace compressing Writer which works on whole chunks of chars instead of one char at a time.
+ * <p>
+ * Each run of whitespace is collapsed to a single char: a line feed if the run had a line break in it, otherwise a space.
+ * The content of <code>&lt;pre&gt;</code>, <code>&lt;textarea&gt;</code> and <code>&lt;script&gt;</code> elements is
+ * left untouched.
+ * <p>
+ * A lookup table classifies each char, and the chars between two interesting ones (whitespace or <code>&lt;</code>)
+ * are written out with a single call. Runs of whitespace and tag names split across two writes are handled.
+ */
+final class WhitespaceCompressingWriter extends Writer {
+
+	private static final byte		NORMAL			= 0;
+	private static final byte		WHITESPACE		= 1;
+	private static final byte		NEWLINE			= 2;
+	private static final byte		TAG_OPEN		= 3;
+
+	/**
+	 * The class of each ASCII char. Everything above 127 is {@link #NORMAL}.
+	 */
+	private static final byte[]		CLASSES			= new byte[ 128 ];
+
+	/**
+	 * The elements whose content is kept as-is, in lower case
+	 */
+	private static final String[]	PRESERVED		= new String[] { "pre", "textarea", "script" };
+	private static final String[]	CLOSING			= new String[] { "</pre", "</textarea", "</script" };
+
+	/**
+	 * The longest of the preserved element names
+	 */
+	private static final int		MAX_TAG_LENGTH	= 8;
+
+	static {
+		CLASSES[ ' ' ]	= WHITESPACE;
+		CLASSES[ '\t' ]	= WHITESPACE;
+		CLASSES[ '\f' ]	= WHITESPACE;
+		CLASSES[ 0x0B ]	= WHITESPACE;
+		CLASSES[ '\r' ]	= NEWLINE;
+		CLASSES[ '\n' ]	= NEWLINE;
+		CLASSES[ '<' ]	= TAG_OPEN;
+	}
+
+	private final Writer	out;
+	private boolean			enabled;
+
+	/**
+	 * Where Strings are copied to before they are compressed
+	 */
+	private final char[]	scratch			= new char[ 1024 ];
+
+	/**
+	 * Whether we are in a run of whitespace which hasn't been written yet, and whether it has a line break
+	 */
+	private boolean			pendingWhitespace;
+	private boolean			pendingNewline;
+
+	/**
+	 * The name of the tag being read after a <code>&lt;</code>, or -1 if we aren't reading one
+	 */
+	private final char[]	tagName			= new char[ MAX_TAG_LENGTH ];
+	private int				tagNameLength	= -1;
+
+	/**
+	 * The closing tag we are looking for while in a preserved element (for example <code>&lt;/pre</code>), or null
+	 */
+	private String			preservedUntil;
+	private int				preservedMatched;
+
+	/**
+	 * Create a writer
+	 *
+	 * @param out     The writer to write the compressed output to
+	 * @param enabled Whether to compress to start with
+	 */
+	WhitespaceCompressingWriter( Writer out, boolean enabled ) {
+		this.out		= out;
+		this.enabled	= enabled;
+	}
+
+	/**
+	 * Turn compression on or off. Whitespace held back from a run in progress is written first.
+	 *
+	 * @param enabled Whether to compress
+	 *
+	 * @throws IOException If the pending whitespace can't be written
+	 */
+	void setEnabled( boolean enabled ) throws IOException {
+		if ( this.enabled && !enabled ) {
+			writePendingWhitespace();
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Whether compression is on
+	 *
+	 * @return True if enabled
+	 */
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void write( int c ) throws IOException {
+		write( new char[] { ( char ) c }, 0, 1 );
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		if ( !enabled ) {
+			out.write( str, off, len );
+			return;
+		}
+		// Copying into a char[] in chunks is far cheaper than charAt() for every char
+		while ( len > 0 ) {
+			int chunk = Math.min( len, scratch.length );
+			str.getChars( off, off + chunk, scratch, 0 );
+			write( scratch, 0, chunk );
+			off	+= chunk;
+			len	-= chunk;
+		}
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		if ( !enabled ) {
+			out.write( cbuf, off, len );
+			return;
+		}
+		int	end		= off + len;
+		int	i		= off;
+		// Start of the chars not written yet
+		int	start	= off;
+		while ( i < end ) {
+			if ( preservedUntil != null ) {
+				if ( i > start ) {
+					// The opening tag
+					writePendingWhitespace();
+					out.write( cbuf, start, i - start );
+				}
+				i		= skipPreserved( cbuf, i, end );
+				start	= i;
+				continue;
+			}
+			if ( tagNameLength >= 0 ) {
+				i = readTagName( cbuf, i, end );
+				continue;
+			}
+			char	c		= cbuf[ i ];
+			byte	type	= c < 128 ? CLASSES[ c ] : NORMAL;
+			if ( type == NORMAL ) {
+				i++;
+				continue;
+			}
+			if ( type == TAG_OPEN ) {
+				i++;
+				tagNameLength = 0;
+				continue;
+			}
+			// Whitespace: write everything before it, then swallow the whole run
+			if ( i > start ) {
+				writePendingWhitespace();
+				out.write( cbuf, start, i - start );
+			}
+			while ( i < end && ( c = cbuf[ i ] ) < 128 && ( type = CLASSES[ c ] ) != NORMAL && type != TAG_OPEN ) {
+				pendingWhitespace = true;
+				if ( type == NEWLINE ) {
+					pendingNewline = true;
+				}
+				i++;
+			}
+			start = i;
+		}
+		if ( end > start ) {
+			writePendingWhitespace();
+			out.write( cbuf, start, end - start );
+		}
+	}
+
+	/**
+	 * Forget any whitespace held back and any tag in progress. Used when the response buffer is reset.
+	 */
+	void reset() {
+		pendingWhitespace	= false;
+		pendingNewline		= false;
+		tagNameLength		= -1;
+		preservedUntil		= null;
+		preservedMatched	= 0;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writePendingWhitespace();
+		out.close();
+	}
+
+	/**
+	 * Read the name of a tag after a <code>&lt;</code>, switching to preserve mode once it turns out to be one of ours.
+	 * The chars are not consumed from the output, the caller writes them as usual.
+	 *
+	 * @return The index of the first char not read
+	 */
+	private int readTagName( char[] cbuf, int i, int end ) {
+		while ( i < end ) {
+			char c = cbuf[ i ];
+			if ( ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) ) {
+				if ( tagNameLength == MAX_TAG_LENGTH ) {
+					// Longer than any tag we care about
+					tagNameLength = -1;
+					return i;
+				}
+				tagName[ tagNameLength++ ] = ( char ) ( c | 0x20 );
+				i++;
+				continue;
+			}
+			// The name has ended, so see if it's one of ours. Only a real tag boundary counts, so <prefix> is not <pre>.
+			if ( tagNameLength > 0 && ( c == '>' || c == '/' || ( c < 128 && CLASSES[ c ] != NORMAL && CLASSES[ c ] != TAG_OPEN ) ) ) {
+				for ( int p = 0; p < PRESERVED.length; p++ ) {
+					if ( isTagName( PRESERVED[ p ] ) ) {
+						preservedUntil		= CLOSING[ p ];
+						preservedMatched	= 0;
+						break;
+					}
+				}
+			}
+			tagNameLength = -1;
+			return i;
+		}
+		return i;
+	}
+
+	private boolean isTagName( String name ) {
+		if ( name.length() != tagNameLength ) {
+			return false;
+		}
+		for ( int i = 0; i < tagNameLength; i++ ) {
+			if ( name.charAt( i ) != tagName[ i ] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write chars as-is until the closing tag of the preserved element has been seen
+	 *
+	 * @return The index of the first char not written
+	 */
+	private int skipPreserved( char[] cbuf, int i, int end ) throws IOException {
+		writePendingWhitespace();
+		int start = i;
+		while ( i < end ) {
+			char c = cbuf[ i++ ];
+			if ( ( c | 0x20 ) == ( preservedUntil.charAt( preservedMatched ) | 0x20 ) ) {
+				if ( ++preservedMatched == preservedUntil.length() ) {
+					preservedUntil = null;
+					break;
+				}
+			} else {
+				preservedMatched = c == '<' ? 1 : 0;
+			}
+		}
+		out.write( cbuf, start, i - start );
+		return i;
+	}
+
+	private void writePendingWhitespace() throws IOException {
+		if ( pendingWhitespace ) {
+			out.write( pendingNewline ? '\n' : ' ' );
+			pendingWhitespace	= false;
+			pendingNewline		= false;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class AsyncRequestProcessorTest {
+
+	@DisplayName( "A timed out request gets a 503 and is completed at once, and its worker is cut off from the request and response" )
+	@Test
+	void testTimeout() throws Exception {
+		AsyncContext		asyncContext	= mock( AsyncContext.class );
+		HttpServletRequest	request			= mock( HttpServletRequest.class );
+		HttpServletResponse	response		= mock( HttpServletResponse.class );
+		StringWriter		body			= new StringWriter();
+		when( request.startAsync( request, response ) ).thenReturn( asyncContext );
+		when( request.getAttributeNames() ).thenReturn( Collections.enumeration( List.of( "page" ) ) );
+		when( request.getAttribute( "page" ) ).thenReturn( "index.bxm" );
+		when( request.getHeaderNames() ).thenReturn( Collections.enumeration( List.of( "Host" ) ) );
+		when( request.getHeaders( "Host" ) ).thenReturn( Collections.enumeration( List.of( "localhost" ) ) );
+		when( request.getRequestURL() ).thenReturn( new StringBuffer( "http://localhost/index.bxm" ) );
+		when( request.getMethod() ).thenReturn( "GET" );
+		when( response.getWriter() ).thenReturn( new PrintWriter( body ) );
+
+		CountDownLatch				started		= new CountDownLatch( 1 );
+		CountDownLatch				finish		= new CountDownLatch( 1 );
+		AtomicBoolean				interrupted	= new AtomicBoolean();
+		AtomicReference<String>		seen		= new AtomicReference<>();
+		AtomicReference<Throwable>	failure		= new AtomicReference<>();
+		AsyncRequestProcessor		processor	= new AsyncRequestProcessor( Executors.newSingleThreadExecutor(), 1000 );
+		processor.dispatch( request, response, ( req, res ) -> {
+			res.getWriter().write( "before" );
+			started.countDown();
+			try {
+				finish.await();
+			} catch ( InterruptedException e ) {
+				interrupted.set( true );
+			}
+			// BoxLang carries on after an interrupt, so wait for the test to let it finish
+			while ( true ) {
+				try {
+					finish.await();
+					break;
+				} catch ( InterruptedException e ) {
+					// keep waiting
+				}
+			}
+			res.getWriter().write( "after" );
+			res.setHeader( "X-After", "true" );
+			res.getWriter().flush();
+			res.getOutputStream().write( 1 );
+			req.setAttribute( "after", "true" );
+			seen.set( req.getMethod() + " " + req.getHeader( "host" ) + " " + req.getAttribute( "page" ) + " " + req.getAttribute( "after" ) );
+			try {
+				req.getParameter( "q" );
+			} catch ( IllegalStateException e ) {
+				failure.set( e );
+			}
+		} );
+		assertThat( started.await( 5, TimeUnit.SECONDS ) ).isTrue();
+
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass( AsyncListener.class );
+		verify( asyncContext ).addListener( listener.capture() );
+		listener.getValue().onTimeout( null );
+
+		verify( response ).sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+		verify( asyncContext ).complete();
+
+		// The container recycles both once the request is complete, so the worker must not touch them again
+		clearInvocations( request, response );
+		finish.countDown();
+		processor.shutdown( 5000 );
+		assertThat( interrupted.get() ).isTrue();
+		assertThat( body.toString() ).isEqualTo( "before" );
+		assertThat( seen.get() ).isEqualTo( "GET localhost index.bxm true" );
+		assertThat( failure.get() ).isNotNull();
+		verifyNoInteractions( request, response );
+		verify( asyncContext ).complete();
+	}
+
+	@DisplayName( "A request over the admission limit gets a 503 with a Retry-After without running" )
+	@Test
+	void testAdmissionLimit() throws Exception {
+		AsyncRequestProcessor	processor	= new AsyncRequestProcessor( Executors.newCachedThreadPool(), 0 ).withAdmissionLimit( 1, 0 );
+		CountDownLatch			started		= new CountDownLatch( 1 );
+		CountDownLatch			finish		= new CountDownLatch( 1 );
+		AtomicBoolean			ran			= new AtomicBoolean();
+
+		HttpServletRequest		first		= mock( HttpServletRequest.class );
+		HttpServletResponse		firstRes	= mock( HttpServletResponse.class );
+		when( first.startAsync( first, firstRes ) ).thenReturn( mock( AsyncContext.class ) );
+		processor.dispatch( first, firstRes, ( req, res ) -> {
+			started.countDown();
+			try {
+				finish.await();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		} );
+		assertThat( started.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		assertThat( processor.getAvailablePermits() ).isEqualTo( 0 );
+
+		AsyncContext			asyncContext	= mock( AsyncContext.class );
+		HttpServletRequest		second			= mock( HttpServletRequest.class );
+		HttpServletResponse		secondRes		= mock( HttpServletResponse.class );
+		when( second.startAsync( second, secondRes ) ).thenReturn( asyncContext );
+		processor.dispatch( second, secondRes, ( req, res ) -> ran.set( true ) );
+
+		verify( asyncContext, timeout( 5000 ) ).complete();
+		verify( secondRes ).setHeader( "Retry-After", "1" );
+		verify( secondRes ).sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+		assertThat( ran.get() ).isFalse();
+
+		finish.countDown();
+		processor.shutdown( 5000 );
+		assertThat( processor.getAvailablePermits() ).isEqualTo( 1 );
+	}
+
+	@DisplayName( "A request which fails gets a 500 and gives its admission permit back" )
+	@Test
+	void testAdmissionReleasedOnFailure() throws Exception {
+		AsyncContext		asyncContext	= mock( AsyncContext.class );
+		HttpServletRequest	request			= mock( HttpServletRequest.class );
+		HttpServletResponse	response		= mock( HttpServletResponse.class );
+		when( request.startAsync( request, response ) ).thenReturn( asyncContext );
+
+		AsyncRequestProcessor processor = new AsyncRequestProcessor( Executors.newSingleThreadExecutor(), 0 ).withAdmissionLimit( 2, 0 );
+		processor.dispatch( request, response, ( req, res ) -> {
+			throw new IllegalStateException( "boom" );
+		} );
+
+		verify( asyncContext, timeout( 5000 ) ).complete();
+		verify( response ).sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+		assertThat( processor.getAvailablePermits() ).isEqualTo( 2 );
+		processor.shutdown( 1000 );
+	}
+
+	@DisplayName( "A request which times out in the queue is completed without running" )
+	@Test
+	void testTimeoutInQueue() throws Exception {
+		AsyncContext		asyncContext	= mock( AsyncContext.class );
+		HttpServletRequest	request			= mock( HttpServletRequest.class );
+		HttpServletResponse	response		= mock( HttpServletResponse.class );
+		when( request.startAsync( request, response ) ).thenReturn( asyncContext );
+
+		CountDownLatch			blocker		= new CountDownLatch( 1 );
+		AtomicBoolean			ran			= new AtomicBoolean();
+		var						executor	= Executors.newSingleThreadExecutor();
+		AsyncRequestProcessor	processor	= new AsyncRequestProcessor( executor, 1000 );
+		// Keep the only thread busy so the request stays queued
+		executor.execute( () -> {
+			try {
+				blocker.await();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		} );
+		processor.dispatch( request, response, ( req, res ) -> ran.set( true ) );
+
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass( AsyncListener.class );
+		verify( asyncContext ).addListener( listener.capture() );
+		listener.getValue().onTimeout( null );
+		verify( asyncContext ).complete();
+
+		blocker.countDown();
+		processor.shutdown( 5000 );
+		assertThat( ran.get() ).isFalse();
+	}
+
+}
@@ -0,0 +1,67 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.UnavailableException;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class BackgroundStartupTest {
+
+	@DisplayName( "A request which gives up waiting for the runtime gets a 503 with a Retry-After" )
+	@Test
+	void testStarting() throws IOException {
+		BoxLangServlet servlet = new BoxLangServlet();
+		servlet.startupRetryAfter = 7;
+		HttpServletResponse response = mock( HttpServletResponse.class );
+
+		assertThat( servlet.awaitRuntime( response ) ).isFalse();
+		verify( response ).setHeader( "Retry-After", "7" );
+		verify( response ).sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, "BoxLang is starting" );
+	}
+
+	@DisplayName( "Requests go ahead once the runtime has started, and fail if it couldn't" )
+	@Test
+	void testStarted() throws IOException {
+		BoxLangServlet		servlet		= new BoxLangServlet();
+		HttpServletResponse	response	= mock( HttpServletResponse.class );
+		servlet.runtimeReady.complete( null );
+		assertThat( servlet.awaitRuntime( response ) ).isTrue();
+		verifyNoInteractions( response );
+
+		BoxLangServlet failed = new BoxLangServlet();
+		failed.runtimeReady.completeExceptionally( new IllegalStateException( "no home" ) );
+		UnavailableException e = assertThrows( UnavailableException.class, () -> failed.awaitRuntime( response ) );
+		assertThat( e.getMessage() ).contains( "no home" );
+	}
+
+	@DisplayName( "The startup phases are timed in order" )
+	@Test
+	void testTimings() throws IOException {
+		StartupTimings timings = new StartupTimings();
+		timings.phase( "home" );
+		timings.phase( "settings" );
+		assertThat( timings.getTotalMillis() ).isEqualTo( -1 );
+		timings.phase( "runtime-boot" );
+		timings.ready();
+
+		assertThat( timings.getPhaseMillis().keySet() ).containsExactly( "home", "settings", "runtime-boot" ).inOrder();
+		assertThat( timings.getTotalMillis() ).isAtLeast( 0 );
+		assertThat( timings.toString() ).matches( "\\d+ms \\(home: \\d+ms, settings: \\d+ms, runtime-boot: \\d+ms\\)" );
+
+		StringWriter out = new StringWriter();
+		timings.writePrometheus( out );
+		assertThat( out.toString() ).contains( "boxlang_startup_phase_seconds{phase=\"settings\"} " );
+		assertThat( out.toString() ).contains( "boxlang_startup_seconds " );
+	}
+
+}
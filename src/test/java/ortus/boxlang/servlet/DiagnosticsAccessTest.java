@@ -0,0 +1,65 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class DiagnosticsAccessTest {
+
+	@DisplayName( "Nobody may see the diagnostics by default, not even localhost" )
+	@Test
+	void testDefault() throws IOException {
+		BoxLangServlet		servlet		= new BoxLangServlet();
+		HttpServletResponse	response	= mock( HttpServletResponse.class );
+
+		assertThat( servlet.isDiagnosticsAllowed( request( "127.0.0.1", null ), response ) ).isFalse();
+		verify( response ).sendError( HttpServletResponse.SC_FORBIDDEN );
+	}
+
+	@DisplayName( "The allow-list lets its addresses in" )
+	@Test
+	void testAllowList() throws IOException {
+		BoxLangServlet servlet = new BoxLangServlet();
+		servlet.diagnosticsAllow = Set.of( InetAddress.getByName( "10.0.0.5" ), InetAddress.getByName( "::1" ) );
+
+		assertThat( servlet.isDiagnosticsAllowed( request( "10.0.0.5", null ), mock( HttpServletResponse.class ) ) ).isTrue();
+		assertThat( servlet.isDiagnosticsAllowed( request( "0:0:0:0:0:0:0:1", null ), mock( HttpServletResponse.class ) ) ).isTrue();
+		assertThat( servlet.isDiagnosticsAllowed( request( "127.0.0.1", null ), mock( HttpServletResponse.class ) ) ).isFalse();
+	}
+
+	@DisplayName( "The token lets any address in, but only with the right bearer token" )
+	@Test
+	void testToken() throws IOException {
+		BoxLangServlet servlet = new BoxLangServlet();
+		servlet.diagnosticsToken = "s3cret".getBytes( StandardCharsets.UTF_8 );
+
+		HttpServletResponse response = mock( HttpServletResponse.class );
+		assertThat( servlet.isDiagnosticsAllowed( request( "203.0.113.9", "Bearer s3cret" ), response ) ).isTrue();
+		assertThat( servlet.isDiagnosticsAllowed( request( "203.0.113.9", "bearer s3cret" ), response ) ).isTrue();
+		verify( response, never() ).sendError( HttpServletResponse.SC_FORBIDDEN );
+
+		assertThat( servlet.isDiagnosticsAllowed( request( "203.0.113.9", "Bearer s3cre" ), mock( HttpServletResponse.class ) ) ).isFalse();
+		assertThat( servlet.isDiagnosticsAllowed( request( "127.0.0.1", "Basic s3cret" ), mock( HttpServletResponse.class ) ) ).isFalse();
+	}
+
+	private static HttpServletRequest request( String remoteAddr, String authorization ) {
+		HttpServletRequest request = mock( HttpServletRequest.class );
+		when( request.getRemoteAddr() ).thenReturn( remoteAddr );
+		when( request.getHeader( "Authorization" ) ).thenReturn( authorization );
+		return request;
+	}
+
+}
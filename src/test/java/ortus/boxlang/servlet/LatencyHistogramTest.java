@@ -0,0 +1,38 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+	@DisplayName( "Every value falls in a bucket which covers it, with no gaps between buckets" )
+	@Test
+	void testBuckets() {
+		for ( long value = 0; value < 1_000_000; value += 7 ) {
+			int index = LatencyHistogram.indexOf( value );
+			assertThat( LatencyHistogram.lowestValueOf( index ) ).isAtMost( value );
+			assertThat( LatencyHistogram.highestValueOf( index ) ).isAtLeast( value );
+		}
+		for ( int index = 0; index < LatencyHistogram.indexOf( 1L << 39 ); index++ ) {
+			assertThat( LatencyHistogram.lowestValueOf( index + 1 ) ).isEqualTo( LatencyHistogram.highestValueOf( index ) + 1 );
+		}
+	}
+
+	@DisplayName( "Percentiles are within 12.5% of the recorded values" )
+	@Test
+	void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for ( int i = 1; i <= 1000; i++ ) {
+			histogram.record( i * 1000L );
+		}
+		assertThat( histogram.getCount() ).isEqualTo( 1000 );
+		assertThat( histogram.getMax() ).isEqualTo( 1_000_000 );
+		assertThat( ( double ) histogram.getValueAtPercentile( 50 ) ).isWithin( 500_000 * 0.125 ).of( 500_000 );
+		assertThat( ( double ) histogram.getValueAtPercentile( 90 ) ).isWithin( 900_000 * 0.125 ).of( 900_000 );
+		assertThat( histogram.getValueAtPercentile( 100 ) ).isEqualTo( 1_000_000 );
+		assertThat( new LatencyHistogram().getValueAtPercentile( 99 ) ).isEqualTo( 0 );
+	}
+
+}
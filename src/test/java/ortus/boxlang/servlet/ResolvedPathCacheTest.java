@@ -0,0 +1,89 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.ServletContext;
+import ortus.boxlang.runtime.util.ResolvedFilePath;
+
+public class ResolvedPathCacheTest {
+
+	@DisplayName( "It returns the same cached instance on a hit" )
+	@Test
+	void testHit() {
+		ResolvedPathCache	cache		= new ResolvedPathCache( 100, 0 );
+		ResolvedFilePath	resolved	= ResolvedFilePath.ofReal( "/", "/webroot", "/index.bxm", Path.of( "/webroot/index.bxm" ) );
+
+		assertThat( cache.get( "/index.bxm" ) ).isNull();
+		cache.put( "/index.bxm", resolved );
+
+		assertThat( cache.get( "/index.bxm" ) ).isSameInstanceAs( resolved );
+		assertThat( cache.getHits() ).isEqualTo( 1 );
+		assertThat( cache.getMisses() ).isEqualTo( 1 );
+	}
+
+	@DisplayName( "It caches paths the container could not resolve when they expire" )
+	@Test
+	void testNotFound() {
+		ResolvedPathCache cache = new ResolvedPathCache( 100, 60 );
+		cache.put( "/missing.bxm", null );
+
+		assertThat( cache.get( "/missing.bxm" ) ).isSameInstanceAs( ResolvedPathCache.NOT_FOUND );
+	}
+
+	@DisplayName( "It doesn't cache paths the container could not resolve when nothing would expire them" )
+	@Test
+	void testNotFoundForever() {
+		ResolvedPathCache cache = new ResolvedPathCache( 100, 0 );
+		cache.put( "/missing.bxm", null );
+
+		assertThat( cache.get( "/missing.bxm" ) ).isNull();
+		assertThat( cache.size() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It is shared by the servlets of a context and closed by the last one to release it" )
+	@Test
+	void testRelease() {
+		Map<String, Object>	attributes		= new HashMap<>();
+		ServletContext		servletContext	= mock( ServletContext.class );
+		when( servletContext.getAttribute( any() ) ).thenAnswer( invocation -> attributes.get( invocation.getArgument( 0 ) ) );
+		doAnswer( invocation -> attributes.put( invocation.getArgument( 0 ), invocation.getArgument( 1 ) ) ).when( servletContext ).setAttribute( any(), any() );
+		doAnswer( invocation -> attributes.remove( invocation.getArgument( 0 ) ) ).when( servletContext ).removeAttribute( any() );
+
+		ResolvedPathCache	first	= ResolvedPathCache.forContext( servletContext, 100, 0, false );
+		ResolvedPathCache	second	= ResolvedPathCache.forContext( servletContext, 100, 0, false );
+		assertThat( second ).isSameInstanceAs( first );
+		first.put( "/index.bxm", ResolvedFilePath.ofReal( "/", "/webroot", "/index.bxm", Path.of( "/webroot/index.bxm" ) ) );
+
+		ResolvedPathCache.release( servletContext, first );
+		assertThat( attributes ).containsKey( ResolvedPathCache.ATTRIBUTE_NAME );
+		assertThat( second.size() ).isEqualTo( 1 );
+
+		ResolvedPathCache.release( servletContext, second );
+		assertThat( attributes ).isEmpty();
+		assertThat( second.size() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It never grows past its max size" )
+	@Test
+	void testEviction() {
+		ResolvedPathCache cache = new ResolvedPathCache( 50, 0 );
+		for ( int i = 0; i < 500; i++ ) {
+			cache.put( "/file" + i + ".bxm", ResolvedFilePath.ofReal( "/", "/webroot", "/file" + i + ".bxm", Path.of( "/webroot/file" + i + ".bxm" ) ) );
+		}
+
+		assertThat( cache.size() ).isAtMost( 50 );
+		assertThat( cache.getEvictions() ).isGreaterThan( 0 );
+	}
+
+}
@@ -68,8 +68,11 @@ public class ServiceFileMergingTest {
 		assertThat( bifs ).contains( "ortus.boxlang.web.bifs.Location" );
 		assertThat( bifs ).contains( "ortus.boxlang.web.bifs.GetHTTPRequestData" );
 
-		// Verify servlet project BIFs are present (if any)
-		// Note: The servlet project currently only has GetPageContext which might conflict with web support
+		// Verify servlet project BIFs are present
+		// Note: GetPageContext might conflict with web support
+		assertThat( bifs ).contains( "ortus.boxlang.web.bifs.EventStreamStart" );
+		assertThat( bifs ).contains( "ortus.boxlang.web.bifs.EventStreamSend" );
+		assertThat( bifs ).contains( "ortus.boxlang.web.bifs.EventStreamBroadcast" );
 
 		System.out.println( "✅ Total BIFs found: " + bifs.size() );
 		System.out.println( "✅ Web support BIFs verified successfully" );
@@ -0,0 +1,65 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.servlet.ServletMetrics.RequestMetrics;
+
+public class ServletMetricsTest {
+
+	@DisplayName( "It writes the metrics of each pattern in the Prometheus text format" )
+	@Test
+	void testWritePrometheus() throws IOException {
+		ServletMetrics	metrics	= new ServletMetrics( "", "test", false );
+		RequestMetrics	bxm		= metrics.started( "*.bxm" );
+		metrics.finished( bxm, 2_000_000, 200, 10, 100, 0, 0 );
+		bxm = metrics.started( "*.bxm" );
+		metrics.finished( bxm, 4_000_000, 404, -1, 20, 2, 300 );
+		metrics.started( "/say\"hi\"" );
+
+		StringWriter out = new StringWriter();
+		metrics.writePrometheus( out );
+		String text = out.toString();
+
+		assertThat( text ).contains( "# HELP boxlang_requests_total Requests finished\n# TYPE boxlang_requests_total counter\n" );
+		assertThat( text ).contains( "boxlang_requests_total{pattern=\"*.bxm\"} 2\n" );
+		assertThat( text ).contains( "boxlang_requests_in_flight{pattern=\"*.bxm\"} 0\n" );
+		assertThat( text ).contains( "boxlang_requests_in_flight{pattern=\"/say\\\"hi\\\"\"} 1\n" );
+		assertThat( text ).contains( "boxlang_request_errors_total{pattern=\"*.bxm\",status=\"404\"} 1\n" );
+		assertThat( text ).contains( "boxlang_request_bytes_total{pattern=\"*.bxm\"} 10\n" );
+		assertThat( text ).contains( "boxlang_response_bytes_total{pattern=\"*.bxm\"} 120\n" );
+		assertThat( text ).contains( "boxlang_uploads_total{pattern=\"*.bxm\"} 2\n" );
+		assertThat( text ).contains( "boxlang_upload_bytes_total{pattern=\"*.bxm\"} 300\n" );
+		assertThat( text ).contains( "boxlang_request_duration_seconds_count{pattern=\"*.bxm\"} 2\n" );
+		assertThat( text ).contains( "boxlang_request_duration_seconds{pattern=\"*.bxm\",quantile=\"0.99\"} " );
+		assertThat( metrics.getTotal().getRequestCount() ).isEqualTo( 2 );
+		assertThat( metrics.getTotal().getInFlight() ).isEqualTo( 1 );
+	}
+
+	@DisplayName( "It counts the patterns past the cap under other" )
+	@Test
+	void testPatternCap() throws IOException {
+		ServletMetrics metrics = new ServletMetrics( "", "test", false );
+		for ( int i = 0; i < ServletMetrics.MAX_PATTERNS + 5; i++ ) {
+			metrics.finished( metrics.started( "/pattern" + i + "/*" ), 1000, 200, 0, 0, 0, 0 );
+		}
+		// Patterns tracked before the cap keep their own metrics
+		metrics.finished( metrics.started( "/pattern0/*" ), 1000, 200, 0, 0, 0, 0 );
+
+		StringWriter out = new StringWriter();
+		metrics.writePrometheus( out );
+		String text = out.toString();
+
+		assertThat( text ).contains( "boxlang_requests_total{pattern=\"/pattern0/*\"} 2\n" );
+		assertThat( text ).contains( "boxlang_requests_total{pattern=\"" + ServletMetrics.OTHER + "\"} 5\n" );
+		assertThat( text ).contains( "pattern=\"/pattern" + ( ServletMetrics.MAX_PATTERNS - 1 ) + "/*\"" );
+		assertThat( text ).doesNotContain( "pattern=\"/pattern" + ServletMetrics.MAX_PATTERNS + "/*\"" );
+		assertThat( text.lines().filter( line -> line.startsWith( "boxlang_requests_total{" ) ).count() ).isEqualTo( ServletMetrics.MAX_PATTERNS + 1 );
+	}
+
+}
@@ -0,0 +1,56 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpServletRequest;
+import ortus.boxlang.servlet.SlowRequestDetector.InFlightRequest;
+import ortus.boxlang.servlet.SlowRequestDetector.Sample;
+
+public class SlowRequestDetectorTest {
+
+	@DisplayName( "It picks the BoxLang templates out of a stack" )
+	@Test
+	void testTemplateFrames() {
+		Sample sample = SlowRequestDetector.takeSample( new StackTraceElement[] {
+		    new StackTraceElement( "java.lang.Thread", "sleep", "Thread.java", 500 ),
+		    new StackTraceElement( "boxgenerated.templates.Report", "invoke", "/app/report.bxm", 42 ),
+		    new StackTraceElement( "boxgenerated.templates.Report", "_invoke", "/app/report.bxm", 42 ),
+		    new StackTraceElement( "ortus.boxlang.runtime.Foo", "run", "Foo.java", 10 ),
+		    new StackTraceElement( "boxgenerated.templates.Index", "invoke", "/app/Index.CFM", 7 )
+		} );
+		assertThat( sample.template() ).isEqualTo( "/app/report.bxm" );
+		assertThat( sample.line() ).isEqualTo( 42 );
+		assertThat( sample.templateStack() ).containsExactly( "/app/report.bxm:42", "/app/Index.CFM:7" ).inOrder();
+		assertThat( sample.stack() ).hasSize( 5 );
+	}
+
+	@DisplayName( "It samples requests over the threshold and lists them as JSON" )
+	@Test
+	void testSampleAndJson() throws IOException {
+		HttpServletRequest request = mock( HttpServletRequest.class );
+		when( request.getMethod() ).thenReturn( "GET" );
+		when( request.getRequestURI() ).thenReturn( "/app/report.bxm" );
+		when( request.getQueryString() ).thenReturn( "id=\"1\"" );
+
+		SlowRequestDetector	detector	= new SlowRequestDetector( 0, false );
+		InFlightRequest		entry		= detector.begin( request, System.nanoTime() );
+		detector.sample();
+
+		StringWriter out = new StringWriter();
+		detector.writeJson( out );
+		assertThat( out.toString() ).contains( "\"uri\":\"/app/report.bxm?id=\\\"1\\\"\"" );
+		assertThat( out.toString() ).contains( "\"stack\":[" );
+
+		detector.end( entry );
+		assertThat( detector.getInFlightCount() ).isEqualTo( 0 );
+	}
+
+}
@@ -0,0 +1,77 @@
+package ortus.boxlang.servlet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ortus.boxlang.servlet.TemplateWarmup.Report;
+import ortus.boxlang.web.exchange.InitParameters;
+
+public class TemplateWarmupTest {
+
+	@DisplayName( "It finds the templates and classes under directories and globs" )
+	@Test
+	void testFindFiles( @TempDir Path webroot ) throws IOException {
+		for ( String file : List.of( "index.bxm", "Application.bx", "readme.txt", "views/home.bxm", "views/legacy/old.cfm", "models/User.cfc" ) ) {
+			Path path = webroot.resolve( file );
+			Files.createDirectories( path.getParent() );
+			Files.writeString( path, "" );
+		}
+
+		TemplateWarmup warmup = new TemplateWarmup( webroot.toString(), InitParameters.split( "models, /views/**.cfm,, ../" ), 2, List.of() );
+		assertThat( warmup.findFiles() ).containsExactly( webroot.resolve( "models/User.cfc" ), webroot.resolve( "views/legacy/old.cfm" ) ).inOrder();
+
+		warmup = new TemplateWarmup( webroot.toString(), List.of( "/" ), 2, List.of() );
+		assertThat( warmup.findFiles() ).hasSize( 5 );
+	}
+
+	@DisplayName( "It skips compiling when the web root has no real path, but still requests the URLs" )
+	@Test
+	void testNoRealPath() throws IOException {
+		TemplateWarmup warmup = new TemplateWarmup( null, List.of( "/" ), 2, List.of( URI.create( "http://localhost:8080/" ) ) );
+
+		assertThat( warmup.hasTemplates() ).isFalse();
+		assertThat( warmup.findFiles() ).isEmpty();
+		assertThat( warmup.hasUrls() ).isTrue();
+	}
+
+	@DisplayName( "It compiles the files in parallel and reports the failures" )
+	@Test
+	void testPrecompile( @TempDir Path webroot ) throws IOException {
+		Files.createDirectories( webroot.resolve( "views" ) );
+		for ( String file : List.of( "index.bxm", "views/a.bxm", "views/b.bxm", "views/broken.bxm" ) ) {
+			Files.writeString( webroot.resolve( file ), "" );
+		}
+
+		Set<String>		threads	= ConcurrentHashMap.newKeySet();
+		TemplateWarmup	warmup	= new TemplateWarmup( webroot.toString(), List.of( "/" ), 4, List.of() );
+		Report			report	= warmup.precompile( file -> {
+			threads.add( Thread.currentThread().getName() );
+			if ( file.endsWith( "broken.bxm" ) ) {
+				throw new IllegalStateException( "Unexpected end of input" );
+			}
+		}, false );
+
+		assertThat( report.results() ).hasSize( 4 );
+		assertThat( report.failures() ).hasSize( 1 );
+		assertThat( report.failures().get( 0 ).path() ).isEqualTo( "/views/broken.bxm" );
+		assertThat( threads.stream().allMatch( name -> name.startsWith( "ForkJoinPool" ) ) ).isTrue();
+
+		StringWriter out = new StringWriter();
+		report.writePrometheus( out );
+		assertThat( out.toString() ).contains( "boxlang_precompile_files{result=\"compiled\"} 3\n" );
+		assertThat( out.toString() ).contains( "boxlang_precompile_files{result=\"failed\"} 1\n" );
+	}
+
+}
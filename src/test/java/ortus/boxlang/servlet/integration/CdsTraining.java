@@ -0,0 +1,35 @@
+package ortus.boxlang.servlet.integration;
+
+import java.util.List;
+
+/**
+ * The training run of <code>./gradlew cdsArchive</code>. Deploys the WAR to the embedded Jetty server and drives the
+ * {@link ServletLoadTest} mix for a while, so that the classes a real workload needs have been loaded when the JVM
+ * exits and writes its class data sharing archive.
+ * <p>
+ * Takes the training time in seconds as its only argument (30). Exits with 1 if any request failed, since a training
+ * run that hit errors loaded the error handling classes instead of the ones the templates need.
+ */
+public class CdsTraining {
+
+	public static void main( String[] args ) throws Exception {
+		int								seconds	= args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 30;
+		ServletLoadTest					load	= new ServletLoadTest();
+		List<ServletLoadTest.Result>	results;
+
+		load.setUp();
+		try {
+			System.out.println( "Training the CDS archive for " + seconds + "s..." );
+			results = load.run( seconds );
+		} finally {
+			// Stopping the server shuts the runtime down, so its shutdown classes are archived too
+			load.tearDown();
+		}
+
+		ServletLoadTest.Result total = results.get( results.size() - 1 );
+		System.out.println( "Trained on " + total.requests() + " requests, " + total.errors() + " failed" );
+		// The runtime can leave non-daemon threads behind, and the archive is only written when the JVM exits
+		System.exit( total.errors() > 0 ? 1 : 0 );
+	}
+
+}
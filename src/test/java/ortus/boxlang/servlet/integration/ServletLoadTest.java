@@ -0,0 +1,542 @@
+package ortus.boxlang.servlet.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Load test for the BoxLang Servlet WAR. Deploys the WAR to an embedded Jetty server, like
+ * {@link ServletIntegrationTest}, and drives a weighted mix of templates (small pages, a large page, form posts,
+ * uploads and file downloads) from concurrent clients on virtual threads, each sending its next request as soon as
+ * the last one is read.
+ * <p>
+ * After a warm-up, the throughput and the p50/p99/p99.9 latencies of each template are written to a JSON report and
+ * compared with a stored baseline, which is a report from an earlier run on the same machine. The test fails on any
+ * failed request, or when a template's throughput drops or its latency grows by more than the tolerance.
+ * <p>
+ * Run it with <code>./gradlew loadTest</code>, which passes these settings through as system properties:
+ * <ul>
+ * <li><code>loadtest.duration</code>: How long to measure, in seconds (30)</li>
+ * <li><code>loadtest.warmup</code>: How long to warm up first, in seconds (10)</li>
+ * <li><code>loadtest.concurrency</code>: The number of concurrent clients (32)</li>
+ * <li><code>loadtest.tolerance</code>: How much worse than the baseline a result can be, as a fraction (0.25)</li>
+ * <li><code>loadtest.latencySlack</code>: Milliseconds a latency can grow by on top of the tolerance, so sub-millisecond
+ * latencies don't fail on noise (2)</li>
+ * <li><code>loadtest.report</code>: Where to write the report (build/reports/loadtest/loadtest.json)</li>
+ * <li><code>loadtest.baseline</code>: The baseline to compare with (src/test/resources/loadtest/baseline.json)</li>
+ * <li><code>loadtest.updateBaseline</code>: Write the report to the baseline instead of comparing with it (false)</li>
+ * </ul>
+ */
+public class ServletLoadTest {
+
+	private static final String	CONTEXT_PATH	= "/boxlang-loadtest";
+	private static final String	BOUNDARY		= "----BoxLangLoadTestBoundary";
+	private static final int	DOWNLOAD_SIZE	= 1024 * 1024;
+	private static final int	UPLOAD_SIZE		= 64 * 1024;
+
+	private final int			durationSeconds	= Integer.getInteger( "loadtest.duration", 30 );
+	private final int			warmupSeconds	= Integer.getInteger( "loadtest.warmup", 10 );
+	private final int			concurrency		= Integer.getInteger( "loadtest.concurrency", 32 );
+	private final double		tolerance		= Double.parseDouble( System.getProperty( "loadtest.tolerance", "0.25" ) );
+	private final double		latencySlack	= Double.parseDouble( System.getProperty( "loadtest.latencySlack", "2" ) );
+	private final Path			report			= Path.of( System.getProperty( "loadtest.report", "build/reports/loadtest/loadtest.json" ) );
+	private final Path			baseline		= Path.of( System.getProperty( "loadtest.baseline", "src/test/resources/loadtest/baseline.json" ) );
+
+	private Server				server;
+	private File				tempDir;
+	private HttpClient			httpClient;
+	private String				baseUrl;
+	private List<Scenario>		scenarios;
+
+	/**
+	 * A template in the mix
+	 *
+	 * @param name         The name in the report
+	 * @param weight       How often it is picked, relative to the others
+	 * @param request      Builds a request for it
+	 * @param expectedSize The exact size of the response body, or -1 if it only has to be non-empty
+	 */
+	private record Scenario( String name, int weight, Supplier<HttpRequest> request, long expectedSize ) {
+	}
+
+	/**
+	 * The results of one template
+	 */
+	record Result( String name, long requests, long errors, double throughput, double p50, double p99, double p999, double max ) {
+	}
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		tempDir		= Files.createTempDirectory( "jetty-loadtest" ).toFile();
+		httpClient	= HttpClient.newBuilder()
+		    .version( HttpClient.Version.HTTP_1_1 )
+		    .connectTimeout( Duration.ofSeconds( 10 ) )
+		    .build();
+
+		System.setProperty( "org.eclipse.jetty.LEVEL", "WARN" );
+		server = new Server( 0 );
+
+		File warFile = findWarFile();
+		assertNotNull( warFile, "WAR file not found. Make sure to run 'gradle buildRuntime' first." );
+
+		WebAppContext webAppContext = new WebAppContext();
+		webAppContext.setWar( warFile.getAbsolutePath() );
+		webAppContext.setContextPath( CONTEXT_PATH );
+		File extractDir = new File( tempDir, "webapp-extract" );
+		extractDir.mkdirs();
+		webAppContext.setTempDirectory( extractDir );
+		server.setHandler( webAppContext );
+		server.start();
+
+		baseUrl = "http://localhost:" + ( ( ServerConnector ) server.getConnectors()[ 0 ] ).getLocalPort() + CONTEXT_PATH + "/loadtest/";
+		copyTemplates( webAppContext.getBaseResource().getFile().toPath().resolve( "loadtest" ) );
+		scenarios = createScenarios();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		if ( server != null && server.isStarted() ) {
+			server.stop();
+		}
+		deleteRecursively( tempDir );
+	}
+
+	@Test
+	public void testThroughputAndLatency() throws Exception {
+		System.out.println( "Warming up for " + warmupSeconds + "s with " + concurrency + " clients..." );
+		run( warmupSeconds );
+
+		System.out.println( "Measuring for " + durationSeconds + "s with " + concurrency + " clients..." );
+		List<Result>	results	= run( durationSeconds );
+		String			json	= toJson( results );
+		Files.createDirectories( report.toAbsolutePath().getParent() );
+		Files.writeString( report, json );
+		printResults( results );
+		System.out.println( "Report written to " + report.toAbsolutePath() );
+
+		long errors = results.get( results.size() - 1 ).errors();
+		assertEquals( 0, errors, "Requests failed during the load test" );
+
+		if ( Boolean.getBoolean( "loadtest.updateBaseline" ) ) {
+			Files.createDirectories( baseline.toAbsolutePath().getParent() );
+			Files.copy( report, baseline, StandardCopyOption.REPLACE_EXISTING );
+			System.out.println( "Baseline updated at " + baseline.toAbsolutePath() );
+			return;
+		}
+		if ( !Files.exists( baseline ) ) {
+			System.out.println( "No baseline at " + baseline.toAbsolutePath() + ", run with -PloadTestUpdateBaseline to store this run as the baseline" );
+			return;
+		}
+		List<String> regressions = compare( results, Files.readString( baseline ) );
+		regressions.forEach( r -> System.out.println( "REGRESSION: " + r ) );
+		assertTrue( regressions.isEmpty(), "The load test regressed beyond the baseline:\n" + String.join( "\n", regressions ) );
+	}
+
+	/**
+	 * Drive the mix for a while
+	 *
+	 * @param seconds How long
+	 *
+	 * @return The results of each template, then of all of them
+	 */
+	List<Result> run( int seconds ) throws Exception {
+		long					start		= System.nanoTime();
+		long					deadline	= start + TimeUnit.SECONDS.toNanos( seconds );
+		List<Future<Worker>>	futures		= new ArrayList<>();
+		try ( ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor() ) {
+			for ( int i = 0; i < concurrency; i++ ) {
+				Worker worker = new Worker( new Random( i ) );
+				futures.add( executor.submit( () -> worker.drive( deadline ) ) );
+			}
+		}
+		double elapsed = ( System.nanoTime() - start ) / 1e9;
+
+		List<Result>	results		= new ArrayList<>();
+		long[][]		all			= new long[ scenarios.size() ][];
+		long			allErrors	= 0;
+		for ( int s = 0; s < scenarios.size(); s++ ) {
+			long[]	latencies	= new long[ 0 ];
+			long	errors		= 0;
+			for ( Future<Worker> future : futures ) {
+				Worker	worker	= future.get();
+				int		offset	= latencies.length;
+				latencies	= Arrays.copyOf( latencies, offset + worker.counts[ s ] );
+				System.arraycopy( worker.latencies[ s ], 0, latencies, offset, worker.counts[ s ] );
+				errors		+= worker.errors[ s ];
+			}
+			all[ s ]	= latencies;
+			allErrors	+= errors;
+			results.add( summarize( scenarios.get( s ).name(), latencies, errors, elapsed ) );
+		}
+		results.add( summarize( "all", Arrays.stream( all ).flatMapToLong( Arrays::stream ).toArray(), allErrors, elapsed ) );
+		return results;
+	}
+
+	private static Result summarize( String name, long[] latencies, long errors, double elapsed ) {
+		Arrays.sort( latencies );
+		return new Result(
+		    name,
+		    latencies.length,
+		    errors,
+		    latencies.length / elapsed,
+		    percentile( latencies, 50 ),
+		    percentile( latencies, 99 ),
+		    percentile( latencies, 99.9 ),
+		    latencies.length == 0 ? 0 : latencies[ latencies.length - 1 ] / 1e6
+		);
+	}
+
+	/**
+	 * The nearest-rank percentile of sorted latencies, in milliseconds
+	 */
+	private static double percentile( long[] sorted, double percentile ) {
+		if ( sorted.length == 0 ) {
+			return 0;
+		}
+		int rank = ( int ) Math.ceil( percentile / 100 * sorted.length );
+		return sorted[ Math.max( 0, rank - 1 ) ] / 1e6;
+	}
+
+	/**
+	 * Compare the results with a baseline report
+	 *
+	 * @param results The results
+	 * @param json    The baseline report
+	 *
+	 * @return A description of each regression
+	 */
+	@SuppressWarnings( "unchecked" )
+	private List<String> compare( List<Result> results, String json ) {
+		Map<String, Object>	scenarioBaselines	= ( Map<String, Object> ) ( ( Map<String, Object> ) new JsonReader( json ).read() ).get( "scenarios" );
+		List<String>		regressions			= new ArrayList<>();
+		for ( Result result : results ) {
+			Map<String, Object> base = ( Map<String, Object> ) scenarioBaselines.get( result.name() );
+			if ( base == null ) {
+				continue;
+			}
+			double throughput = ( ( Number ) base.get( "throughput" ) ).doubleValue();
+			if ( result.throughput() < throughput * ( 1 - tolerance ) ) {
+				regressions.add( String.format( Locale.ROOT, "%s throughput %.1f/s is below the baseline of %.1f/s", result.name(), result.throughput(), throughput ) );
+			}
+			checkLatency( regressions, result.name(), "p50", result.p50(), base );
+			checkLatency( regressions, result.name(), "p99", result.p99(), base );
+			checkLatency( regressions, result.name(), "p999", result.p999(), base );
+		}
+		return regressions;
+	}
+
+	private void checkLatency( List<String> regressions, String name, String percentile, double value, Map<String, Object> base ) {
+		double baseValue = ( ( Number ) base.get( percentile + "Ms" ) ).doubleValue();
+		if ( value > baseValue * ( 1 + tolerance ) + latencySlack ) {
+			regressions.add( String.format( Locale.ROOT, "%s %s latency %.2fms is above the baseline of %.2fms", name, percentile, value, baseValue ) );
+		}
+	}
+
+	private String toJson( List<Result> results ) {
+		StringBuilder sb = new StringBuilder( 2048 );
+		sb.append( "{\n" )
+		    .append( "  \"timestamp\": \"" ).append( Instant.now() ).append( "\",\n" )
+		    .append( "  \"java\": \"" ).append( System.getProperty( "java.version" ) ).append( "\",\n" )
+		    .append( "  \"cpus\": " ).append( Runtime.getRuntime().availableProcessors() ).append( ",\n" )
+		    .append( "  \"durationSeconds\": " ).append( durationSeconds ).append( ",\n" )
+		    .append( "  \"warmupSeconds\": " ).append( warmupSeconds ).append( ",\n" )
+		    .append( "  \"concurrency\": " ).append( concurrency ).append( ",\n" )
+		    .append( "  \"scenarios\": {" );
+		for ( int i = 0; i < results.size(); i++ ) {
+			Result r = results.get( i );
+			sb.append( i == 0 ? "\n" : ",\n" )
+			    .append( String.format( Locale.ROOT,
+			        "    \"%s\": { \"requests\": %d, \"errors\": %d, \"throughput\": %.2f, \"p50Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f, \"maxMs\": %.3f }",
+			        r.name(), r.requests(), r.errors(), r.throughput(), r.p50(), r.p99(), r.p999(), r.max() ) );
+		}
+		return sb.append( "\n  }\n}\n" ).toString();
+	}
+
+	private static void printResults( List<Result> results ) {
+		System.out.println( String.format( "%-10s %10s %8s %10s %10s %10s %10s %10s", "template", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms",
+		    "max ms" ) );
+		for ( Result r : results ) {
+			System.out.println( String.format( Locale.ROOT, "%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f", r.name(), r.requests(), r.errors(),
+			    r.throughput(), r.p50(), r.p99(), r.p999(), r.max() ) );
+		}
+	}
+
+	private List<Scenario> createScenarios() {
+		byte[]	form	= ( "firstName=Jane&lastName=O%27Neil&email=jane%40example.com&city=Springfield&zip=12345&newsletter=on"
+		    + "&interests=a&interests=b&comments=" + "Lorem+ipsum+dolor+sit+amet%2C+".repeat( 40 ) ).getBytes( StandardCharsets.UTF_8 );
+
+		byte[]	file	= new byte[ UPLOAD_SIZE ];
+		new Random( 42 ).nextBytes( file );
+		ByteArrayOutputStream upload = new ByteArrayOutputStream( UPLOAD_SIZE + 1024 );
+		upload.writeBytes( ( "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nLoad test\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+		upload.writeBytes( ( "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"attachment\"; filename=\"data.bin\"\r\n"
+		    + "Content-Type: application/octet-stream\r\n\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+		upload.writeBytes( file );
+		upload.writeBytes( ( "\r\n--" + BOUNDARY + "--\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+		byte[] multipart = upload.toByteArray();
+
+		return List.of(
+		    new Scenario( "small", 50, () -> get( "small.bxm?name=load" ), -1 ),
+		    new Scenario( "large", 15, () -> get( "large.bxm" ), -1 ),
+		    new Scenario( "form", 15, () -> post( "form.bxm", "application/x-www-form-urlencoded", form ), -1 ),
+		    new Scenario( "upload", 10, () -> post( "upload.bxm", "multipart/form-data; boundary=" + BOUNDARY, multipart ), -1 ),
+		    new Scenario( "download", 10, () -> get( "download.bxm" ), DOWNLOAD_SIZE )
+		);
+	}
+
+	private HttpRequest get( String path ) {
+		return HttpRequest.newBuilder( URI.create( baseUrl + path ) ).timeout( Duration.ofSeconds( 30 ) ).GET().build();
+	}
+
+	private HttpRequest post( String path, String contentType, byte[] body ) {
+		return HttpRequest.newBuilder( URI.create( baseUrl + path ) )
+		    .timeout( Duration.ofSeconds( 30 ) )
+		    .header( "Content-Type", contentType )
+		    .POST( HttpRequest.BodyPublishers.ofByteArray( body ) )
+		    .build();
+	}
+
+	/**
+	 * One client, sending requests one after another
+	 */
+	private final class Worker {
+
+		private final Random	random;
+		private final long[][]	latencies	= new long[ scenarios.size() ][ 1024 ];
+		private final int[]		counts		= new int[ scenarios.size() ];
+		private final long[]	errors		= new long[ scenarios.size() ];
+		private final byte[]	buffer		= new byte[ 64 * 1024 ];
+		private final int		totalWeight	= scenarios.stream().mapToInt( Scenario::weight ).sum();
+
+		Worker( Random random ) {
+			this.random = random;
+		}
+
+		Worker drive( long deadline ) {
+			while ( System.nanoTime() < deadline ) {
+				int			s			= pick();
+				Scenario	scenario	= scenarios.get( s );
+				long		start		= System.nanoTime();
+				try {
+					HttpResponse<InputStream>	response	= httpClient.send( scenario.request().get(), HttpResponse.BodyHandlers.ofInputStream() );
+					long						size		= 0;
+					try ( InputStream body = response.body() ) {
+						for ( int n; ( n = body.read( buffer ) ) != -1; ) {
+							size += n;
+						}
+					}
+					long elapsed = System.nanoTime() - start;
+					if ( response.statusCode() != 200 || size == 0 || ( scenario.expectedSize() >= 0 && size != scenario.expectedSize() ) ) {
+						fail( s, "HTTP " + response.statusCode() + ", " + size + " bytes" );
+						continue;
+					}
+					if ( counts[ s ] == latencies[ s ].length ) {
+						latencies[ s ] = Arrays.copyOf( latencies[ s ], latencies[ s ].length * 2 );
+					}
+					latencies[ s ][ counts[ s ]++ ] = elapsed;
+				} catch ( IOException e ) {
+					fail( s, e.toString() );
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return this;
+		}
+
+		private int pick() {
+			int r = random.nextInt( totalWeight );
+			for ( int s = 0; s < scenarios.size(); s++ ) {
+				r -= scenarios.get( s ).weight();
+				if ( r < 0 ) {
+					return s;
+				}
+			}
+			return scenarios.size() - 1;
+		}
+
+		private void fail( int s, String message ) {
+			// Only the first few failures of each template are shown
+			if ( errors[ s ]++ < 3 ) {
+				System.err.println( "Load test request for [" + scenarios.get( s ).name() + "] failed: " + message );
+			}
+		}
+	}
+
+	private void copyTemplates( Path target ) throws IOException {
+		Path source = Path.of( "src/test/resources/loadtest" );
+		Files.createDirectories( target );
+		try ( var templates = Files.list( source ) ) {
+			for ( Path template : templates.filter( p -> p.toString().endsWith( ".bxm" ) ).toList() ) {
+				Files.copy( template, target.resolve( template.getFileName() ), StandardCopyOption.REPLACE_EXISTING );
+			}
+		}
+		byte[] asset = new byte[ DOWNLOAD_SIZE ];
+		new Random( 7 ).nextBytes( asset );
+		Files.write( target.resolve( "asset.bin" ), asset );
+	}
+
+	private File findWarFile() {
+		for ( String dir : new String[] { "build/distributions", "build/libs" } ) {
+			File[] warFiles = new File( dir ).listFiles( ( d, name ) -> name.endsWith( ".war" ) && name.contains( "boxlang-servlet" ) );
+			if ( warFiles != null && warFiles.length > 0 ) {
+				return warFiles[ 0 ];
+			}
+		}
+		return null;
+	}
+
+	private void deleteRecursively( File file ) {
+		if ( file == null || !file.exists() ) {
+			return;
+		}
+		File[] files = file.listFiles();
+		if ( files != null ) {
+			for ( File child : files ) {
+				deleteRecursively( child );
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Just enough of a JSON reader for the baseline report: objects, arrays, strings, numbers, booleans and null
+	 */
+	private static final class JsonReader {
+
+		private final String	json;
+		private int				pos;
+
+		JsonReader( String json ) {
+			this.json = json;
+		}
+
+		Object read() {
+			skipWhitespace();
+			char c = json.charAt( pos );
+			switch ( c ) {
+				case '{' -> {
+					Map<String, Object> map = new LinkedHashMap<>();
+					pos++;
+					skipWhitespace();
+					if ( json.charAt( pos ) == '}' ) {
+						pos++;
+						return map;
+					}
+					while ( true ) {
+						skipWhitespace();
+						String key = ( String ) read();
+						skipWhitespace();
+						expect( ':' );
+						map.put( key, read() );
+						skipWhitespace();
+						if ( json.charAt( pos++ ) == '}' ) {
+							return map;
+						}
+					}
+				}
+				case '[' -> {
+					List<Object> list = new ArrayList<>();
+					pos++;
+					skipWhitespace();
+					if ( json.charAt( pos ) == ']' ) {
+						pos++;
+						return list;
+					}
+					while ( true ) {
+						list.add( read() );
+						skipWhitespace();
+						if ( json.charAt( pos++ ) == ']' ) {
+							return list;
+						}
+					}
+				}
+				case '"' -> {
+					StringBuilder sb = new StringBuilder();
+					pos++;
+					while ( json.charAt( pos ) != '"' ) {
+						char ch = json.charAt( pos++ );
+						if ( ch == '\\' ) {
+							char escaped = json.charAt( pos++ );
+							switch ( escaped ) {
+								case 'n' -> sb.append( '\n' );
+								case 't' -> sb.append( '\t' );
+								case 'r' -> sb.append( '\r' );
+								case 'b' -> sb.append( '\b' );
+								case 'f' -> sb.append( '\f' );
+								case 'u' -> {
+									sb.append( ( char ) Integer.parseInt( json.substring( pos, pos + 4 ), 16 ) );
+									pos += 4;
+								}
+								default -> sb.append( escaped );
+							}
+						} else {
+							sb.append( ch );
+						}
+					}
+					pos++;
+					return sb.toString();
+				}
+				default -> {
+					int start = pos;
+					while ( pos < json.length() && ",}] \t\r\n".indexOf( json.charAt( pos ) ) < 0 ) {
+						pos++;
+					}
+					String token = json.substring( start, pos );
+					return switch ( token ) {
+						case "true" -> Boolean.TRUE;
+						case "false" -> Boolean.FALSE;
+						case "null" -> null;
+						default -> Double.parseDouble( token );
+					};
+				}
+			}
+		}
+
+		private void expect( char c ) {
+			if ( json.charAt( pos++ ) != c ) {
+				throw new IllegalArgumentException( "Expected [" + c + "] at " + ( pos - 1 ) + " of the baseline" );
+			}
+		}
+
+		private void skipWhitespace() {
+			while ( pos < json.length() && Character.isWhitespace( json.charAt( pos ) ) ) {
+				pos++;
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package ortus.boxlang.web.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+import ortus.boxlang.web.context.WebRequestBoxContext;
+import ortus.boxlang.web.exchange.BoxHTTPServletExchange;
+import ortus.boxlang.web.exchange.EventStream;
+import ortus.boxlang.web.exchange.EventStreamRegistry;
+
+public class EventStreamBifsTest {
+
+	private IBoxContext				context;
+	private BoxHTTPServletExchange	exchange;
+
+	@BeforeEach
+	void setUp() {
+		WebRequestBoxContext requestContext = mock( WebRequestBoxContext.class );
+		context		= mock( IBoxContext.class );
+		exchange	= mock( BoxHTTPServletExchange.class );
+		when( context.getParentOfType( WebRequestBoxContext.class ) ).thenReturn( requestContext );
+		when( requestContext.getHTTPExchange() ).thenReturn( exchange );
+	}
+
+	@DisplayName( "It starts the event stream of the request on a channel" )
+	@Test
+	void testStart() {
+		EventStream stream = mock( EventStream.class );
+		when( exchange.startEventStream( "news" ) ).thenReturn( stream );
+		ArgumentsScope arguments = new ArgumentsScope();
+		arguments.put( EventStreamStart.channel, "news" );
+
+		assertThat( new EventStreamStart()._invoke( context, arguments ) ).isSameInstanceAs( stream );
+	}
+
+	@DisplayName( "It sends events to the stream of the request, and fails if there is none" )
+	@Test
+	void testSend() {
+		ArgumentsScope arguments = new ArgumentsScope();
+		arguments.put( EventStreamSend.data, "hello" );
+		arguments.put( EventStreamSend.event, "greeting" );
+		assertThrows( BoxRuntimeException.class, () -> new EventStreamSend()._invoke( context, arguments ) );
+
+		EventStream stream = mock( EventStream.class );
+		when( stream.send( "greeting", "hello", null ) ).thenReturn( true );
+		when( exchange.getEventStream() ).thenReturn( stream );
+		assertThat( new EventStreamSend()._invoke( context, arguments ) ).isEqualTo( true );
+	}
+
+	@DisplayName( "It broadcasts to a channel and returns the number of streams reached" )
+	@Test
+	void testBroadcast() {
+		EventStreamRegistry registry = mock( EventStreamRegistry.class );
+		when( registry.broadcast( "news", null, "extra" ) ).thenReturn( 3 );
+		when( exchange.getEventStreamRegistry() ).thenReturn( registry );
+		ArgumentsScope arguments = new ArgumentsScope();
+		arguments.put( EventStreamStart.channel, "news" );
+		arguments.put( EventStreamSend.data, "extra" );
+
+		assertThat( new EventStreamBroadcast()._invoke( context, arguments ) ).isEqualTo( 3 );
+	}
+
+	@DisplayName( "It fails outside a request run by the servlet" )
+	@Test
+	void testOutsideServlet() {
+		IBoxContext other = mock( IBoxContext.class );
+		assertThrows( BoxRuntimeException.class, () -> new EventStreamBroadcast()._invoke( other, new ArgumentsScope() ) );
+	}
+
+}
@@ -0,0 +1,149 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class BinaryResponseSenderTest {
+
+	// Larger than a pooled buffer, so the copies take more than one pass
+	private static final byte[]		DATA	= new byte[ 20000 ];
+
+	static {
+		new Random( 42 ).nextBytes( DATA );
+	}
+
+	private HttpServletResponse		response;
+	private ByteArrayOutputStream	body;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		body		= new ByteArrayOutputStream();
+		response	= mock( HttpServletResponse.class );
+		when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+
+			@Override
+			public void write( int b ) {
+				body.write( b );
+			}
+
+			@Override
+			public void write( byte[] b, int off, int len ) {
+				body.write( b, off, len );
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener( WriteListener writeListener ) {
+			}
+		} );
+	}
+
+	@DisplayName( "It sends a byte array with its length" )
+	@Test
+	void testArray() throws IOException {
+		BinaryResponseSender.send( response, DATA );
+		assertThat( body.toByteArray() ).isEqualTo( DATA );
+		verify( response ).setContentLengthLong( DATA.length );
+	}
+
+	@DisplayName( "It sends the remaining bytes of heap and direct buffers" )
+	@Test
+	void testBuffers() throws IOException {
+		ByteBuffer heap = ByteBuffer.wrap( DATA ).position( 100 );
+		BinaryResponseSender.send( response, heap );
+		assertThat( heap.hasRemaining() ).isFalse();
+		assertThat( body.toByteArray() ).isEqualTo( Arrays.copyOfRange( DATA, 100, DATA.length ) );
+		verify( response ).setContentLengthLong( DATA.length - 100 );
+
+		body.reset();
+		ByteBuffer direct = ByteBuffer.allocateDirect( DATA.length ).put( DATA ).flip();
+		BinaryResponseSender.send( response, direct );
+		assertThat( direct.hasRemaining() ).isFalse();
+		assertThat( body.toByteArray() ).isEqualTo( DATA );
+	}
+
+	@DisplayName( "It sends a stream, with a Content-Length only if the length is known" )
+	@Test
+	void testStream() throws IOException {
+		BinaryResponseSender.send( response, new ByteArrayInputStream( DATA ), DATA.length );
+		assertThat( body.toByteArray() ).isEqualTo( DATA );
+		verify( response ).setContentLengthLong( DATA.length );
+
+		setUp();
+		BinaryResponseSender.send( response, new ByteArrayInputStream( DATA ), -1 );
+		assertThat( body.toByteArray() ).isEqualTo( DATA );
+		verify( response, never() ).setContentLengthLong( anyLong() );
+	}
+
+	@DisplayName( "It sends a channel, with a Content-Length only if the length is known" )
+	@Test
+	void testChannel() throws IOException {
+		BinaryResponseSender.send( response, Channels.newChannel( new ByteArrayInputStream( DATA ) ), -1 );
+		assertThat( body.toByteArray() ).isEqualTo( DATA );
+		verify( response, never() ).setContentLengthLong( anyLong() );
+
+		setUp();
+		BinaryResponseSender.send( response, Channels.newChannel( new ByteArrayInputStream( DATA ) ), DATA.length );
+		assertThat( body.toByteArray() ).isEqualTo( DATA );
+		verify( response ).setContentLengthLong( DATA.length );
+	}
+
+	@DisplayName( "It sends the rest of a file channel from its position, and moves the position to the end" )
+	@Test
+	void testFileChannel( @TempDir Path dir ) throws IOException {
+		Path file = Files.write( dir.resolve( "data.bin" ), DATA );
+		try ( FileChannel channel = FileChannel.open( file ) ) {
+			channel.position( 1000 );
+			BinaryResponseSender.send( response, channel, -1 );
+			assertThat( channel.position() ).isEqualTo( DATA.length );
+		}
+		assertThat( body.toByteArray() ).isEqualTo( Arrays.copyOfRange( DATA, 1000, DATA.length ) );
+		verify( response ).setContentLengthLong( DATA.length - 1000 );
+	}
+
+	@DisplayName( "It refuses a non-blocking channel instead of spinning on it" )
+	@Test
+	void testNonBlockingChannel() throws IOException {
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.source().configureBlocking( false );
+			assertThrows( BoxRuntimeException.class, () -> BinaryResponseSender.send( response, pipe.source(), -1 ) );
+			assertThat( body.size() ).isEqualTo( 0 );
+		} finally {
+			pipe.source().close();
+			pipe.sink().close();
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BufferPoolTest {
+
+	@DisplayName( "It reuses released buffers and allocates when empty" )
+	@Test
+	void testReuse() {
+		BufferPool	pool	= new BufferPool( 16, 2 );
+		byte[]		first	= pool.acquire();
+		assertThat( first ).hasLength( 16 );
+		assertThat( pool.getPooledCount() ).isEqualTo( 0 );
+
+		pool.release( first );
+		assertThat( pool.getPooledCount() ).isEqualTo( 1 );
+		assertThat( pool.acquire() ).isSameInstanceAs( first );
+		assertThat( pool.acquire() ).isNotSameInstanceAs( first );
+	}
+
+	@DisplayName( "It drops buffers of the wrong size and buffers released into a full pool" )
+	@Test
+	void testBounds() {
+		BufferPool pool = new BufferPool( 16, 2 );
+		pool.release( new byte[ 8 ] );
+		pool.release( null );
+		assertThat( pool.getPooledCount() ).isEqualTo( 0 );
+
+		pool.release( new byte[ 16 ] );
+		pool.release( new byte[ 16 ] );
+		pool.release( new byte[ 16 ] );
+		assertThat( pool.getPooledCount() ).isEqualTo( 2 );
+		assertThat( pool.getBufferSize() ).isEqualTo( 16 );
+	}
+
+}
@@ -0,0 +1,121 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class CompressingResponseWrapperTest {
+
+	private ServletExchangeSettings	settings;
+	private HttpServletResponse		response;
+	private ByteArrayOutputStream	body;
+
+	@BeforeEach
+	void setUp() throws IOException, ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-compression" ) ).thenReturn( "true" );
+		settings	= ServletExchangeSettings.fromServletConfig( config );
+		body		= new ByteArrayOutputStream();
+		response	= mock( HttpServletResponse.class );
+		when( response.getStatus() ).thenReturn( 200 );
+		when( response.getCharacterEncoding() ).thenReturn( "UTF-8" );
+		when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+
+			@Override
+			public void write( int b ) {
+				body.write( b );
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener( WriteListener writeListener ) {
+			}
+		} );
+	}
+
+	@DisplayName( "It negotiates gzip or deflate from Accept-Encoding" )
+	@Test
+	void testNegotiate() {
+		assertThat( CompressingResponseWrapper.negotiate( "gzip, deflate, br" ) ).isEqualTo( "gzip" );
+		assertThat( CompressingResponseWrapper.negotiate( "deflate, gzip;q=0" ) ).isEqualTo( "deflate" );
+		assertThat( CompressingResponseWrapper.negotiate( "*" ) ).isEqualTo( "gzip" );
+		assertThat( CompressingResponseWrapper.negotiate( "br, identity" ) ).isNull();
+		assertThat( CompressingResponseWrapper.negotiate( null ) ).isNull();
+	}
+
+	@DisplayName( "It gzips large text responses" )
+	@Test
+	void testCompressesLargeText() throws IOException {
+		when( response.getContentType() ).thenReturn( "text/html; charset=UTF-8" );
+		CompressingResponseWrapper	wrapper	= new CompressingResponseWrapper( response, settings, "gzip" );
+		String						html	= "<p>Hello wörld 😀</p>\n".repeat( 500 );
+
+		wrapper.getWriter().print( html );
+		wrapper.finish();
+
+		verify( response ).setHeader( "Content-Encoding", "gzip" );
+		String decoded = new String( new GZIPInputStream( new ByteArrayInputStream( body.toByteArray() ) ).readAllBytes(), StandardCharsets.UTF_8 );
+		assertThat( decoded ).isEqualTo( html );
+		assertThat( body.size() ).isLessThan( html.length() );
+	}
+
+	@DisplayName( "It sends small and non-text responses as-is" )
+	@Test
+	void testSkipsSmallAndBinary() throws IOException {
+		when( response.getContentType() ).thenReturn( "text/html" );
+		CompressingResponseWrapper wrapper = new CompressingResponseWrapper( response, settings, "gzip" );
+		wrapper.getWriter().print( "tiny" );
+		wrapper.finish();
+		assertThat( body.toString( StandardCharsets.UTF_8 ) ).isEqualTo( "tiny" );
+		verify( response ).setContentLengthLong( 4 );
+
+		body.reset();
+		when( response.getContentType() ).thenReturn( "image/png" );
+		byte[] png = new byte[ 4096 ];
+		wrapper = new CompressingResponseWrapper( response, settings, "gzip" );
+		wrapper.getOutputStream().write( png );
+		wrapper.finish();
+		assertThat( body.toByteArray() ).isEqualTo( png );
+		verify( response, never() ).setHeader( "Content-Encoding", "gzip" );
+	}
+
+	@DisplayName( "A flush below the minimum size sends the response as-is, even if more follows" )
+	@Test
+	void testFlushBelowMinSize() throws IOException {
+		when( response.getContentType() ).thenReturn( "text/html" );
+		CompressingResponseWrapper	wrapper	= new CompressingResponseWrapper( response, settings, "gzip" );
+		String						rest	= "<p>Hello</p>\n".repeat( 500 );
+
+		wrapper.getWriter().print( "tiny" );
+		wrapper.getWriter().flush();
+		wrapper.getWriter().print( rest );
+		wrapper.finish();
+
+		assertThat( body.toString( StandardCharsets.UTF_8 ) ).isEqualTo( "tiny" + rest );
+		verify( response, never() ).setHeader( "Content-Encoding", "gzip" );
+		verify( response, never() ).setContentLengthLong( 4 );
+	}
+
+}
@@ -0,0 +1,40 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CountingWriterTest {
+
+	@DisplayName( "It counts the UTF-8 bytes of what it writes through every write method" )
+	@Test
+	void testUtf8() throws IOException {
+		String			text	= "aé€😀";
+		StringWriter	out		= new StringWriter();
+		CountingWriter	writer	= new CountingWriter( out, true );
+
+		writer.write( text );
+		writer.write( text.toCharArray(), 1, 2 );
+		writer.write( 'é' );
+		writer.write( text, 3, 2 );
+
+		assertThat( out.toString() ).isEqualTo( text + "é€é😀" );
+		assertThat( writer.getBytes() ).isEqualTo( out.toString().getBytes( StandardCharsets.UTF_8 ).length );
+	}
+
+	@DisplayName( "It counts a byte per char for other charsets" )
+	@Test
+	void testSingleByte() throws IOException {
+		CountingWriter writer = new CountingWriter( new StringWriter(), false );
+		writer.write( "café" );
+		writer.write( new char[] { 'x', 'é' }, 0, 2 );
+		writer.write( 'y' );
+		assertThat( writer.getBytes() ).isEqualTo( 7 );
+	}
+
+}
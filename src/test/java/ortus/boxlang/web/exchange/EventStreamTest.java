@@ -0,0 +1,160 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.servlet.AsyncRequestProcessor;
+
+public class EventStreamTest {
+
+	private final EventStreamRegistry registry = new EventStreamRegistry();
+
+	@AfterEach
+	void tearDown() {
+		registry.shutdown();
+	}
+
+	@DisplayName( "It formats events with one data field per line" )
+	@Test
+	void testFormat() {
+		assertThat( EventStream.format( null, "a\r\nb\nc", null ) ).isEqualTo( "data: a\ndata: b\ndata: c\n\n" );
+		assertThat( EventStream.format( "update", "x", "7" ) ).isEqualTo( "event: update\nid: 7\ndata: x\n\n" );
+		assertThat( EventStream.format( "bad\nname", null, null ) ).isEqualTo( "event: bad name\ndata: \n\n" );
+	}
+
+	@DisplayName( "It writes broadcasts in order and completes the response on close" )
+	@Test
+	void testBroadcastAndClose() {
+		AsyncContext	asyncContext	= mock( AsyncContext.class );
+		StringWriter	out				= new StringWriter();
+		EventStream		stream			= new EventStream( registry, asyncContext, out, "test-channel", null );
+		registry.register( stream, 0 );
+
+		stream.send( "one" );
+		assertThat( registry.broadcast( "test-channel", "news", "two" ) ).isEqualTo( 1 );
+		stream.close();
+
+		verify( asyncContext, timeout( 5000 ) ).complete();
+		assertThat( out.toString() ).isEqualTo( "data: one\n\nevent: news\ndata: two\n\n" );
+		assertThat( stream.isOpen() ).isFalse();
+		assertThat( stream.send( "three" ) ).isFalse();
+		assertThat( registry.getOpenStreamCount( "test-channel" ) ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "A stream started in async mode takes over the async context, which the processor leaves open" )
+	@Test
+	void testAsyncHandOff() throws Exception {
+		AsyncContext			asyncContext	= mock( AsyncContext.class );
+		HttpServletRequest		request			= request( asyncContext );
+		ByteArrayOutputStream	body			= new ByteArrayOutputStream();
+		HttpServletResponse		response		= response( body, false );
+
+		CountDownLatch					handled		= new CountDownLatch( 1 );
+		AtomicReference<EventStream>	started		= new AtomicReference<>();
+		AsyncRequestProcessor			processor	= new AsyncRequestProcessor( Executors.newSingleThreadExecutor(), 30000 );
+		processor.dispatch( request, response, ( req, res ) -> {
+			BoxHTTPServletExchange exchange = new BoxHTTPServletExchange( req, res, null, ServletExchangeSettings.DEFAULTS, registry );
+			started.set( exchange.startEventStream( "news" ) );
+			handled.countDown();
+		} );
+		assertThat( handled.await( 5, TimeUnit.SECONDS ) ).isTrue();
+
+		EventStream stream = started.get();
+		verify( asyncContext ).setTimeout( 0 );
+		verify( response ).setContentType( "text/event-stream" );
+		assertThat( request.getAttribute( EventStream.ATTRIBUTE ) ).isSameInstanceAs( stream );
+		assertThat( registry.getOpenStreamCount( "news" ) ).isEqualTo( 1 );
+
+		// The page has ended, but the stream keeps the response open
+		processor.shutdown( 5000 );
+		verify( asyncContext, never() ).complete();
+
+		assertThat( registry.broadcast( "news", null, "hello" ) ).isEqualTo( 1 );
+		stream.close();
+		verify( asyncContext, timeout( 5000 ) ).complete();
+		assertThat( body.toString( StandardCharsets.UTF_8 ) ).isEqualTo( ": \n\ndata: hello\n\n" );
+	}
+
+	@DisplayName( "A failed write disconnects the stream and ends the response" )
+	@Test
+	void testFailedWrite() throws Exception {
+		AsyncContext		asyncContext	= mock( AsyncContext.class );
+		HttpServletRequest	request			= request( asyncContext );
+		HttpServletResponse	response		= response( new ByteArrayOutputStream(), true );
+		when( request.isAsyncStarted() ).thenReturn( false );
+		when( request.isAsyncSupported() ).thenReturn( true );
+
+		BoxHTTPServletExchange	exchange	= new BoxHTTPServletExchange( request, response, null, ServletExchangeSettings.DEFAULTS, registry );
+		EventStream				stream		= exchange.startEventStream( "news" );
+
+		verify( asyncContext, timeout( 5000 ) ).complete();
+		assertThat( stream.isOpen() ).isFalse();
+		assertThat( stream.send( "dropped" ) ).isFalse();
+		assertThat( registry.getOpenStreamCount() ).isEqualTo( 0 );
+	}
+
+	private static HttpServletRequest request( AsyncContext asyncContext ) {
+		HttpServletRequest	request		= mock( HttpServletRequest.class );
+		Map<String, Object>	attributes	= new ConcurrentHashMap<>();
+		when( request.getMethod() ).thenReturn( "GET" );
+		when( request.startAsync( any(), any() ) ).thenReturn( asyncContext );
+		when( request.isAsyncStarted() ).thenReturn( true );
+		when( request.getAsyncContext() ).thenReturn( asyncContext );
+		doAnswer( invocation -> attributes.put( invocation.getArgument( 0 ), invocation.getArgument( 1 ) ) ).when( request )
+		    .setAttribute( anyString(), any() );
+		doAnswer( invocation -> attributes.get( invocation.getArgument( 0 ) ) ).when( request ).getAttribute( anyString() );
+		return request;
+	}
+
+	private static HttpServletResponse response( ByteArrayOutputStream body, boolean failing ) throws IOException {
+		HttpServletResponse response = mock( HttpServletResponse.class );
+		when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+
+			@Override
+			public void write( int b ) throws IOException {
+				if ( failing ) {
+					throw new IOException( "Broken pipe" );
+				}
+				body.write( b );
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener( WriteListener writeListener ) {
+			}
+		} );
+		return response;
+	}
+
+}
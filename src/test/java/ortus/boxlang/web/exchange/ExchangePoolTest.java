@@ -0,0 +1,52 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class ExchangePoolTest {
+
+	@DisplayName( "It reuses released exchanges for the next request" )
+	@Test
+	void testReuse() {
+		ExchangePool			pool		= new ExchangePool( 2, false );
+		HttpServletRequest		request1	= mock( HttpServletRequest.class );
+		HttpServletRequest		request2	= mock( HttpServletRequest.class );
+		BoxHTTPServletExchange	exchange	= pool.acquire( request1, mock( HttpServletResponse.class ), null, ServletExchangeSettings.DEFAULTS, null );
+
+		exchange.formFields = Map.of();
+		pool.release( exchange );
+		assertThat( pool.getPooledCount() ).isEqualTo( 1 );
+		assertThat( exchange.getServletRequest() ).isNull();
+
+		BoxHTTPServletExchange reused = pool.acquire( request2, mock( HttpServletResponse.class ), null, ServletExchangeSettings.DEFAULTS, null );
+		assertThat( reused ).isSameInstanceAs( exchange );
+		assertThat( reused.getServletRequest() ).isSameInstanceAs( request2 );
+		assertThat( reused.formFields ).isNull();
+		assertThat( pool.getPooledCount() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "In debug mode it poisons released exchanges instead of reusing them" )
+	@Test
+	void testDebugPoisoning() {
+		ExchangePool			pool		= new ExchangePool( 2, true );
+		BoxHTTPServletExchange	exchange	= pool.acquire( mock( HttpServletRequest.class ), mock( HttpServletResponse.class ), null,
+		    ServletExchangeSettings.DEFAULTS, null );
+
+		pool.release( exchange );
+		assertThat( pool.getPooledCount() ).isEqualTo( 0 );
+		BoxRuntimeException e = assertThrows( BoxRuntimeException.class, () -> exchange.getRequestMethod() );
+		assertThat( e.getMessage() ).contains( "used after its request ended" );
+		assertThat( e.getCause().getMessage() ).contains( "released here" );
+	}
+
+}
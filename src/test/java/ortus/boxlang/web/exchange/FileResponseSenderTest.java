@@ -0,0 +1,189 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class FileResponseSenderTest {
+
+	@DisplayName( "It parses single byte ranges" )
+	@Test
+	void testParseRange() {
+		assertThat( FileResponseSender.parseRange( "bytes=0-99", 1000 ) ).asList().containsExactly( 0L, 99L ).inOrder();
+		assertThat( FileResponseSender.parseRange( "bytes=900-", 1000 ) ).asList().containsExactly( 900L, 999L ).inOrder();
+		assertThat( FileResponseSender.parseRange( "bytes=-100", 1000 ) ).asList().containsExactly( 900L, 999L ).inOrder();
+		assertThat( FileResponseSender.parseRange( "bytes=500-5000", 1000 ) ).asList().containsExactly( 500L, 999L ).inOrder();
+	}
+
+	@DisplayName( "It ignores multiple and malformed ranges" )
+	@Test
+	void testIgnoredRanges() {
+		assertThat( FileResponseSender.parseRange( null, 1000 ) ).isNull();
+		assertThat( FileResponseSender.parseRange( "bytes=0-1,5-6", 1000 ) ).isNull();
+		assertThat( FileResponseSender.parseRange( "bytes=abc", 1000 ) ).isNull();
+		assertThat( FileResponseSender.parseRange( "items=0-1", 1000 ) ).isNull();
+		assertThat( FileResponseSender.parseRange( "bytes=10-5", 1000 ) ).isNull();
+	}
+
+	@DisplayName( "It flags ranges outside the file" )
+	@Test
+	void testUnsatisfiable() {
+		assertThat( FileResponseSender.parseRange( "bytes=1000-", 1000 ) ).isSameInstanceAs( FileResponseSender.UNSATISFIABLE );
+		assertThat( FileResponseSender.parseRange( "bytes=-0", 1000 ) ).isSameInstanceAs( FileResponseSender.UNSATISFIABLE );
+	}
+
+	@DisplayName( "It picks a newer precompressed sibling the client accepts" )
+	@Test
+	void testPrecompressedSibling( @TempDir Path dir ) throws IOException, ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-precompressed" ) ).thenReturn( "true" );
+		when( config.getInitParameter( "boxlang-file-metadata-ttl" ) ).thenReturn( "0" );
+		ServletExchangeSettings	settings	= ServletExchangeSettings.fromServletConfig( config );
+		Path					js			= Files.writeString( dir.resolve( "app.js" ), "console.log( 1 );" );
+		Path					gz			= Files.writeString( dir.resolve( "app.js.gz" ), "gzipped" );
+		Path					br			= Files.writeString( dir.resolve( "app.js.br" ), "brotli" );
+		Files.setLastModifiedTime( br, FileTime.fromMillis( Files.getLastModifiedTime( js ).toMillis() - 60000 ) );
+
+		HttpServletRequest	request		= mock( HttpServletRequest.class );
+		HttpServletResponse	response	= mock( HttpServletResponse.class );
+		when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "gzip, br" );
+		// The .br file is older than the original, so it is skipped
+		assertThat( FileResponseSender.precompressedSibling( request, response, js.toFile(), settings ) ).isEqualTo( gz.toFile() );
+		verify( response ).setHeader( "Content-Encoding", "gzip" );
+
+		request		= mock( HttpServletRequest.class );
+		response	= mock( HttpServletResponse.class );
+		when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "identity" );
+		File sent = FileResponseSender.precompressedSibling( request, response, js.toFile(), settings );
+		assertThat( sent ).isEqualTo( js.toFile() );
+		verify( response, never() ).setHeader( "Content-Encoding", "gzip" );
+		verify( response ).addHeader( "Vary", "Accept-Encoding" );
+	}
+
+	@DisplayName( "It streams the whole file into a committed response without touching its status or headers" )
+	@Test
+	void testCommittedResponse( @TempDir Path dir ) throws IOException, ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-precompressed" ) ).thenReturn( "true" );
+		when( config.getInitParameter( "boxlang-sendfile-min-size" ) ).thenReturn( "0" );
+		ServletExchangeSettings	settings	= ServletExchangeSettings.fromServletConfig( config );
+		Path					js			= Files.writeString( dir.resolve( "app.js" ), "console.log( 1 );" );
+		Files.writeString( dir.resolve( "app.js.gz" ), "gzipped" );
+
+		ByteArrayOutputStream	body		= new ByteArrayOutputStream();
+		HttpServletRequest		request		= mock( HttpServletRequest.class );
+		HttpServletResponse		response	= mock( HttpServletResponse.class );
+		when( request.getMethod() ).thenReturn( "GET" );
+		when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "gzip" );
+		when( request.getHeader( "Range" ) ).thenReturn( "bytes=0-3" );
+		when( request.getHeader( "If-None-Match" ) ).thenReturn( "*" );
+		when( request.getAttribute( FileResponseSender.TOMCAT_SENDFILE_SUPPORT ) ).thenReturn( Boolean.TRUE );
+		when( response.isCommitted() ).thenReturn( true );
+		when( response.getStatus() ).thenReturn( HttpServletResponse.SC_OK );
+		when( response.getOutputStream() ).thenReturn( capture( body ) );
+
+		FileResponseSender.send( request, response, js.toFile(), settings );
+
+		assertThat( body.toString() ).isEqualTo( "console.log( 1 );" );
+		verify( response, never() ).setStatus( anyInt() );
+		verify( response, never() ).setHeader( anyString(), anyString() );
+		verify( response, never() ).setContentLengthLong( anyLong() );
+		verify( request, never() ).setAttribute( anyString(), any() );
+	}
+
+	@DisplayName( "It only hands files to Tomcat's sendfile from the min size up" )
+	@Test
+	void testSendfileMinSize( @TempDir Path dir ) throws IOException, ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-sendfile-min-size" ) ).thenReturn( "100" );
+		ServletExchangeSettings	settings	= ServletExchangeSettings.fromServletConfig( config );
+		Path					small		= Files.writeString( dir.resolve( "small.txt" ), "small" );
+		Path					large		= Files.writeString( dir.resolve( "large.txt" ), "x".repeat( 100 ) );
+
+		ByteArrayOutputStream	body		= new ByteArrayOutputStream();
+		HttpServletRequest		request		= mock( HttpServletRequest.class );
+		HttpServletResponse		response	= mock( HttpServletResponse.class );
+		when( request.getMethod() ).thenReturn( "GET" );
+		when( request.getDateHeader( any() ) ).thenReturn( -1L );
+		when( request.getAttribute( FileResponseSender.TOMCAT_SENDFILE_SUPPORT ) ).thenReturn( Boolean.TRUE );
+		when( response.getStatus() ).thenReturn( HttpServletResponse.SC_OK );
+		when( response.getOutputStream() ).thenReturn( capture( body ) );
+
+		FileResponseSender.send( request, response, small.toFile(), settings );
+		assertThat( body.toString() ).isEqualTo( "small" );
+		verify( request, never() ).setAttribute( anyString(), any() );
+
+		FileResponseSender.send( request, response, large.toFile(), settings );
+		assertThat( body.toString() ).isEqualTo( "small" );
+		verify( request ).setAttribute( FileResponseSender.TOMCAT_SENDFILE_FILENAME, large.toFile().getCanonicalPath() );
+		verify( request ).setAttribute( FileResponseSender.TOMCAT_SENDFILE_END, 100L );
+	}
+
+	@DisplayName( "It answers conditional requests from the ETag and last modified time" )
+	@Test
+	void testNotModified() {
+		FileMetadataCache.FileMetadata	metadata	= new FileMetadataCache.FileMetadata( true, 1_700_000_000_500L, 10, "W/\"a-18bcfe56a04\"", 0 );
+		HttpServletRequest				request		= mock( HttpServletRequest.class );
+		when( request.getMethod() ).thenReturn( "GET" );
+		when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( -1L );
+
+		when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"other\", W/\"a-18bcfe56a04\"" );
+		assertThat( FileResponseSender.isNotModified( request, metadata ) ).isTrue();
+		when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"other\"" );
+		assertThat( FileResponseSender.isNotModified( request, metadata ) ).isFalse();
+
+		when( request.getHeader( "If-None-Match" ) ).thenReturn( null );
+		when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( 1_700_000_000_000L );
+		assertThat( FileResponseSender.isNotModified( request, metadata ) ).isTrue();
+		when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( 1_699_999_999_000L );
+		assertThat( FileResponseSender.isNotModified( request, metadata ) ).isFalse();
+
+		when( request.getMethod() ).thenReturn( "POST" );
+		when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( 1_700_000_000_000L );
+		assertThat( FileResponseSender.isNotModified( request, metadata ) ).isFalse();
+	}
+
+	private static ServletOutputStream capture( ByteArrayOutputStream body ) {
+		return new ServletOutputStream() {
+
+			@Override
+			public void write( int b ) {
+				body.write( b );
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener( WriteListener writeListener ) {
+			}
+		};
+	}
+
+}
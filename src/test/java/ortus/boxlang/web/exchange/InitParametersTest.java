@@ -0,0 +1,64 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+
+public class InitParametersTest {
+
+	@DisplayName( "It trims values and treats blank ones as not set" )
+	@Test
+	void testValues() throws ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-flag" ) ).thenReturn( " true " );
+		when( config.getInitParameter( "boxlang-size" ) ).thenReturn( " 42 " );
+		when( config.getInitParameter( "boxlang-blank" ) ).thenReturn( "  " );
+		when( config.getInitParameter( "boxlang-list" ) ).thenReturn( " a, ,b ," );
+
+		assertThat( InitParameters.getBoolean( config, "boxlang-flag", false ) ).isTrue();
+		assertThat( InitParameters.getInt( config, "boxlang-size", 0 ) ).isEqualTo( 42 );
+		assertThat( InitParameters.getLong( config, "boxlang-blank", 7 ) ).isEqualTo( 7 );
+		assertThat( InitParameters.getString( config, "boxlang-blank", "default" ) ).isEqualTo( "default" );
+		assertThat( InitParameters.getList( config, "boxlang-list" ) ).containsExactly( "a", "b" ).inOrder();
+		assertThat( InitParameters.getList( config, "boxlang-missing" ) ).isEmpty();
+	}
+
+	@DisplayName( "It only accepts true or false for flags" )
+	@Test
+	void testBoolean() throws ServletException {
+		assertThat( InitParameters.getBoolean( config( "boxlang-flag", "FALSE" ), "boxlang-flag", true ) ).isFalse();
+		assertThat( InitParameters.getBoolean( config( "boxlang-flag", "True" ), "boxlang-flag", false ) ).isTrue();
+
+		ServletException e = assertThrows( ServletException.class, () -> InitParameters.getBoolean( config( "boxlang-flag", "ture" ), "boxlang-flag", true ) );
+		assertThat( e.getMessage() ).contains( "[boxlang-flag]" );
+		assertThrows( ServletException.class, () -> InitParameters.getBoolean( config( "boxlang-flag", "yes" ), "boxlang-flag", false ) );
+	}
+
+	@DisplayName( "It fails initialization on values which aren't numbers" )
+	@Test
+	void testInvalid() throws ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-size" ) ).thenReturn( "10MB" );
+		when( config.getInitParameter( "boxlang-huge" ) ).thenReturn( "9999999999" );
+
+		ServletException e = assertThrows( ServletException.class, () -> InitParameters.getLong( config, "boxlang-size", 0 ) );
+		assertThat( e.getMessage() ).contains( "[boxlang-size]" );
+		assertThat( InitParameters.getLong( config, "boxlang-huge", 0 ) ).isEqualTo( 9999999999L );
+		assertThrows( ServletException.class, () -> InitParameters.getInt( config, "boxlang-huge", 0 ) );
+		assertThrows( ServletException.class, () -> ServletExchangeSettings.fromServletConfig( config( "boxlang-compression-level", "10" ) ) );
+	}
+
+	private static ServletConfig config( String name, String value ) {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( name ) ).thenReturn( value );
+		return config;
+	}
+
+}
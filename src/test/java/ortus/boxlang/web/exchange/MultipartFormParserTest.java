@@ -0,0 +1,187 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import ortus.boxlang.web.exchange.IBoxHTTPExchange.FileUpload;
+
+public class MultipartFormParserTest {
+
+	private static final String	BOUNDARY	= "----boxlang-test";
+
+	@TempDir
+	Path						tempDir;
+
+	@DisplayName( "It parses fields and files" )
+	@ParameterizedTest
+	@ValueSource( strings = { "buffered", "streaming" } )
+	void testParse( String mode ) throws IOException, ServletException {
+		byte[]				file	= "x".repeat( 20000 ).getBytes( StandardCharsets.UTF_8 );
+		byte[]				body	= body( field( "name", "Luis" ), field( "name", "Majano" ), file( "small", "a.txt", "hi".getBytes( StandardCharsets.UTF_8 ) ),
+		    file( "large", "b.txt", file ), file( "empty", "", new byte[ 0 ] ) );
+		List<FileUpload>	uploads	= new ArrayList<>();
+
+		Map<String, String[]> params = MultipartFormParser.parse( request( new ByteArrayInputStream( body ), body.length ), StandardCharsets.UTF_8,
+		    settings( mode, null ), uploads );
+
+		assertThat( params.get( "name" ) ).asList().containsExactly( "Luis", "Majano" ).inOrder();
+		assertThat( params.get( "empty" ) ).asList().containsExactly( "" );
+		assertThat( uploads ).hasSize( 2 );
+		assertThat( Files.readString( Path.of( params.get( "small" )[ 0 ] ) ) ).isEqualTo( "hi" );
+		assertThat( Files.readAllBytes( Path.of( params.get( "large" )[ 0 ] ) ) ).isEqualTo( file );
+		for ( FileUpload upload : uploads ) {
+			assertThat( upload.tmpPath().startsWith( tempDir ) ).isTrue();
+		}
+	}
+
+	@DisplayName( "It rejects a form field larger than the max field size" )
+	@ParameterizedTest
+	@ValueSource( strings = { "buffered", "streaming" } )
+	void testMaxFieldSize( String mode ) throws IOException, ServletException {
+		byte[]					body		= body( field( "ok", "x".repeat( 100 ) ), field( "big", "x".repeat( 101 ) ) );
+		ServletExchangeSettings	settings	= settings( mode, Map.of( "boxlang-upload-max-field-size", "100" ) );
+
+		RequestLimitException e = assertThrows( RequestLimitException.class,
+		    () -> MultipartFormParser.parse( request( new ByteArrayInputStream( body ), body.length ), StandardCharsets.UTF_8, settings, new ArrayList<>() ) );
+		assertThat( e.getMessage() ).contains( "[big]" );
+		assertThat( e.getStatus() ).isEqualTo( 413 );
+	}
+
+	@DisplayName( "It rejects more parts than the max parts" )
+	@ParameterizedTest
+	@ValueSource( strings = { "buffered", "streaming" } )
+	void testMaxParts( String mode ) throws IOException, ServletException {
+		byte[]					body		= body( field( "a", "1" ), field( "b", "2" ), field( "c", "3" ) );
+		ServletExchangeSettings	settings	= settings( mode, Map.of( "boxlang-upload-max-parts", "2" ) );
+
+		RequestLimitException e = assertThrows( RequestLimitException.class,
+		    () -> MultipartFormParser.parse( request( new ByteArrayInputStream( body ), body.length ), StandardCharsets.UTF_8, settings, new ArrayList<>() ) );
+		assertThat( e.getStatus() ).isEqualTo( 413 );
+	}
+
+	@DisplayName( "It rejects a file larger than the max file size" )
+	@ParameterizedTest
+	@ValueSource( strings = { "buffered", "streaming" } )
+	void testMaxFileSize( String mode ) throws IOException, ServletException {
+		byte[]					body		= body( file( "upload", "a.txt", new byte[ 2048 ] ) );
+		ServletExchangeSettings	settings	= settings( mode, Map.of( "boxlang-upload-max-file-size", "1024" ) );
+
+		RequestLimitException e = assertThrows( RequestLimitException.class,
+		    () -> MultipartFormParser.parse( request( new ByteArrayInputStream( body ), body.length ), StandardCharsets.UTF_8, settings, new ArrayList<>() ) );
+		assertThat( e.getStatus() ).isEqualTo( 413 );
+	}
+
+	@DisplayName( "A streamed file is registered before it is written, so a failed copy still gets cleaned up" )
+	@Test
+	void testFailedCopy() throws IOException, ServletException {
+		byte[]				body	= body( file( "upload", "a.txt", new byte[ 100000 ] ) );
+		List<FileUpload>	uploads	= new ArrayList<>();
+		// The client goes away part way through the file
+		InputStream			broken	= resetAfter( body, 30000 );
+
+		assertThrows( IOException.class,
+		    () -> MultipartFormParser.parse( request( broken, body.length ), StandardCharsets.UTF_8, settings( "streaming", null ), uploads ) );
+		assertThat( uploads ).hasSize( 1 );
+		assertThat( Files.exists( uploads.get( 0 ).tmpPath() ) ).isTrue();
+	}
+
+	private ServletExchangeSettings settings( String mode, Map<String, String> params ) throws ServletException {
+		ServletConfig config = mock( ServletConfig.class );
+		when( config.getInitParameter( "boxlang-upload-mode" ) ).thenReturn( mode );
+		when( config.getInitParameter( "boxlang-upload-temp-dir" ) ).thenReturn( tempDir.toString() );
+		if ( params != null ) {
+			params.forEach( ( name, value ) -> when( config.getInitParameter( name ) ).thenReturn( value ) );
+		}
+		return ServletExchangeSettings.fromServletConfig( config );
+	}
+
+	private static HttpServletRequest request( InputStream body, int length ) throws IOException {
+		HttpServletRequest request = mock( HttpServletRequest.class );
+		when( request.getMethod() ).thenReturn( "POST" );
+		when( request.getContentType() ).thenReturn( "multipart/form-data; boundary=" + BOUNDARY );
+		when( request.getContentLength() ).thenReturn( length );
+		when( request.getContentLengthLong() ).thenReturn( ( long ) length );
+		when( request.getHeader( "Content-length" ) ).thenReturn( String.valueOf( length ) );
+		when( request.getInputStream() ).thenReturn( new ServletInputStream() {
+
+			@Override
+			public int read() throws IOException {
+				return body.read();
+			}
+
+			@Override
+			public boolean isFinished() {
+				return false;
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setReadListener( ReadListener readListener ) {
+			}
+		} );
+		return request;
+	}
+
+	private static InputStream resetAfter( byte[] body, int count ) {
+		return new SequenceInputStream( new ByteArrayInputStream( body, 0, count ), new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				throw new IOException( "Connection reset" );
+			}
+		} );
+	}
+
+	private static byte[] field( String name, String value ) {
+		return ( "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value ).getBytes( StandardCharsets.UTF_8 );
+	}
+
+	private static byte[] file( String name, String fileName, byte[] content ) throws IOException {
+		ByteArrayOutputStream part = new ByteArrayOutputStream();
+		part.write( ( "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + fileName + "\"\r\nContent-Type: text/plain\r\n\r\n" )
+		    .getBytes( StandardCharsets.UTF_8 ) );
+		part.write( content );
+		return part.toByteArray();
+	}
+
+	private static byte[] body( byte[]... parts ) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for ( byte[] part : parts ) {
+			body.write( ( "--" + BOUNDARY + "\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+			body.write( part );
+			body.write( "\r\n".getBytes( StandardCharsets.UTF_8 ) );
+		}
+		body.write( ( "--" + BOUNDARY + "--\r\n" ).getBytes( StandardCharsets.UTF_8 ) );
+		return body.toByteArray();
+	}
+
+}
@@ -0,0 +1,64 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PooledResponseWriterTest {
+
+	@DisplayName( "It holds output until the buffer fills or is flushed" )
+	@Test
+	void testBuffering() throws IOException {
+		ByteArrayOutputStream	out		= new ByteArrayOutputStream();
+		PooledResponseWriter	writer	= new PooledResponseWriter( out, StandardCharsets.UTF_8, 16, 0 );
+
+		writer.write( "héllo" );
+		assertThat( out.size() ).isEqualTo( 0 );
+		writer.write( " wörld, this is longer than the buffer" );
+		assertThat( out.toString( StandardCharsets.UTF_8 ) ).isEqualTo( "héllo wörld, this is longer than the buffer" );
+
+		writer.write( "tail" );
+		writer.close();
+		assertThat( out.toString( StandardCharsets.UTF_8 ) ).endsWith( "buffertail" );
+	}
+
+	@DisplayName( "It forgets buffered output on reset" )
+	@Test
+	void testReset() throws IOException {
+		ByteArrayOutputStream	out		= new ByteArrayOutputStream();
+		PooledResponseWriter	writer	= new PooledResponseWriter( out, StandardCharsets.UTF_8, 64, 0 );
+
+		writer.write( "discard me" );
+		writer.reset();
+		writer.write( "keep me" );
+		writer.close();
+		assertThat( out.toString( StandardCharsets.UTF_8 ) ).isEqualTo( "keep me" );
+	}
+
+	@DisplayName( "It flushes to the client once the flush threshold is reached" )
+	@Test
+	void testFlushThreshold() throws IOException {
+		int[]					flushes	= new int[ 1 ];
+		OutputStream			out		= new ByteArrayOutputStream() {
+
+											@Override
+											public void flush() {
+												flushes[ 0 ]++;
+											}
+										};
+		PooledResponseWriter	writer	= new PooledResponseWriter( out, StandardCharsets.UTF_8, 8, 20 );
+
+		writer.write( "x".repeat( 10 ) );
+		assertThat( flushes[ 0 ] ).isEqualTo( 0 );
+		writer.write( "x".repeat( 10 ) );
+		assertThat( flushes[ 0 ] ).isEqualTo( 1 );
+		writer.close();
+	}
+
+}
@@ -0,0 +1,72 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ProgressiveFlushWriterTest {
+
+	@DisplayName( "It flushes once the size threshold is reached, after preparing the headers" )
+	@Test
+	void testSizeThreshold() throws IOException {
+		AtomicInteger			prepared	= new AtomicInteger();
+		FlushCountingWriter		out			= new FlushCountingWriter();
+		ProgressiveFlushWriter	writer		= new ProgressiveFlushWriter( out, 10, 0, () -> true, prepared::incrementAndGet );
+
+		writer.write( "12345" );
+		assertThat( out.flushes ).isEqualTo( 0 );
+		writer.write( "67890" );
+		assertThat( out.flushes ).isEqualTo( 1 );
+		assertThat( prepared.get() ).isEqualTo( 1 );
+		writer.write( "123456789" );
+		assertThat( out.flushes ).isEqualTo( 1 );
+		assertThat( out.toString() ).isEqualTo( "1234567890123456789" );
+	}
+
+	@DisplayName( "It counts from the last explicit flush or reset" )
+	@Test
+	void testExplicitFlush() throws IOException {
+		FlushCountingWriter		out		= new FlushCountingWriter();
+		ProgressiveFlushWriter	writer	= new ProgressiveFlushWriter( out, 10, 0, () -> true, () -> {
+										} );
+
+		writer.write( "12345678" );
+		writer.flush();
+		writer.write( "12345678" );
+		writer.reset();
+		writer.write( "12345678" );
+		assertThat( out.flushes ).isEqualTo( 1 );
+	}
+
+	@DisplayName( "It doesn't flush while the request hasn't opted in" )
+	@Test
+	void testInactive() throws IOException {
+		AtomicBoolean			active	= new AtomicBoolean( false );
+		FlushCountingWriter		out		= new FlushCountingWriter();
+		ProgressiveFlushWriter	writer	= new ProgressiveFlushWriter( out, 4, 0, active::get, () -> {
+										} );
+
+		writer.write( "12345" );
+		assertThat( out.flushes ).isEqualTo( 0 );
+		active.set( true );
+		writer.write( 'x' );
+		assertThat( out.flushes ).isEqualTo( 1 );
+	}
+
+	private static final class FlushCountingWriter extends StringWriter {
+
+		int flushes;
+
+		@Override
+		public void flush() {
+			flushes++;
+		}
+	}
+
+}
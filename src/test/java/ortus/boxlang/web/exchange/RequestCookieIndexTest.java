@@ -0,0 +1,47 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.Cookie;
+
+public class RequestCookieIndexTest {
+
+	@DisplayName( "It looks up cookies case-insensitively" )
+	@Test
+	void testLookup() {
+		RequestCookieIndex index = new RequestCookieIndex( new Cookie[] { new Cookie( "CFID", "1" ), new Cookie( "jsessionid", "abc" ) } );
+
+		assertThat( index.get( "CFID" ).getValue() ).isEqualTo( "1" );
+		assertThat( index.get( "cfid" ).getValue() ).isEqualTo( "1" );
+		assertThat( index.get( "JSessionID" ).getValue() ).isEqualTo( "abc" );
+		assertThat( index.get( "missing" ) ).isNull();
+		assertThat( index.get( null ) ).isNull();
+	}
+
+	@DisplayName( "It returns the first cookie sent when names repeat in any case" )
+	@Test
+	void testDuplicates() {
+		RequestCookieIndex index = new RequestCookieIndex( new Cookie[] { new Cookie( "ID", "first" ), new Cookie( "id", "second" ) } );
+
+		assertThat( index.get( "ID" ).getValue() ).isEqualTo( "first" );
+		assertThat( index.get( "id" ).getValue() ).isEqualTo( "first" );
+		assertThat( index.getAll() ).hasLength( 2 );
+	}
+
+	@DisplayName( "It decodes each cookie once and hands out copies of the array" )
+	@Test
+	void testMemoized() {
+		RequestCookieIndex	index	= new RequestCookieIndex( new Cookie[] { new Cookie( "a", "1" ), new Cookie( "b", "2" ) } );
+		BoxCookie			a		= index.get( "a" );
+		BoxCookie[]			all		= index.getAll();
+
+		assertThat( all[ 0 ] ).isSameInstanceAs( a );
+		all[ 0 ] = null;
+		assertThat( index.getAll()[ 0 ] ).isSameInstanceAs( a );
+		assertThat( new RequestCookieIndex( null ).getAll() ).isEmpty();
+	}
+
+}
@@ -0,0 +1,112 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class ServletMapViewsTest {
+
+	@DisplayName( "Request header names are case-insensitive in lookups and in the key set, which keeps the container's casing" )
+	@Test
+	void testRequestHeaderCase() {
+		HttpServletRequest request = request();
+
+		Map<String, String[]> headers = new ServletMapViews.RequestHeaders( request, new TreeMap<>( String.CASE_INSENSITIVE_ORDER ) );
+		assertThat( headers.get( "accept" ) ).asList().containsExactly( "text/html", "*/*" ).inOrder();
+		assertThat( headers.containsKey( "HOST" ) ).isTrue();
+		assertThat( headers.containsKey( "Cookie" ) ).isFalse();
+
+		assertThat( headers.keySet() ).containsExactly( "Accept", "Host" );
+		assertThat( headers.keySet().contains( "ACCEPT" ) ).isTrue();
+		assertThat( headers.get( "host" ) ).asList().containsExactly( "example.com" );
+		assertThat( headers.containsKey( "Cookie" ) ).isFalse();
+	}
+
+	@DisplayName( "Request header values are looked up once per exchange" )
+	@Test
+	void testRequestHeaderCache() {
+		HttpServletRequest		request	= request();
+		Map<String, String[]>	values	= new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+
+		new ServletMapViews.RequestHeaders( request, values ).get( "Host" );
+		new ServletMapViews.RequestHeaders( request, values ).get( "host" );
+		verify( request, times( 1 ) ).getHeaders( anyString() );
+	}
+
+	@DisplayName( "Writes go to the caller's own copy, never to the request or to other views" )
+	@Test
+	void testWritesAreLocal() {
+		HttpServletRequest		request	= request();
+		Map<String, String[]>	values	= new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+
+		Map<String, String[]> headers = new ServletMapViews.RequestHeaders( request, values );
+		headers.put( "x-extra", new String[] { "1" } );
+		headers.remove( "HOST" );
+		assertThat( headers.keySet() ).containsExactly( "Accept", "x-extra" );
+		assertThat( headers.get( "X-Extra" ) ).asList().containsExactly( "1" );
+
+		Map<String, String[]> other = new ServletMapViews.RequestHeaders( request, values );
+		assertThat( other.keySet() ).containsExactly( "Accept", "Host" );
+	}
+
+	@DisplayName( "Attribute views read through until they are written to" )
+	@Test
+	void testAttributes() {
+		HttpServletRequest request = mock( HttpServletRequest.class );
+		when( request.getAttribute( "user" ) ).thenReturn( "luis" );
+		when( request.getAttributeNames() ).thenReturn( Collections.enumeration( List.of( "user" ) ) );
+
+		Map<String, Object> attributes = new ServletMapViews.RequestAttributes( request );
+		assertThat( attributes.get( "user" ) ).isEqualTo( "luis" );
+		assertThat( attributes.get( "USER" ) ).isNull();
+
+		when( request.getAttribute( "user" ) ).thenReturn( "brad" );
+		assertThat( attributes.get( "user" ) ).isEqualTo( "brad" );
+
+		attributes.put( "added", 1 );
+		assertThat( attributes ).containsExactly( "user", "brad", "added", 1 );
+		verify( request, never() ).setAttribute( anyString(), any() );
+	}
+
+	@DisplayName( "Response header names are case-insensitive too" )
+	@Test
+	void testResponseHeaders() {
+		HttpServletResponse response = mock( HttpServletResponse.class );
+		when( response.getHeaderNames() ).thenReturn( List.of( "Content-Type" ) );
+		when( response.getHeaders( anyString() ) )
+		    .thenAnswer( invocation -> "content-type".equalsIgnoreCase( invocation.getArgument( 0 ) ) ? List.of( "text/html" ) : List.of() );
+
+		Map<String, String[]> headers = new ServletMapViews.ResponseHeaders( response );
+		assertThat( headers.get( "content-type" ) ).asList().containsExactly( "text/html" );
+		assertThat( headers.containsKey( "Location" ) ).isFalse();
+		assertThat( headers.keySet().contains( "CONTENT-TYPE" ) ).isTrue();
+	}
+
+	private static HttpServletRequest request() {
+		HttpServletRequest request = mock( HttpServletRequest.class );
+		when( request.getHeaderNames() ).thenAnswer( invocation -> Collections.enumeration( List.of( "Accept", "Host" ) ) );
+		when( request.getHeaders( anyString() ) ).thenAnswer( invocation -> switch ( ( ( String ) invocation.getArgument( 0 ) ).toLowerCase() ) {
+			case "accept" -> Collections.enumeration( List.of( "text/html", "*/*" ) );
+			case "host" -> Collections.enumeration( List.of( "example.com" ) );
+			default -> Collections.emptyEnumeration();
+		} );
+		return request;
+	}
+
+}
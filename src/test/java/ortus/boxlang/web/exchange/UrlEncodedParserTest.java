@@ -0,0 +1,99 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class UrlEncodedParserTest {
+
+	@DisplayName( "It parses a query string into arrays of values" )
+	@Test
+	void testParseQueryString() {
+		Map<String, String[]> params = UrlEncodedParser.parseQueryString( "a=1&b=two&a=3&flag&empty=", StandardCharsets.UTF_8, 100, 100 );
+
+		assertThat( params.keySet() ).containsExactly( "a", "b", "flag", "empty" );
+		assertThat( params.get( "a" ) ).asList().containsExactly( "1", "3" ).inOrder();
+		assertThat( params.get( "b" ) ).asList().containsExactly( "two" );
+		assertThat( params.get( "flag" ) ).asList().containsExactly( "" );
+		assertThat( params.get( "empty" ) ).asList().containsExactly( "" );
+	}
+
+	@DisplayName( "It decodes percent-encoded and plus-encoded names and values" )
+	@Test
+	void testDecoding() {
+		Map<String, String[]> params = UrlEncodedParser.parseQueryString( "first+name=Luis%20Majano&caf%C3%A9=%E2%9C%93", StandardCharsets.UTF_8, 100, 100 );
+
+		assertThat( params.get( "first name" ) ).asList().containsExactly( "Luis Majano" );
+		assertThat( params.get( "café" ) ).asList().containsExactly( "✓" );
+	}
+
+	@DisplayName( "It keeps malformed escapes in a query string as they are" )
+	@Test
+	void testMalformedEscapes() {
+		Map<String, String[]> params = UrlEncodedParser.parseQueryString( "q=100%&r=%zz%41&s=50%2&t=%E2%9C%93%", StandardCharsets.UTF_8, 100, 100 );
+
+		assertThat( params.get( "q" ) ).asList().containsExactly( "100%" );
+		assertThat( params.get( "r" ) ).asList().containsExactly( "%zzA" );
+		assertThat( params.get( "s" ) ).asList().containsExactly( "50%2" );
+		assertThat( params.get( "t" ) ).asList().containsExactly( "✓%" );
+	}
+
+	@DisplayName( "It skips empty pairs and empty names" )
+	@Test
+	void testEmptyPairs() {
+		Map<String, String[]> params = UrlEncodedParser.parseQueryString( "&&a=1&=orphan&", StandardCharsets.UTF_8, 100, 100 );
+
+		assertThat( params.keySet() ).containsExactly( "a" );
+	}
+
+	@DisplayName( "It enforces the parameter limits with a 400" )
+	@Test
+	void testLimits() {
+		assertThat( assertThrows( RequestLimitException.class, () -> UrlEncodedParser.parseQueryString( "a=1&b=2&c=3", StandardCharsets.UTF_8, 2, 100 ) ).getStatus() ).isEqualTo( 400 );
+		assertThat( assertThrows( RequestLimitException.class, () -> UrlEncodedParser.parseQueryString( "abcdef=1", StandardCharsets.UTF_8, 100, 5 ) ).getStatus() ).isEqualTo( 400 );
+	}
+
+	@DisplayName( "It parses a form body without losing newlines" )
+	@Test
+	void testParseFormBody() throws IOException {
+		Map<String, String[]> fields = UrlEncodedParser.parseFormBody(
+		    body( "comment=line+1%0D%0Aline 2\r\nline3&caf%C3%A9=%E2%9C%93&tag=a&tag=b&noequals&=orphan" ),
+		    StandardCharsets.UTF_8, 0, 100, 100
+		);
+
+		assertThat( fields.keySet() ).containsExactly( "comment", "café", "tag" );
+		assertThat( fields.get( "comment" ) ).asList().containsExactly( "line 1\r\nline 2\r\nline3" );
+		assertThat( fields.get( "café" ) ).asList().containsExactly( "✓" );
+		assertThat( fields.get( "tag" ) ).asList().containsExactly( "a", "b" ).inOrder();
+	}
+
+	@DisplayName( "It decodes escapes split across reads" )
+	@Test
+	void testEscapeAcrossBuffers() throws IOException {
+		String					padding	= "x".repeat( 8190 );
+		Map<String, String[]>	fields	= UrlEncodedParser.parseFormBody( body( "a=" + padding + "%41%4" ), StandardCharsets.UTF_8, 0, 100, 100 );
+
+		assertThat( fields.get( "a" )[ 0 ] ).isEqualTo( padding + "A%4" );
+	}
+
+	@DisplayName( "It enforces the form limits with a 413 for size and a 400 for bad names" )
+	@Test
+	void testFormLimits() {
+		assertThat( assertThrows( RequestLimitException.class, () -> UrlEncodedParser.parseFormBody( body( "a=1&b=2" ), StandardCharsets.UTF_8, 3, 100, 100 ) ).getStatus() ).isEqualTo( 413 );
+		assertThat( assertThrows( RequestLimitException.class, () -> UrlEncodedParser.parseFormBody( body( "a=1&b=2&c=3" ), StandardCharsets.UTF_8, 0, 2, 100 ) ).getStatus() ).isEqualTo( 413 );
+		assertThat( assertThrows( RequestLimitException.class, () -> UrlEncodedParser.parseFormBody( body( "abcdef=1" ), StandardCharsets.UTF_8, 0, 100, 5 ) ).getStatus() ).isEqualTo( 400 );
+	}
+
+	private static InputStream body( String body ) {
+		return new ByteArrayInputStream( body.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+}
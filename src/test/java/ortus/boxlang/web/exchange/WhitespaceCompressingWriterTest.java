@@ -0,0 +1,56 @@
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class WhitespaceCompressingWriterTest {
+
+	@DisplayName( "It collapses runs of whitespace, keeping line breaks" )
+	@Test
+	void testCollapse() throws IOException {
+		assertThat( compress( "<html>   <body>\n\n   <p>a \t b</p>\t</body>" ) ).isEqualTo( "<html> <body>\n<p>a b</p> </body>" );
+	}
+
+	@DisplayName( "It leaves pre, textarea and script content alone" )
+	@Test
+	void testPreserved() throws IOException {
+		assertThat( compress( "<div>  x  </div><PRE class=\"y\">  keep\n   this </pre>  <p>  z </p>" ) )
+		    .isEqualTo( "<div> x </div><PRE class=\"y\">  keep\n   this </pre> <p> z </p>" );
+		assertThat( compress( "<script>\n  var  x =  `a   b`;\n</SCRIPT>   <textarea>  t  </textarea>  end" ) )
+		    .isEqualTo( "<script>\n  var  x =  `a   b`;\n</SCRIPT> <textarea>  t  </textarea> end" );
+		assertThat( compress( "<prefix>   a</prefix>" ) ).isEqualTo( "<prefix> a</prefix>" );
+	}
+
+	@DisplayName( "It handles whitespace runs and tags split across writes" )
+	@Test
+	void testSplitWrites() throws IOException {
+		assertThat( compress( "<p>a  ", "  \n  b</p><pr", "e>  a  </p", "re>  b" ) ).isEqualTo( "<p>a\nb</p><pre>  a  </pre> b" );
+	}
+
+	@DisplayName( "It passes everything through when disabled" )
+	@Test
+	void testDisabled() throws IOException {
+		StringWriter				out		= new StringWriter();
+		WhitespaceCompressingWriter	writer	= new WhitespaceCompressingWriter( out, true );
+		writer.write( "a   " );
+		writer.setEnabled( false );
+		writer.write( "b   c" );
+		assertThat( out.toString() ).isEqualTo( "a b   c" );
+	}
+
+	private static String compress( String... parts ) throws IOException {
+		StringWriter				out		= new StringWriter();
+		WhitespaceCompressingWriter	writer	= new WhitespaceCompressingWriter( out, true );
+		for ( String part : parts ) {
+			writer.write( part );
+		}
+		writer.close();
+		return out.toString();
+	}
+
+}